@@ -0,0 +1,76 @@
+package com.example.benchmark;
+
+import com.example.SpringBootExampleApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// the application (without the web server) running against its own postgres for one benchmark trial
+// postgres is a testcontainer like in the tests , unless -Dbenchmark.datasource.url points to an existing database
+// (then pass it to the benchmark forks with -Djmh.args="-jvmArgsAppend -Dbenchmark.datasource.url=...")
+// that database must be a throwaway one , benchmarks with a dataset empty the customer table
+public class BenchmarkApplication implements AutoCloseable {
+
+    private final PostgreSQLContainer<?> postgreSQLContainer;
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkApplication(PostgreSQLContainer<?> postgreSQLContainer, ConfigurableApplicationContext context) {
+        this.postgreSQLContainer = postgreSQLContainer;
+        this.context = context;
+    }
+
+    // properties are "name=value" and override application.properties
+    public static BenchmarkApplication start(String... properties) {
+        List<String> args = new ArrayList<>();
+        PostgreSQLContainer<?> postgreSQLContainer = null;
+        String url = System.getProperty("benchmark.datasource.url");
+        if (url == null) {
+            postgreSQLContainer = new PostgreSQLContainer<>("postgres:latest")
+                    .withDatabaseName("george-benchmark")
+                    .withUsername("george")
+                    .withPassword("password");
+            postgreSQLContainer.start();
+            args.add("--spring.datasource.url=" + postgreSQLContainer.getJdbcUrl());
+            args.add("--spring.datasource.username=" + postgreSQLContainer.getUsername());
+            args.add("--spring.datasource.password=" + postgreSQLContainer.getPassword());
+        } else {
+            args.add("--spring.datasource.url=" + url);
+        }
+        // printing every statement would be measured too
+        args.add("--spring.jpa.show-sql=false");
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SpringBootExampleApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(String[]::new));
+        return new BenchmarkApplication(postgreSQLContainer, context);
+    }
+
+    public <T> T getBean(String name, Class<T> type) {
+        return context.getBean(name, type);
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    // removes the customers of earlier trials (and the one the application registers when it starts)
+    public void deleteAllCustomers() {
+        getBean(JdbcTemplate.class).execute("TRUNCATE customer");
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        if (postgreSQLContainer != null) {
+            postgreSQLContainer.stop();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.benchmark;
+
+import com.example.customer.Customer;
+import com.example.customer.CustomerSort;
+import com.example.customer.CustomerUpdateRequest;
+import com.example.customer.CustomerUpdateStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// every CustomerDao operation against every DAO and dataset size of CustomerDataset
+// mvn -Pbenchmark test-compile exec:exec -Djmh.args="CustomerDaoBenchmark -p dao=jpa -p size=10000" runs a part of them
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CustomerDaoBenchmark {
+
+    @Benchmark
+    public Optional<Customer> selectCustomerById(CustomerDataset dataset) {
+        return dataset.customerDao().selectCustomerById(dataset.randomCustomer().getId());
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerByEmail(CustomerDataset dataset) {
+        return dataset.customerDao().selectCustomerByEmail(dataset.randomCustomer().getEmail());
+    }
+
+    @Benchmark
+    public boolean isPersonExistWithEmail(CustomerDataset dataset) {
+        return dataset.customerDao().isPersonExistWithEmail(dataset.randomCustomer().getEmail());
+    }
+
+    @Benchmark
+    public Customer insertCustomer(CustomerDataset dataset) {
+        Customer customer = dataset.newCustomer();
+        dataset.customerDao().insertCustomer(customer);
+        return customer;
+    }
+
+    @Benchmark
+    public CustomerUpdateStatus updateCustomer(CustomerDataset dataset) {
+        return dataset.customerDao().updateCustomer(
+                dataset.randomCustomer().getId(), new CustomerUpdateRequest("Updated " + dataset.next(), null, null));
+    }
+
+    @Benchmark
+    public List<Customer> selectCustomersPage(CustomerDataset dataset) {
+        return dataset.customerDao().selectCustomersPage(CustomerSort.NAME, null, 20);
+    }
+
+    @Benchmark
+    public List<Customer> selectAllCustomers(CustomerDataset dataset) {
+        return dataset.customerDao().selectAllCustomers();
+    }
+}
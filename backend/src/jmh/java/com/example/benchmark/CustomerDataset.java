@@ -0,0 +1,79 @@
+package com.example.benchmark;
+
+import com.example.customer.Customer;
+import com.example.customer.CustomerDao;
+import com.example.customer.Gender;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// the application with size customers registered through the chosen CustomerDao , shared by all the benchmark threads of a trial
+// dao is the name of the DAO bean : jpa (postgres) , cached (caffeine in front of jpa) or list (in memory)
+// the benchmarks that insert customers make the dataset grow during the trial , the reads only touch the seeded ones
+@State(Scope.Benchmark)
+public class CustomerDataset {
+
+    private static final int CUSTOMERS_PER_BATCH = 5_000;
+
+    @Param({"1000", "10000", "100000"})
+    private int size;
+
+    @Param({"jpa", "cached", "list"})
+    private String dao;
+
+    private BenchmarkApplication application;
+    private CustomerDao customerDao;
+    private Customer[] customers;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        application = BenchmarkApplication.start();
+        application.deleteAllCustomers();
+        customerDao = application.getBean(dao, CustomerDao.class);
+
+        List<Customer> seeded = new ArrayList<>(size);
+        for (int from = 0; from < size; from += CUSTOMERS_PER_BATCH) {
+            List<Customer> batch = new ArrayList<>();
+            for (int i = from; i < Math.min(from + CUSTOMERS_PER_BATCH, size); i++) {
+                batch.add(newCustomer());
+            }
+            customerDao.insertCustomers(batch);
+            seeded.addAll(batch);
+        }
+        customers = seeded.toArray(Customer[]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+    }
+
+    public CustomerDao customerDao() {
+        return customerDao;
+    }
+
+    // a copy , the benchmarks may change it
+    public Customer randomCustomer() {
+        return new Customer(customers[ThreadLocalRandom.current().nextInt(customers.length)]);
+    }
+
+    public Customer newCustomer() {
+        long n = sequence.incrementAndGet();
+        Gender gender = n % 2 == 0 ? Gender.MALE : Gender.FEMALE;
+        return new Customer("Customer " + n, "customer-" + n + "@gmail.com", (int) (18 + n % 80), gender);
+    }
+
+    // unique within the trial , for updates that must always change something
+    public long next() {
+        return sequence.incrementAndGet();
+    }
+}
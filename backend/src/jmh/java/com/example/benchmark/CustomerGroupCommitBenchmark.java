@@ -0,0 +1,84 @@
+package com.example.benchmark;
+
+import com.example.customer.Customer;
+import com.example.customer.CustomerDao;
+import com.example.customer.CustomerRegistrationWriter;
+import com.example.customer.Gender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// registrations per second of many concurrent registrations , each inserting its customer in its own transaction
+// and queued to CustomerRegistrationWriter (group commit) , only the insert , not the rest of CustomerService.addCustomer
+// the difference is in the commits , so it only shows against a postgres that flushes its wal on commit (fsync and
+// synchronous_commit on , the defaults)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(64)
+public class CustomerGroupCommitBenchmark {
+
+    @Param({"false", "true"})
+    private boolean groupCommit;
+
+    // customer.registration.group-commit.max-delay , -p maxDelay=0ms,2ms compares them
+    @Param({"2ms"})
+    private String maxDelay;
+
+    private BenchmarkApplication application;
+    private CustomerDao customerDao;
+    private CustomerRegistrationWriter registrationWriter;
+
+    // emails are unique , every run gets its own prefix so runs against the same database don't collide
+    private final String run = UUID.randomUUID().toString();
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        application = BenchmarkApplication.start(
+                "customer.registration.group-commit.enabled=" + groupCommit,
+                "customer.registration.group-commit.max-delay=" + maxDelay);
+        customerDao = application.getBean("cached", CustomerDao.class);
+        if (groupCommit) {
+            registrationWriter = application.getBean(CustomerRegistrationWriter.class);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+    }
+
+    @Benchmark
+    public Customer registerCustomer() {
+        Customer customer = newCustomer();
+        if (groupCommit) {
+            return registrationWriter.register(customer).join();
+        }
+        customerDao.insertCustomer(customer);
+        return customer;
+    }
+
+    private Customer newCustomer() {
+        long n = sequence.incrementAndGet();
+        return new Customer("Customer " + n, "customer-" + n + "-" + run + "@gmail.com", 30, Gender.FEMALE);
+    }
+}
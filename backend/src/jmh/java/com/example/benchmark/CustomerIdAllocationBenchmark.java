@@ -0,0 +1,85 @@
+package com.example.benchmark;
+
+import com.example.customer.Customer;
+import com.example.customer.CustomerDao;
+import com.example.customer.Gender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// inserts per second with one nextval of customer_id_sequence per insert (allocation size 1 , how ids used to be allocated)
+// and with one nextval per block of 50 ids (pooled-lo , CustomerIdGenerator)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CustomerIdAllocationBenchmark {
+
+    private static final int CUSTOMERS_PER_TRANSACTION = 100;
+
+    @Param({"1", "50"})
+    private int allocationSize;
+
+    private BenchmarkApplication application;
+    private CustomerDao customerDao;
+    private TransactionTemplate transactionTemplate;
+
+    // emails are unique , every run gets its own prefix so runs against the same database don't collide
+    private final String run = UUID.randomUUID().toString();
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // flyway re-runs R__Customer_Id_Sequence_Increment.sql , so the increment of the sequence follows the allocation size
+        application = BenchmarkApplication.start("customer.id.allocation-size=" + allocationSize);
+        customerDao = application.getBean("jpa", CustomerDao.class);
+        transactionTemplate = application.getBean(TransactionTemplate.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+    }
+
+    // what every registration does , one insert in its own transaction
+    @Benchmark
+    public Customer insertCustomer() {
+        Customer customer = newCustomer();
+        customerDao.insertCustomer(customer);
+        return customer;
+    }
+
+    // here the nextval round trips are the biggest part of the work , the inserts share one commit
+    @Benchmark
+    @OperationsPerInvocation(CUSTOMERS_PER_TRANSACTION)
+    public void insertCustomersInOneTransaction() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < CUSTOMERS_PER_TRANSACTION; i++) {
+                customerDao.insertCustomer(newCustomer());
+            }
+        });
+    }
+
+    private Customer newCustomer() {
+        long n = sequence.incrementAndGet();
+        return new Customer("Customer " + n, "customer-" + n + "-" + run + "@gmail.com", 30, Gender.FEMALE);
+    }
+}
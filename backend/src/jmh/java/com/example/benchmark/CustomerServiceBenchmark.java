@@ -0,0 +1,66 @@
+package com.example.benchmark;
+
+import com.example.customer.Customer;
+import com.example.customer.CustomerRegistrationRequest;
+import com.example.customer.CustomerService;
+import com.example.customer.CustomerUpdateRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// the CustomerService operations behind the endpoints , on top of every DAO and dataset size of CustomerDataset
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CustomerServiceBenchmark {
+
+    // the service of the application uses the cached DAO , this one uses the DAO of the dataset
+    @State(Scope.Benchmark)
+    public static class Service {
+
+        private CustomerService customerService;
+
+        @Setup(Level.Trial)
+        public void setUp(CustomerDataset dataset) {
+            customerService = new CustomerService(dataset.customerDao());
+        }
+    }
+
+    @Benchmark
+    public Customer getCustomer(Service service, CustomerDataset dataset) {
+        return service.customerService.getCustomer(dataset.randomCustomer().getId());
+    }
+
+    @Benchmark
+    public void addCustomer(Service service, CustomerDataset dataset) {
+        Customer customer = dataset.newCustomer();
+        service.customerService.addCustomer(new CustomerRegistrationRequest(
+                customer.getName(), customer.getEmail(), customer.getAge(), customer.getGender()));
+    }
+
+    // a new name every time , an update without changes is rejected
+    @Benchmark
+    public void updateCustomer(Service service, CustomerDataset dataset) {
+        service.customerService.updateCustomer(
+                dataset.randomCustomer().getId(),
+                new CustomerUpdateRequest("Updated " + dataset.next(), null, null));
+    }
+
+    @Benchmark
+    public List<Customer> getAllCustomers(Service service) {
+        return service.customerService.getAllCustomers();
+    }
+}
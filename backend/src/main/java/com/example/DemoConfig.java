@@ -0,0 +1,42 @@
+package com.example;
+
+import com.example.customer.Customer;
+import com.example.customer.CustomerRepository;
+import com.example.customer.Gender;
+import com.github.javafaker.Faker;
+import com.github.javafaker.Name;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.util.Random;
+
+// registers one fake customer every time the app starts , only with the demo profile (--spring.profiles.active=demo)
+// so production doesn't start Faker and write a customer on every boot (and every scale out)
+// the image built with -Pfast-startup never has it , its beans are fixed when it is built (spring AOT)
+@Configuration
+@Profile("demo")
+public class DemoConfig {
+
+	 @Bean
+	 CommandLineRunner runner(CustomerRepository customerRepository){
+		 return  args -> {
+			 var faker = new Faker();
+			 Random random = new Random();
+			 Name name = faker.name();
+			 String firstName = name.firstName();
+			 String lastName = name.lastName();
+			 int age = random.nextInt(16, 99);
+			 Gender gender = age%2==0 ? Gender.MALE : Gender.FEMALE;
+			 String email = firstName.toLowerCase() + "." + lastName.toLowerCase() + "@gmail.com";
+
+			 Customer customer = new Customer(
+					 firstName +  " " + lastName,
+					 email,
+					 age,
+					 gender);
+			 customerRepository.save(customer);
+		 };
+	 }
+}
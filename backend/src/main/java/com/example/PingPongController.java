@@ -1,20 +1,87 @@
 package com.example;
 
+import com.example.config.RequestStats;
+import com.example.config.RollingLatency;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 
 // This class is for us to test that Continuous Delivery (Deployment with Elastic Beanstalk) is working fine
+// it is also the liveness probe of the load balancer , and tells how the node is doing :
+// the requests of every endpoint since it started , the latencies of the last minute and , with ?db=true ,
+// how long one round trip to the database takes (503 when the database doesn't answer)
+// the round trip is jdbc , it waits on a thread of the bounded elastic scheduler , never on an event loop of webflux
+// (the reactive profile) , spring mvc waits for the Mono like for any async result
+// the answer doesn't wait longer than DATABASE_TIMEOUT_SECONDS , also not for a connection of the pool (its timeout is 30s)
 
 @RestController
 public class PingPongController {
 
-    private static int COUNTER = 0;
+    // a round trip that takes longer doesn't tell anything more , the database is down for the probe
+    private static final int DATABASE_TIMEOUT_SECONDS = 2;
+
+    private final LongAdder pings = new LongAdder();
+    private final RequestStats requestStats;
+    private final JdbcTemplate jdbcTemplate;
+
+    public PingPongController(RequestStats requestStats, DataSource dataSource) {
+        this.requestStats = requestStats;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setQueryTimeout(DATABASE_TIMEOUT_SECONDS);
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record PingPong(String result, Map<String, Long> requests, RollingLatency.Summary latency, Database database){}
 
-    record PingPong(String result){}
+    record Database(boolean up, double millis){}
 
     @GetMapping("/ping")
-    public PingPong getPingPong() {
-        return new PingPong("Pong: %s".formatted(++COUNTER));
+    public Mono<ResponseEntity<PingPong>> getPingPong(@RequestParam(value = "db", defaultValue = "false") boolean db) {
+        pings.increment();
+        if (!db) {
+            return Mono.just(pingPong(null));
+        }
+        long start = System.nanoTime();
+        // the query times out by itself once it runs (setQueryTimeout) , the time waiting for a connection doesn't
+        return Mono.fromCallable(() -> pingDatabase(start))
+                .subscribeOn(Schedulers.boundedElastic())
+                .timeout(Duration.ofSeconds(DATABASE_TIMEOUT_SECONDS))
+                .onErrorResume(TimeoutException.class, e -> Mono.just(new Database(false, millisSince(start))))
+                .map(this::pingPong);
+    }
+
+    private ResponseEntity<PingPong> pingPong(Database database) {
+        PingPong pingPong = new PingPong(
+                "Pong: %s".formatted(pings.sum()), requestStats.requests(), requestStats.latency(), database);
+        return ResponseEntity.status(database == null || database.up() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE)
+                .body(pingPong);
+    }
+
+    private Database pingDatabase(long start) {
+        boolean up;
+        try {
+            jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+            up = true;
+        } catch (RuntimeException e) {
+            up = false;
+        }
+        return new Database(up, millisSince(start));
+    }
+
+    private static double millisSince(long start) {
+        return Math.round((System.nanoTime() - start) / 1_000.0) / 1_000.0;
     }
 
-}
\ No newline at end of file
+}
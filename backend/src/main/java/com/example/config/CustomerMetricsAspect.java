@@ -0,0 +1,65 @@
+package com.example.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Repository;
+
+// times every call of CustomerController , CustomerService and every CustomerDao , so a slow request can be split into
+// the time of the controller , of the service and of the DAOs , the rest of http.server.requests is jackson and the filters
+//   customer.controller  {method}
+//   customer.service     {method}
+//   customer.dao         {dao , method}   dao is the name of the repository (cached , jpa , list) ,
+//                                         a miss of the cache shows up both as dao=cached and as dao=jpa
+// failed calls are counted by exception in customer.controller.errors , customer.service.errors and customer.dao.errors ,
+// the timers themselves are not tagged by exception , every exception would add a whole percentile histogram
+// the percentiles and histograms are configured in application.properties (management.metrics.distribution.*)
+@Aspect
+@Component
+public class CustomerMetricsAspect {
+
+    private final MeterRegistry meterRegistry;
+
+    public CustomerMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * com.example.customer.CustomerController.*(..))")
+    public Object timeController(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time("customer.controller", Tags.empty(), joinPoint);
+    }
+
+    @Around("execution(public * com.example.customer.CustomerService.*(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time("customer.service", Tags.empty(), joinPoint);
+    }
+
+    @Around("execution(public * com.example.customer.CustomerDao+.*(..)) && @within(repository)")
+    public Object timeDao(ProceedingJoinPoint joinPoint, Repository repository) throws Throwable {
+        return time("customer.dao", Tags.of("dao", repository.value()), joinPoint);
+    }
+
+    private Object time(String name, Tags tags, ProceedingJoinPoint joinPoint) throws Throwable {
+        Tags methodTags = tags.and("method", joinPoint.getSignature().getName());
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            Counter.builder(name + ".errors")
+                    .tags(methodTags)
+                    .tag("exception", e.getClass().getSimpleName())
+                    .register(meterRegistry)
+                    .increment();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(name)
+                    .tags(methodTags)
+                    .register(meterRegistry));
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+// the jdbc data source of the reactive profile , spring boot only creates one when there is no r2dbc ConnectionFactory
+// (DataSourceAutoConfiguration) , so with r2dbc on , flyway , jpa , CustomerService , the COPY of the imports and
+// GET /ping?db=true would have none , it is the one spring boot creates otherwise , from spring.datasource.*
+// (the hikari pool of application-reactive.properties) , flyway migrates the schema through it like without the profile
+
+@Configuration
+@Profile("reactive")
+public class ReactiveJdbcConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource")
+    DataSourceProperties dataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource dataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+    }
+
+}
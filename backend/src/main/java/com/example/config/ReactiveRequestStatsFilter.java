@@ -0,0 +1,39 @@
+package com.example.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import reactor.core.publisher.Mono;
+
+// RequestStatsFilter of webflux (the reactive profile) , the requests are recorded in the same RequestStats
+// a request is timed until its response is written
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ReactiveRequestStatsFilter implements WebFilter {
+
+    private final RequestStats requestStats;
+
+    public ReactiveRequestStatsFilter(RequestStats requestStats) {
+        this.requestStats = requestStats;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        long start = System.nanoTime();
+        return chain.filter(exchange)
+                .doFinally(signal -> requestStats.record(endpoint(exchange), start));
+    }
+
+    // the pattern keeps the number of endpoints small , a request nothing was mapped to (404) has none
+    private static String endpoint(ServerWebExchange exchange) {
+        PathPattern pattern = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return exchange.getRequest().getMethod().name() + " " + (pattern == null ? "unmapped" : pattern.getPatternString());
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.config;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// the requests of every endpoint (method and pattern , GET /api/v1/customers/{customerId}) and the latencies of the last
+// minute , for GET /ping (PingPongController) , recorded by RequestStatsFilter (spring mvc) or ReactiveRequestStatsFilter
+// (webflux , the reactive profile)
+// every request only increments LongAdders , so the threads of concurrent requests don't wait for each other here
+// the probes of the load balancer are counted but left out of the latencies , they would make every node look fast
+@Component
+public class RequestStats {
+
+    static final String PING = "GET /ping";
+
+    private final ConcurrentMap<String, LongAdder> requests = new ConcurrentHashMap<>();
+    private final RollingLatency latency = new RollingLatency();
+
+    void record(String endpoint, long start) {
+        requests.computeIfAbsent(endpoint, key -> new LongAdder()).increment();
+        if (!endpoint.equals(PING)) {
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    // sorted by endpoint
+    public Map<String, Long> requests() {
+        Map<String, Long> counts = new TreeMap<>();
+        requests.forEach((endpoint, count) -> counts.put(endpoint, count.sum()));
+        return counts;
+    }
+
+    public RollingLatency.Summary latency() {
+        return latency.summary();
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.config;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// the latencies of about the last minute (6 intervals of 10 seconds , the current one included) , recorded without locks
+// every interval counts the latencies in buckets of LongAdders , 8 buckets for every power of 2 of microseconds ,
+// so a percentile is at most an eighth higher than the real one (it is the upper bound of its bucket)
+// an interval is used again once its time is over , the first latency of the new time empties it ,
+// a latency recorded by another thread at that moment may be lost , fine for a diagnostic
+public class RollingLatency {
+
+    private static final int INTERVALS = 6;
+    private static final long INTERVAL_NANOS = Duration.ofSeconds(10).toNanos();
+    private static final int SUB_BUCKETS = 8;
+    // up to 2^40 microseconds (12 days) , longer ones are counted in the last bucket
+    private static final int MAX_POWER = 40;
+    private static final int BUCKETS = (MAX_POWER - 2) * SUB_BUCKETS;
+
+    private final LongSupplier nanoTime;
+    private final Interval[] intervals = new Interval[INTERVALS];
+
+    public RollingLatency() {
+        this(System::nanoTime);
+    }
+
+    // the tests move the time forward
+    RollingLatency(LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+        for (int i = 0; i < INTERVALS; i++) {
+            intervals[i] = new Interval();
+        }
+    }
+
+    public void record(long latencyNanos) {
+        long now = Math.floorDiv(nanoTime.getAsLong(), INTERVAL_NANOS);
+        Interval interval = intervals[(int) Math.floorMod(now, INTERVALS)];
+        long time = interval.time.get();
+        if (time != now && interval.time.compareAndSet(time, now)) {
+            interval.reset();
+        }
+        long micros = Math.max(latencyNanos / 1_000, 0);
+        interval.count.increment();
+        interval.totalMicros.add(micros);
+        interval.maxMicros.accumulate(micros);
+        interval.buckets[bucket(micros)].increment();
+    }
+
+    public Summary summary() {
+        long now = Math.floorDiv(nanoTime.getAsLong(), INTERVAL_NANOS);
+        long count = 0;
+        long totalMicros = 0;
+        long maxMicros = 0;
+        long[] buckets = new long[BUCKETS];
+        for (Interval interval : intervals) {
+            long time = interval.time.get();
+            if (time == Long.MIN_VALUE || now - time >= INTERVALS) {
+                continue;
+            }
+            count += interval.count.sum();
+            totalMicros += interval.totalMicros.sum();
+            maxMicros = Math.max(maxMicros, interval.maxMicros.get());
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] += interval.buckets[i].sum();
+            }
+        }
+        return new Summary(
+                INTERVALS * (int) Duration.ofNanos(INTERVAL_NANOS).toSeconds(),
+                count,
+                count == 0 ? 0 : millis(totalMicros / (double) count),
+                millis(percentile(buckets, count, 0.50, maxMicros)),
+                millis(percentile(buckets, count, 0.95, maxMicros)),
+                millis(percentile(buckets, count, 0.99, maxMicros)),
+                millis(maxMicros));
+    }
+
+    // the latencies of the window in milliseconds , all 0 when there were none
+    public record Summary(
+            int windowSeconds,
+            long requests,
+            double meanMillis,
+            double p50Millis,
+            double p95Millis,
+            double p99Millis,
+            double maxMillis
+    ) {
+    }
+
+    // below 8 microseconds every value has its own bucket , above the bucket is the power of 2 and the next 3 bits
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int power = 63 - Long.numberOfLeadingZeros(micros);
+        if (power >= MAX_POWER) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (micros >>> (power - 3)) & (SUB_BUCKETS - 1);
+        return (power - 2) * SUB_BUCKETS + subBucket;
+    }
+
+    // the biggest value counted in the bucket
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int power = bucket / SUB_BUCKETS + 2;
+        long subBucket = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << (power - 3)) - 1;
+    }
+
+    private static long percentile(long[] buckets, long count, double percentile, long maxMicros) {
+        long rank = (long) Math.ceil(percentile * count);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(upperBound(i), maxMicros);
+            }
+        }
+        return 0;
+    }
+
+    private static double millis(double micros) {
+        return Math.round(micros) / 1_000.0;
+    }
+
+    private static final class Interval {
+        // which 10 seconds it counts (nanoTime / INTERVAL_NANOS) , MIN_VALUE before it is used the first time
+        private final AtomicLong time = new AtomicLong(Long.MIN_VALUE);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalMicros = new LongAdder();
+        private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+        private Interval() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void reset() {
+            count.reset();
+            totalMicros.reset();
+            maxMicros.reset();
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+        }
+    }
+}
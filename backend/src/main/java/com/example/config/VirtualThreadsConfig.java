@@ -0,0 +1,34 @@
+package com.example.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+// only when spring.threads.virtual.enabled=true , then tomcat runs every request (and so CustomerService) on its own virtual thread
+// instead of one of the 200 threads of its pool , and the connection pool is put behind ConcurrencyLimitingDataSource
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadsConfig {
+
+    // static , it has to exist before the data source is created
+    @Bean
+    static BeanPostProcessor concurrencyLimitingDataSourcePostProcessor(
+            @Value("${customer.db.max-concurrency}") int maxConcurrency,
+            @Value("${customer.db.acquire-timeout}") Duration acquireTimeout) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ConcurrencyLimitingDataSource)) {
+                    return new ConcurrencyLimitingDataSource(dataSource, maxConcurrency, acquireTimeout);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -2,6 +2,7 @@ package com.example.config;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.servlet.config.annotation.CorsRegistration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -24,6 +25,8 @@ public class WebMvcConfig implements WebMvcConfigurer {
         CorsRegistration corsRegistration = registry.addMapping("/api/**");
         allowedOrigins.forEach(corsRegistration::allowedOrigins);
         allowedMethods.forEach(corsRegistration::allowedMethods);
+        // the frontend reads the ETag of the responses and sends it back in If-None-Match and If-Match
+        corsRegistration.exposedHeaders(HttpHeaders.ETAG);
     }
 
 }
@@ -0,0 +1,100 @@
+package com.example.customer;
+
+import com.example.exception.RequestValidationException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// reads a csv (RFC 4180) one record at a time while it is still arriving , only the record being read is in memory
+// fields are separated by commas , a field in double quotes may have commas , line breaks and doubled double quotes ,
+// records end with \n or \r\n
+class CsvReader {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private final StringBuilder field = new StringBuilder();
+    // the line of the next char , and the one the last record started on (a quoted field may span lines)
+    private int line = 1;
+    private int recordLine;
+
+    CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    // the fields of the next record , null at the end
+    List<String> next() {
+        recordLine = line;
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        field.setLength(0);
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new RequestValidationException("line [%s] has a quote that is never closed".formatted(recordLine));
+                }
+                if (c == '"') {
+                    c = read();
+                    if (c != '"') {
+                        quoted = false;
+                        continue;
+                    }
+                }
+                field.append((char) c);
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == -1) {
+                break;
+            } else if (c == '\r') {
+                c = read();
+                if (c == '\n' || c == -1) {
+                    break;
+                }
+                field.append('\r');
+                continue;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    int line() {
+        return recordLine;
+    }
+
+    private int read() {
+        if (position == limit) {
+            try {
+                limit = reader.read(buffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        char c = buffer[position++];
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+}
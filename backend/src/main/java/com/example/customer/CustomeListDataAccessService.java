@@ -1,82 +1,321 @@
 package com.example.customer;
 
+import com.example.exception.DuplicteResourceException;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
 
 
+// in memory customers for many tomcat threads at once
+// customers are indexed by id and ids by email , so every lookup is a hash lookup and reads never take a lock
+// the kept customers are never handed out or changed in place , every read returns a copy and every write stores a new one
 @Repository("list")
 public class CustomeListDataAccessService implements CustomerDao{
 
-    public static final List<Customer> customers;
-
-    static {
-        customers = new ArrayList<>();
+    private final ConcurrentMap<Integer, Customer> customersById = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Integer> idsByEmail = new ConcurrentHashMap<>();
+    private final AtomicInteger idSequence = new AtomicInteger();
+    // the version of all the customers , like customer_changes in the database
+    private final AtomicLong changes = new AtomicLong();
+    // how many customers there are of every gender in every age range , like customer_stats in the database
+    private final ConcurrentMap<StatsKey, LongAdder> stats = new ConcurrentHashMap<>();
 
+    public CustomeListDataAccessService() {
         Customer alex = new Customer(
-                1,
                 "Alex",
                 "alex@gmail.com",
                 21,
                 Gender.MALE
         );
-        customers.add(alex);
+        insertCustomer(alex);
 
         Customer jamila = new Customer(
-                2,
                 "Jamila",
                 "jamila@gmail.com",
                 19,
                 Gender.FEMALE
         );
-        customers.add(jamila);
+        insertCustomer(jamila);
     }
 
     @Override
     public List<Customer> selectAllCustomers() {
-        return  customers;
+        return customersById.values().stream()
+                .sorted(CustomerSort.ID.comparator())
+                .map(Customer::new)
+                .toList();
+    }
+
+    @Override
+    public List<Customer> selectCustomersPage(CustomerSort sort, CustomerCursor after, int limit) {
+        return searchCustomers(new CustomerSearch(null, null, null, null, null), sort, after, limit);
+    }
+
+    @Override
+    public List<Customer> searchCustomers(CustomerSearch search, CustomerSort sort, CustomerCursor after, int limit) {
+        Customer last = after == null ? null : cursorCustomer(after);
+        return customersById.values().stream()
+                .filter(search::matches)
+                .filter(c -> last == null || sort.comparator().compare(c, last) > 0)
+                .sorted(sort.comparator())
+                .limit(limit)
+                .map(Customer::new)
+                .toList();
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        customersById.values().stream()
+                .sorted(CustomerSort.ID.comparator())
+                .map(Customer::new)
+                .forEach(consumer);
     }
 
     @Override
     public Optional<Customer> selectCustomerById(Integer id) {
-        return customers.stream().
-                filter(customer -> customer.getId().equals(id)).
-                findFirst();
+        return Optional.ofNullable(customersById.get(id))
+                .map(Customer::new);
     }
 
+    // like the database , the id is generated when the customer has none and set on the given customer
     @Override
     public void insertCustomer(Customer customer) {
-        customers.add(customer);
+        Integer id = customer.getId();
+        if (id == null) {
+            id = idSequence.incrementAndGet();
+        } else {
+            // generated ids must never collide with the given one
+            idSequence.accumulateAndGet(id, Math::max);
+        }
+
+        // reserving the email is atomic , of two concurrent inserts of the same email only one wins (like customer_email_unique)
+        if (idsByEmail.putIfAbsent(customer.getEmail(), id) != null) {
+            throw new DuplicteResourceException("email already taken");
+        }
+        Customer stored = new Customer(customer);
+        stored.setId(id);
+        stored.setVersion(0L);
+        if (customersById.putIfAbsent(id, stored) != null) {
+            idsByEmail.remove(customer.getEmail(), id);
+            throw new DuplicteResourceException("customer with id [%s] already exists".formatted(id));
+        }
+        customer.setId(id);
+        customer.setVersion(0L);
+        changes.incrementAndGet();
+        count(stored, 1);
+    }
+
+    // all or nothing like the database transaction , the customers inserted before a failing one are removed again
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        List<Customer> inserted = new ArrayList<>();
+        try {
+            for (Customer customer : customers) {
+                insertCustomer(customer);
+                inserted.add(customer);
+            }
+        } catch (DuplicteResourceException e) {
+            inserted.forEach(customer -> deleteCustomerById(customer.getId()));
+            throw e;
+        }
+    }
+
+    @Override
+    public long importCustomers(Iterator<CustomerImportRow> rows, Consumer<CustomerImportRow> emailTaken) {
+        long inserted = 0;
+        while (rows.hasNext()) {
+            CustomerImportRow row = rows.next();
+            try {
+                insertCustomer(row.toCustomer());
+                inserted++;
+            } catch (DuplicteResourceException e) {
+                emailTaken.accept(row);
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return emails.stream()
+                .filter(idsByEmail::containsKey)
+                .collect(Collectors.toSet());
     }
 
     @Override
     public boolean isPersonExistWithEmail(String email) {
-        return customers.stream().anyMatch(c-> c.getEmail().equals(email));
+        return idsByEmail.containsKey(email);
     }
 
     @Override
     public boolean isPersonExistWithId(Integer id) {
-        return customers.stream().anyMatch(c-> c.getId().equals(id));
+        return customersById.containsKey(id);
+
+    }
 
+    @Override
+    public int deleteCustomerById(Integer id) {
+        Customer removed = customersById.remove(id);
+        if (removed == null) {
+            return 0;
+        }
+        idsByEmail.remove(removed.getEmail(), id);
+        changes.incrementAndGet();
+        count(removed, -1);
+        return 1;
     }
 
+    // the version is checked under the lock of the entry , like in updateCustomer
     @Override
-    public void deleteCustomerById(Integer id) {
-        customers.stream().filter(c-> c.getId().equals(id)).findFirst().ifPresent(customers::remove);
+    public int deleteCustomerByIdAndVersion(Integer id, long version) {
+        Customer[] removed = {null};
+        customersById.computeIfPresent(id, (key, current) -> {
+            if (current.getVersion() != version) {
+                return current;
+            }
+            removed[0] = current;
+            return null;
+        });
+        if (removed[0] == null) {
+            return 0;
+        }
+        idsByEmail.remove(removed[0].getEmail(), id);
+        changes.incrementAndGet();
+        count(removed[0], -1);
+        return 1;
     }
 
+    // compute locks only the entry of this id , so concurrent updates (or a delete) of the same customer run one after the other
+    // while customers with other ids are updated in parallel , the version is checked and incremented under that lock
     @Override
-    public void updateCustomer(Customer update) {
-        customers.add(update);
+    public CustomerUpdateStatus updateCustomer(Integer id, CustomerUpdateRequest update) {
+        CustomerUpdateStatus[] status = {CustomerUpdateStatus.NOT_FOUND};
+        customersById.computeIfPresent(id, (key, current) -> {
+            if (update.version() != null && !update.version().equals(current.getVersion())) {
+                status[0] = CustomerUpdateStatus.STALE;
+                return current;
+            }
+            Customer updated = new Customer(current);
+            if (update.name() != null) {
+                updated.setName(update.name());
+            }
+            if (update.email() != null) {
+                updated.setEmail(update.email());
+            }
+            if (update.age() != null) {
+                updated.setAge(update.age());
+            }
+            if (updated.equals(current)) {
+                status[0] = CustomerUpdateStatus.UNCHANGED;
+                return current;
+            }
+
+            if (!current.getEmail().equals(updated.getEmail())) {
+                if (idsByEmail.putIfAbsent(updated.getEmail(), id) != null) {
+                    throw new DuplicteResourceException("email already taken");
+                }
+                idsByEmail.remove(current.getEmail(), id);
+            }
+            updated.setVersion(current.getVersion() + 1);
+            status[0] = CustomerUpdateStatus.UPDATED;
+            count(current, -1);
+            count(updated, 1);
+            return updated;
+        });
+        if (status[0] == CustomerUpdateStatus.UPDATED) {
+            changes.incrementAndGet();
+        }
+        return status[0];
     }
 
     @Override
     public Optional<Customer> selectCustomerByEmail(String email) {
-        return customers.stream()
-                .filter(c -> c.getName().equals(email))
-                .findFirst();
+        Integer id = idsByEmail.get(email);
+        if (id == null) {
+            return Optional.empty();
+        }
+        // the customer may have changed its email since the email index was read
+        return Optional.ofNullable(customersById.get(id))
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::new);
+    }
+
+    @Override
+    public Optional<Long> selectCustomerVersion(Integer id) {
+        return Optional.ofNullable(customersById.get(id))
+                .map(Customer::getVersion);
+    }
+
+    @Override
+    public long selectCustomersVersion() {
+        return changes.get();
+    }
+
+    @Override
+    public CustomerStats selectCustomerStats() {
+        return CustomerStats.of(stats.entrySet().stream()
+                .map(count -> new CustomerStats.Count(count.getKey().gender(), count.getKey().ageFrom(), count.getValue().sum()))
+                .toList());
+    }
+
+    // every customer is compared , there is no index of the trigrams , fine for the few customers kept in memory
+    @Override
+    public List<Customer> selectDuplicateCandidates(String name, String email, double minSimilarity, int limit) {
+        Set<Customer> candidates = new LinkedHashSet<>();
+        if (name != null) {
+            candidates.addAll(mostSimilar(minSimilarity, limit, c -> Trigrams.similarity(c.getName(), name)));
+        }
+        if (email != null) {
+            String localPart = CustomerDuplicate.emailLocalPart(email);
+            candidates.addAll(mostSimilar(minSimilarity, limit,
+                    c -> Trigrams.similarity(CustomerDuplicate.emailLocalPart(c.getEmail()), localPart)));
+        }
+        return candidates.stream()
+                .map(Customer::new)
+                .toList();
+    }
+
+    private List<Customer> mostSimilar(double minSimilarity, int limit, ToDoubleFunction<Customer> similarity) {
+        return customersById.values().stream()
+                .filter(c -> similarity.applyAsDouble(c) >= minSimilarity)
+                .sorted(Comparator.comparingDouble(similarity).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    // a customer holding the values of the cursor , so it can be compared using the same comparator of the sort
+    private static Customer cursorCustomer(CustomerCursor cursor) {
+        Customer customer = new Customer();
+        customer.setId(cursor.id());
+        switch (cursor.sort()) {
+            case NAME -> customer.setName(cursor.value());
+            case AGE -> customer.setAge(Integer.valueOf(cursor.value()));
+            default -> { }
+        }
+        return customer;
+    }
+
+    private void count(Customer customer, int customers) {
+        stats.computeIfAbsent(new StatsKey(customer.getGender(), CustomerStats.ageFrom(customer.getAge())), key -> new LongAdder())
+                .add(customers);
+    }
+
+    private record StatsKey(Gender gender, int ageFrom) {
     }
 
 
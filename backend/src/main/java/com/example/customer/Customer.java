@@ -3,7 +3,11 @@ package com.example.customer;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 
 @Data
@@ -17,19 +21,30 @@ import lombok.NoArgsConstructor;
                         name = "customer_email_unique",
                         columnNames = "email"
                 )
+        },
+        indexes = {
+                // keyset pagination ordered by name or age , the id breaks the ties
+                @Index(name = "customer_name_id_idx", columnList = "name, id"),
+                @Index(name = "customer_age_id_idx", columnList = "age, id"),
+                // search by gender (and age) , the expression and trigram indexes are only in the migrations (V8 , V9)
+                @Index(name = "customer_gender_age_id_idx", columnList = "gender, age, id")
         }
 )
 public class Customer {
     @Id
-    @SequenceGenerator(
+    @GenericGenerator(
             name = "customer_id_sequence",
-            sequenceName = "customer_id_sequence",
-            allocationSize = 1
+            type = CustomerIdGenerator.class,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "customer_id_sequence")
     )
-    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_id_sequence")
+    @GeneratedValue(generator = "customer_id_sequence") // ids are allocated in blocks , see CustomerIdGenerator
     private Integer id;
 
 
+    public Customer(Integer id, String name, String email, Integer age, Gender gender) {
+        this(id, name, email, age, gender, null);
+    }
+
     public Customer(String name, String email, Integer age, Gender gender) {
         this.name = name;
         this.email = email;
@@ -37,6 +52,11 @@ public class Customer {
         this.gender = gender;
     }
 
+    // copy of another customer , used where customers are kept in memory so callers can't change the kept ones
+    public Customer(Customer customer) {
+        this(customer.id, customer.name, customer.email, customer.age, customer.gender, customer.version);
+    }
+
     @Column(nullable = false)
     private String name;
 
@@ -50,6 +70,13 @@ public class Customer {
     @Enumerated(EnumType.STRING) // we don't want the value of gender be 0 or 1 , but instead we want the actual enum value so male or female
     private Gender gender;
 
+    // incremented by every update , an update made for an older version is refused (see CustomerRepository.updateCustomer)
+    // it is left out of equals , two customers with the same values are equal whatever their version
+    @Version
+    @Column(nullable = false)
+    @EqualsAndHashCode.Exclude
+    private Long version;
+
 
 }
 
@@ -0,0 +1,78 @@
+package com.example.customer;
+
+import com.example.exception.RequestValidationException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// the rows of one batch registration (POST /api/v1/customers/batch) and their results , the same for CustomerService and
+// ReactiveCustomerService , which only differ in how they ask the DAO for the taken emails and insert the customers
+// of() checks the batch , checkEmails() rejects the rows that can't be registered , the others are customers() ,
+// response() once they are inserted (and have their ids)
+class CustomerBatchRegistration {
+
+    private final List<CustomerRegistrationRequest> requests;
+    private final CustomerRegistrationResult[] results;
+    private final List<Customer> customers = new ArrayList<>();
+    private final List<Integer> indexes = new ArrayList<>();
+
+    private CustomerBatchRegistration(List<CustomerRegistrationRequest> requests) {
+        this.requests = requests;
+        this.results = new CustomerRegistrationResult[requests.size()];
+    }
+
+    static CustomerBatchRegistration of(List<CustomerRegistrationRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new RequestValidationException("no customers to register");
+        }
+        if (requests.size() > CustomerService.MAX_BATCH_SIZE) {
+            throw new RequestValidationException(
+                    "at most [%s] customers can be registered at once".formatted(CustomerService.MAX_BATCH_SIZE)
+            );
+        }
+        return new CustomerBatchRegistration(requests);
+    }
+
+    Set<String> emails() {
+        return requests.stream()
+                .map(CustomerRegistrationRequest::email)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+    // the emails of the batch are added while going through it , so a repeated email is taken by its first row
+    void checkEmails(Collection<String> existingEmails) {
+        Set<String> takenEmails = new HashSet<>(existingEmails);
+        for (int i = 0; i < requests.size(); i++) {
+            CustomerRegistrationRequest request = requests.get(i);
+            if (request.name() == null || request.email() == null || request.age() == null || request.gender() == null) {
+                results[i] = CustomerRegistrationResult.rejected(
+                        i, request.email(), CustomerRegistrationStatus.INVALID, "name , email , age and gender are required");
+            } else if (!takenEmails.add(request.email())) {
+                results[i] = CustomerRegistrationResult.rejected(
+                        i, request.email(), CustomerRegistrationStatus.EMAIL_TAKEN, "email already taken");
+            } else {
+                customers.add(new Customer(request.name(), request.email(), request.age(), request.gender()));
+                indexes.add(i);
+            }
+        }
+    }
+
+    List<Customer> customers() {
+        return customers;
+    }
+
+    CustomerBatchRegistrationResponse response() {
+        for (int i = 0; i < customers.size(); i++) {
+            results[indexes.get(i)] = CustomerRegistrationResult.created(indexes.get(i), customers.get(i));
+        }
+        return new CustomerBatchRegistrationResponse(
+                customers.size(), requests.size() - customers.size(), Arrays.asList(results));
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.customer;
+
+import java.util.List;
+
+// results has one entry per row of the request , in the same order
+public record CustomerBatchRegistrationResponse(
+        int created,
+        int rejected,
+        List<CustomerRegistrationResult> results
+) {
+}
@@ -0,0 +1,244 @@
+package com.example.customer;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+// keeps the customers read by id and by email in memory in front of the jpa DAO , most requests are GET /api/v1/customers/{id}
+// the caches are bounded by size and every entry expires after customer.cache.time-to-live , so a change made to the table
+// by anything else than this application is seen at the latest after that time
+// only found customers are cached , a customer that doesn't exist is always looked up again
+// the kept customers are never handed out , every read returns a copy (CustomerService changes the customer it gets)
+// hits , misses and evictions of both caches are published as cache.* metrics (cache=customers-by-id / customers-by-email)
+// a customer is loaded outside of the locks of the cache , the cache only keeps the (not yet completed) future of the load ,
+// a virtual thread that waits for a database connection while holding such a lock would pin its carrier thread
+@Repository("cached")
+public class CustomerCachingDataAccessService implements CustomerDao {
+
+    private final CustomerDao customerDao;
+    private final AsyncCache<Integer, Customer> customersById;
+    // only the id , the customer itself is kept once in customersById
+    private final Cache<String, Integer> idsByEmail;
+
+    @Autowired
+    public CustomerCachingDataAccessService(@Qualifier("jpa") CustomerDao customerDao,
+                                            @Value("${customer.cache.maximum-size}") long maximumSize,
+                                            @Value("${customer.cache.time-to-live}") Duration timeToLive,
+                                            MeterRegistry meterRegistry) {
+        // the maintenance of the caches (evictions , removal of expired entries) runs on the thread that touched them ,
+        // not on the common fork join pool , it is only a few map operations
+        this(customerDao, maximumSize, timeToLive, meterRegistry, Ticker.systemTicker(), Runnable::run);
+    }
+
+    // the ticker lets the tests move the time forward
+    CustomerCachingDataAccessService(CustomerDao customerDao,
+                                     long maximumSize,
+                                     Duration timeToLive,
+                                     MeterRegistry meterRegistry,
+                                     Ticker ticker,
+                                     Executor executor) {
+        this.customerDao = customerDao;
+        this.customersById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .ticker(ticker)
+                .executor(executor)
+                .recordStats()
+                .buildAsync();
+        this.idsByEmail = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .ticker(ticker)
+                .executor(executor)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, customersById, "customers-by-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, idsByEmail, "customers-by-email");
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return customerDao.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomersPage(CustomerSort sort, CustomerCursor after, int limit) {
+        return customerDao.selectCustomersPage(sort, after, limit);
+    }
+
+    @Override
+    public List<Customer> searchCustomers(CustomerSearch search, CustomerSort sort, CustomerCursor after, int limit) {
+        return customerDao.searchCustomers(search, sort, after, limit);
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        customerDao.streamAllCustomers(consumer);
+    }
+
+    // concurrent misses of the same id wait for one load instead of all going to the database
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return Optional.ofNullable(getCustomer(id))
+                .map(Customer::new);
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        customerDao.insertCustomer(customer);
+        // a registered customer is usually read right after
+        customersById.put(customer.getId(), CompletableFuture.completedFuture(new Customer(customer)));
+        idsByEmail.put(customer.getEmail(), customer.getId());
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        customerDao.insertCustomers(customers);
+        // nothing to invalidate , missing customers are never cached , and a batch is too big to be worth caching
+    }
+
+    @Override
+    public long importCustomers(Iterator<CustomerImportRow> rows, Consumer<CustomerImportRow> emailTaken) {
+        return customerDao.importCustomers(rows, emailTaken);
+        // nothing to invalidate , like a batch
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return customerDao.selectExistingEmails(emails);
+    }
+
+    @Override
+    public boolean isPersonExistWithEmail(String email) {
+        return selectCustomerByEmail(email).isPresent();
+    }
+
+    @Override
+    public boolean isPersonExistWithId(Integer id) {
+        CompletableFuture<Customer> cached = customersById.getIfPresent(id);
+        return (cached != null && cached.getNow(null) != null) || customerDao.isPersonExistWithId(id);
+    }
+
+    // invalidated after the database was changed , a load of the id that is still running is removed with it ,
+    // so what it read before the change is handed to the requests waiting for it but never kept
+    @Override
+    public int deleteCustomerById(Integer id) {
+        int deleted = customerDao.deleteCustomerById(id);
+        invalidate(id);
+        return deleted;
+    }
+
+    @Override
+    public int deleteCustomerByIdAndVersion(Integer id, long version) {
+        int deleted = customerDao.deleteCustomerByIdAndVersion(id, version);
+        invalidate(id);
+        return deleted;
+    }
+
+    // also when nothing was updated , a stale update means the cached customer may be out of date as well
+    @Override
+    public CustomerUpdateStatus updateCustomer(Integer id, CustomerUpdateRequest update) {
+        try {
+            return customerDao.updateCustomer(id, update);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    // the email entry only points to an id , the customer of that id must still have this email
+    @Override
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        Integer id = idsByEmail.getIfPresent(email);
+        if (id != null) {
+            Customer customer = getCustomer(id);
+            if (customer != null && customer.getEmail().equals(email)) {
+                return Optional.of(new Customer(customer));
+            }
+            idsByEmail.invalidate(email);
+        }
+
+        // only the id is remembered , putting the customer itself could overwrite the invalidation of an update that ran
+        // in the meantime , the next lookup loads it through customersById
+        Optional<Customer> customer = customerDao.selectCustomerByEmail(email);
+        customer.ifPresent(c -> idsByEmail.put(email, c.getId()));
+        return customer;
+    }
+
+    // always the version of the database (one column of one row) , not the one of the cached customer , with several
+    // instances another one may have changed the customer , If-None-Match would get 304 (not modified) for a stale
+    // version until the entry expires
+    // a cached customer of another version is dropped , so the GET that follows a changed ETag doesn't return it
+    @Override
+    public Optional<Long> selectCustomerVersion(Integer id) {
+        Optional<Long> version = customerDao.selectCustomerVersion(id);
+        CompletableFuture<Customer> cached = customersById.getIfPresent(id);
+        Customer customer = cached == null ? null : cached.getNow(null);
+        if (customer != null && !version.equals(Optional.ofNullable(customer.getVersion()))) {
+            invalidate(id);
+        }
+        return version;
+    }
+
+    @Override
+    public long selectCustomersVersion() {
+        return customerDao.selectCustomersVersion();
+    }
+
+    @Override
+    public CustomerStats selectCustomerStats() {
+        return customerDao.selectCustomerStats();
+    }
+
+    @Override
+    public List<Customer> selectDuplicateCandidates(String name, String email, double minSimilarity, int limit) {
+        return customerDao.selectDuplicateCandidates(name, email, minSimilarity, limit);
+    }
+
+    // the first miss puts an uncompleted future into the cache and loads the customer , the others wait for that future
+    // a future completed with null (no such customer) is removed by the cache
+    private Customer getCustomer(Integer id) {
+        CompletableFuture<Customer> load = new CompletableFuture<>();
+        CompletableFuture<Customer> customer = customersById.get(id, (key, executor) -> load);
+        if (customer == load) {
+            try {
+                load.complete(customerDao.selectCustomerById(id).orElse(null));
+            } catch (RuntimeException e) {
+                load.completeExceptionally(e);
+            }
+        }
+        try {
+            return customer.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void invalidate(Integer id) {
+        CompletableFuture<Customer> removed = customersById.asMap().remove(id);
+        Customer customer = removed == null ? null : removed.getNow(null);
+        if (customer != null) {
+            idsByEmail.invalidate(customer.getEmail());
+        }
+    }
+}
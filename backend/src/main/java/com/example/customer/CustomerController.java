@@ -1,48 +1,238 @@
 package com.example.customer;
 
-
+import com.example.exception.PreconditionFailedException;
+import com.example.exception.RequestValidationException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 
+// the reactive profile answers the same endpoints with ReactiveCustomerController instead
 @RestController
 @RequestMapping("/api/v1/customers")
+@Profile("!reactive")
 public class CustomerController {
 
+    static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
+
     private final CustomerService customerService;
+    private final ObjectMapper objectMapper;
 
-    public CustomerController(CustomerService customerService) {
+    public CustomerController(CustomerService customerService, ObjectMapper objectMapper) {
         this.customerService = customerService;
+        this.objectMapper = objectMapper;
     }
 
+    // the version is read before the customers , a change committed in between makes the next request read them again ,
+    // the other way round the list could be answered with a version newer than it is and never be read again
     //@GetMapping("/api/v1/customers")
     @GetMapping
-    public List<Customer> getCutomers() {
-        return customerService.getAllCustomers();
+    public ResponseEntity<List<Customer>> getCutomers(WebRequest request, HttpServletResponse response) {
+        // weak , tomcat only compresses it with a weak ETag , and gzip bodies of the same version aren't the same bytes
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        String eTag = "W/" + eTag(customerService.getCustomersVersion(), representation(accept(request)));
+        if (request.checkNotModified(eTag)) {
+            return null; // 304 (not modified) , the customers aren't read
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .body(customerService.getAllCustomers());
+    }
+
+    @GetMapping("page")
+    public CustomerPage getCustomersPage(
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
+        return customerService.getCustomersPage(sort, cursor, size);
+    }
+
+    // for support , instead of reading all the customers and filtering them in the browser
+    @GetMapping("search")
+    public CustomerPage searchCustomers(
+            @RequestParam(value = "name", required = false) String name,
+            @RequestParam(value = "emailDomain", required = false) String emailDomain,
+            @RequestParam(value = "minAge", required = false) Integer minAge,
+            @RequestParam(value = "maxAge", required = false) Integer maxAge,
+            @RequestParam(value = "gender", required = false) Gender gender,
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
+        return customerService.searchCustomers(
+                new CustomerSearch(name, emailDomain, minAge, maxAge, gender), sort, cursor, size);
+    }
+
+
+    // polled by the dashboards , a few rows are read whatever the number of customers
+    @GetMapping("stats")
+    public CustomerStats getCustomerStats() {
+        return customerService.getCustomerStats();
     }
 
+    // every customer as one JSON object per line (NDJSON) , written while the rows are still being read from the database
+    // so the first bytes go out before the query finishes and memory doesn't grow with the number of customers
+    @GetMapping(value = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCustomers() {
+        StreamingResponseBody body = outputStream -> {
+            SequenceWriter writer = objectMapper.writerFor(Customer.class)
+                    .withRootValueSeparator("\n")
+                    .writeValues(outputStream);
+            customerService.exportCustomers(customer -> {
+                try {
+                    writer.write(customer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
 
+    // If-None-Match only needs the version of the customer , it is read and serialized when it changed
     @GetMapping("{customerId}")
-    public Customer getCustomer(@PathVariable Integer customerId) {
-        return customerService.getCustomer(customerId);
+    // the ETag is the one of the representation asked for , a JSON ETag doesn't match the CBOR body of the same version
+    public ResponseEntity<Customer> getCustomer(
+            @PathVariable Integer customerId, WebRequest request, HttpServletResponse response) {
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        String representation = representation(accept(request));
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                && request.checkNotModified(eTag(customerService.getCustomerVersion(customerId), representation))) {
+            return null; // 304 (not modified)
+        }
+        Customer customer = customerService.getCustomer(customerId);
+        return ResponseEntity.ok()
+                .eTag(eTag(customer.getVersion(), representation))
+                .body(customer);
     }
 
     //@PostMapping("/api/v1/customer")
     @PostMapping
-    public void registerCustomer(@RequestBody CustomerRegistrationRequest request) {
-        customerService.addCustomer(request);
+    public CustomerRegistrationResponse registerCustomer(@RequestBody CustomerRegistrationRequest request) {
+        return customerService.addCustomer(request);
+    }
+
+    // the customers a registration would look like , before registering it
+    @PostMapping("duplicates")
+    public List<CustomerDuplicate> findDuplicates(@RequestBody CustomerRegistrationRequest request) {
+        return customerService.findDuplicates(request);
+    }
+
+    @PostMapping("batch")
+    public CustomerBatchRegistrationResponse registerCustomers(@RequestBody List<CustomerRegistrationRequest> requests) {
+        return customerService.addCustomers(requests);
     }
 
+    // a csv with a header line , read from the request while it is imported , see CustomerService.importCustomers
+    @PostMapping(value = "import", consumes = "text/csv")
+    public CustomerImportResponse importCustomers(Reader csv) {
+        return customerService.importCustomers(csv);
+    }
+
+    // with If-Match the customer is only deleted (or updated) when its ETag is still the given one , 412 otherwise
     @DeleteMapping("{customerId}")
     public void deleteCustomer(
-            @PathVariable("customerId") Integer customerId) {
-        customerService.deleteCustomerById(customerId);
+            @PathVariable("customerId") Integer customerId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long version = version(ifMatch);
+        if (version == null) {
+            customerService.deleteCustomerById(customerId);
+        } else {
+            customerService.deleteCustomerById(customerId, version);
+        }
     }
 
     @PutMapping("{customerId}")
     public void updateCustomer(
             @PathVariable("customerId") Integer customerId,
-            @RequestBody CustomerUpdateRequest updateRequest) {
-        customerService.updateCustomer(customerId, updateRequest);
+            @RequestBody CustomerUpdateRequest updateRequest,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long version = version(ifMatch);
+        if (version == null) {
+            customerService.updateCustomer(customerId, updateRequest);
+        } else {
+            customerService.updateCustomer(customerId, updateRequest, version);
+        }
+    }
+
+    // strong ETags , the version of the customer in quotes (the list makes it weak)
+    static String eTag(long version) {
+        return eTag(version, "");
+    }
+
+    // a strong ETag stands for the exact bytes , so CBOR and Smile bodies get their own ("7-cbor") , JSON keeps "7"
+    static String eTag(long version, String representation) {
+        return "\"" + version + (representation.isEmpty() ? "" : "-" + representation) + "\"";
+    }
+
+    // the body spring will write for this Accept , the first converter (JSON) for any type it takes , "" for JSON
+    static String representation(List<String> accept) {
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            return ""; // spring answers it with its own error
+        }
+        mediaTypes.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        for (MediaType mediaType : mediaTypes) {
+            if (mediaType.getQualityValue() == 0) {
+                continue;
+            }
+            if (mediaType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                return "";
+            }
+            if (mediaType.isCompatibleWith(MediaType.APPLICATION_CBOR)) {
+                return "cbor";
+            }
+            if (mediaType.isCompatibleWith(SMILE)) {
+                return "smile";
+            }
+        }
+        return "";
+    }
+
+    private static List<String> accept(WebRequest request) {
+        String[] accept = request.getHeaderValues(HttpHeaders.ACCEPT);
+        return accept == null ? List.of() : Arrays.asList(accept);
+    }
+
+    // the version of the one ETag of If-Match , null without If-Match or for * (any version)
+    // a weak ETag never matches , If-Match compares strongly
+    static Long version(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String eTag = ifMatch.trim();
+        if (eTag.startsWith("W/")) {
+            throw new PreconditionFailedException("If-Match doesn't accept weak ETags");
+        }
+        if (eTag.length() < 3 || !eTag.startsWith("\"") || !eTag.endsWith("\"")) {
+            throw new RequestValidationException("If-Match must be one ETag of the customer");
+        }
+        // the version is the same whichever representation the ETag was of
+        String value = eTag.substring(1, eTag.length() - 1);
+        int representation = value.indexOf('-', 1);
+        try {
+            return Long.valueOf(representation < 0 ? value : value.substring(0, representation));
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException("[%s] isn't an ETag of the customer".formatted(eTag));
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.example.customer;
+
+import com.example.exception.RequestValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// position of the last customer of a page , the next page starts right after it
+// it is handed to the client as an opaque token so the client never builds it by itself
+public record CustomerCursor(CustomerSort sort, Integer id, String value) {
+
+    public static CustomerCursor after(CustomerSort sort, Customer customer) {
+        return new CustomerCursor(sort, customer.getId(), sort.keyOf(customer));
+    }
+
+    public String encode() {
+        String raw = sort.name() + ":" + id + ":" + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static CustomerCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            // limit 3 , the name (value) itself may contain ':'
+            String[] parts = raw.split(":", 3);
+            CustomerSort sort = CustomerSort.valueOf(parts[0]);
+            Integer id = Integer.valueOf(parts[1]);
+            String value = parts[2];
+            if (sort == CustomerSort.AGE) {
+                Integer.parseInt(value);
+            }
+            return new CustomerCursor(sort, id, value);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new RequestValidationException("invalid cursor [%s]".formatted(token));
+        }
+    }
+}
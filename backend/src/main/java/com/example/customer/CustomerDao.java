@@ -1,16 +1,46 @@
 package com.example.customer;
 
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface CustomerDao {
 
     List<Customer> selectAllCustomers();
+    // keyset page , after is null for the first page
+    List<Customer> selectCustomersPage(CustomerSort sort, CustomerCursor after, int limit);
+    // the same page , of the customers matching the search only
+    List<Customer> searchCustomers(CustomerSearch search, CustomerSort sort, CustomerCursor after, int limit);
+    // hands every customer to the consumer one by one (ordered by id) without holding the whole table in memory
+    void streamAllCustomers(Consumer<Customer> consumer);
     Optional<Customer> selectCustomerById(Integer id);
     void insertCustomer(Customer customer);
+    // all of them or none , the generated ids are set on the given customers
+    void insertCustomers(List<Customer> customers);
+    // inserts every row whose email isn't taken (by a customer or an earlier row) , the others are handed to emailTaken
+    // in the order of the rows , the rows are read while they are inserted , returns how many were inserted
+    long importCustomers(Iterator<CustomerImportRow> rows, Consumer<CustomerImportRow> emailTaken);
+    // which of the given emails are already taken
+    Set<String> selectExistingEmails(Collection<String> emails);
     boolean isPersonExistWithEmail(String email);
     boolean isPersonExistWithId(Integer id);
-    void deleteCustomerById(Integer id);
-    void updateCustomer(Customer update);
+    // how many customers were deleted , 0 when there was none with the id
+    int deleteCustomerById(Integer id);
+    // the same , 0 also when the customer has another version
+    int deleteCustomerByIdAndVersion(Integer id, long version);
+    // changes only the given values , in one step that also checks the version and whether anything changes at all
+    CustomerUpdateStatus updateCustomer(Integer id, CustomerUpdateRequest update);
     Optional<Customer> selectCustomerByEmail(String email);
+    // the version of the customer (its ETag) , without reading the customer itself
+    Optional<Long> selectCustomerVersion(Integer id);
+    // the version of all the customers together (the ETag of the list) , it grows with every change of any customer
+    long selectCustomersVersion();
+    // how many customers there are by gender and age range , kept up to date by every change instead of counted
+    CustomerStats selectCustomerStats();
+    // the customers whose name or email (before the @) is at least minSimilarity similar (pg_trgm) ,
+    // the most similar (at most limit) of each , name or email may be null , they are not ordered
+    List<Customer> selectDuplicateCandidates(String name, String email, double minSimilarity, int limit);
 }
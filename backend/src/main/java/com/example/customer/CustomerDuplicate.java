@@ -0,0 +1,26 @@
+package com.example.customer;
+
+// a registered customer that looks like the same person , the similarities are the ones of pg_trgm (0 nothing alike , 1 the same)
+// the email similarity is the one of the part before the @ , the domain is left out
+public record CustomerDuplicate(
+        Customer customer,
+        double nameSimilarity,
+        double emailSimilarity
+) {
+    static CustomerDuplicate of(Customer customer, String name, String email) {
+        return new CustomerDuplicate(
+                customer,
+                name == null ? 0 : Trigrams.similarity(customer.getName(), name),
+                email == null ? 0 : Trigrams.similarity(emailLocalPart(customer.getEmail()), emailLocalPart(email)));
+    }
+
+    // what split_part(email, '@', 1) returns
+    static String emailLocalPart(String email) {
+        int at = email.indexOf('@');
+        return at < 0 ? email : email.substring(0, at);
+    }
+
+    double similarity() {
+        return Math.max(nameSimilarity, emailSimilarity);
+    }
+}
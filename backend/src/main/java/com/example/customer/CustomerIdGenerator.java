@@ -0,0 +1,29 @@
+package com.example.customer;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+// ids of new customers come from customer_id_sequence in blocks (pooled-lo) :
+// one nextval returns the first id of a block and the next (allocation size - 1) inserts don't go to the sequence at all
+// the block size is the customer.id.allocation-size property , flyway (R__Customer_Id_Sequence_Increment.sql) makes it the increment of the sequence
+public class CustomerIdGenerator extends SequenceStyleGenerator {
+
+    public static final String ALLOCATION_SIZE_SETTING = "customer.id.allocation-size";
+    public static final String DEFAULT_ALLOCATION_SIZE = "50";
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) throws MappingException {
+        String allocationSize = serviceRegistry.getService(ConfigurationService.class)
+                .getSetting(ALLOCATION_SIZE_SETTING, StandardConverters.STRING, DEFAULT_ALLOCATION_SIZE);
+        parameters.setProperty(INCREMENT_PARAM, allocationSize);
+        parameters.setProperty(OPT_PARAM, StandardOptimizerDescriptor.POOLED_LO.getExternalName());
+        super.configure(type, parameters, serviceRegistry);
+    }
+}
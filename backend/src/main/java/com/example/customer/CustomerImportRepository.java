@@ -0,0 +1,12 @@
+package com.example.customer;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+// part of CustomerRepository , implemented by CustomerImportRepositoryImpl because it streams the rows with COPY
+public interface CustomerImportRepository {
+
+    // inserts every row whose email isn't taken (by a customer or an earlier row) , the others are handed to emailTaken
+    // in the order of the rows , it must run in a transaction , returns how many were inserted
+    long importCustomers(Iterator<CustomerImportRow> rows, Consumer<CustomerImportRow> emailTaken);
+}
@@ -0,0 +1,172 @@
+package com.example.customer;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+// the rows are copied (COPY) into a temporary table in chunks while they are read , only the chunk being copied is in memory ,
+// then one INSERT moves them into customer and skips the emails that are taken (customer_email_unique) ,
+// so the triggers run once for the whole import , the skipped rows are read back in the order of the rows
+class CustomerImportRepositoryImpl implements CustomerImportRepository {
+
+    // dropped with the transaction , line keeps the order of the rows , gender is checked by the INSERT into customer
+    private static final String CREATE_STAGING = """
+            CREATE TEMPORARY TABLE customer_import (
+                line   INT    NOT NULL,
+                id     BIGINT NOT NULL,
+                name   TEXT   NOT NULL,
+                email  TEXT   NOT NULL,
+                age    INT    NOT NULL,
+                gender TEXT   NOT NULL
+            ) ON COMMIT DROP
+            """;
+    private static final String COPY = "COPY customer_import (line, id, name, email, age, gender) FROM STDIN (FORMAT csv)";
+    private static final String NEXT_ID_BLOCKS = "SELECT nextval('customer_id_sequence') FROM generate_series(1, ?)";
+    // ON CONFLICT DO NOTHING also skips a row whose email an earlier row of the same INSERT took , ORDER BY line makes
+    // the first row of the csv the one that is inserted , version is 0 by default
+    private static final String MERGE = """
+            WITH inserted AS (
+                INSERT INTO customer (id, name, email, age, gender)
+                SELECT id, name, email, age, gender FROM customer_import ORDER BY line
+                ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+                RETURNING id
+            )
+            SELECT i.line, i.name, i.email, i.age, i.gender
+            FROM customer_import i
+            WHERE NOT EXISTS (SELECT 1 FROM inserted n WHERE n.id = i.id)
+            ORDER BY i.line
+            """;
+    private static final int CHUNK_SIZE = 10_000;
+    private static final int FETCH_SIZE = 1_000;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final EntityManager entityManager;
+    private final int allocationSize;
+
+    CustomerImportRepositoryImpl(EntityManager entityManager,
+                                 @Value("${customer.id.allocation-size}") int allocationSize) {
+        this.entityManager = entityManager;
+        this.allocationSize = allocationSize;
+    }
+
+    @Override
+    public long importCustomers(Iterator<CustomerImportRow> rows, Consumer<CustomerImportRow> emailTaken) {
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_STAGING);
+            }
+            long staged = 0;
+            List<CustomerImportRow> chunk = new ArrayList<>(CHUNK_SIZE);
+            while (rows.hasNext()) {
+                chunk.add(rows.next());
+                if (chunk.size() == CHUNK_SIZE || !rows.hasNext()) {
+                    staged += copyChunk(connection, chunk);
+                    chunk.clear();
+                }
+            }
+            return staged - merge(connection, emailTaken);
+        });
+    }
+
+    private long copyChunk(Connection connection, List<CustomerImportRow> chunk) throws SQLException {
+        long[] ids = nextIds(connection, chunk.size());
+        PGCopyOutputStream copy = new PGCopyOutputStream(
+                connection.unwrap(PGConnection.class), COPY, WRITE_BUFFER_SIZE);
+        try {
+            Writer writer = new OutputStreamWriter(copy, StandardCharsets.UTF_8);
+            StringBuilder row = new StringBuilder(128);
+            for (int i = 0; i < chunk.size(); i++) {
+                writeRow(row, ids[i], chunk.get(i));
+                writer.append(row);
+            }
+            writer.flush();
+            return copy.endCopy();
+        } catch (IOException e) {
+            copy.cancelCopy();
+            throw new UncheckedIOException(e);
+        } catch (SQLException | RuntimeException e) {
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+            throw e;
+        }
+    }
+
+    // how many rows were skipped
+    private long merge(Connection connection, Consumer<CustomerImportRow> emailTaken) throws SQLException {
+        long skipped = 0;
+        try (PreparedStatement statement = connection.prepareStatement(MERGE)) {
+            // the connection is in a transaction , so the skipped rows are fetched with a cursor instead of all at once
+            statement.setFetchSize(FETCH_SIZE);
+            try (ResultSet skippedRows = statement.executeQuery()) {
+                while (skippedRows.next()) {
+                    emailTaken.accept(new CustomerImportRow(
+                            skippedRows.getInt(1),
+                            skippedRows.getString(2),
+                            skippedRows.getString(3),
+                            skippedRows.getInt(4),
+                            Gender.valueOf(skippedRows.getString(5))
+                    ));
+                    skipped++;
+                }
+            }
+        }
+        return skipped;
+    }
+
+    // every nextval is the first id of a block (pooled-lo , CustomerIdGenerator)
+    private long[] nextIds(Connection connection, int size) throws SQLException {
+        long[] ids = new long[size];
+        try (PreparedStatement statement = connection.prepareStatement(NEXT_ID_BLOCKS)) {
+            statement.setInt(1, (size + allocationSize - 1) / allocationSize);
+            try (ResultSet blocks = statement.executeQuery()) {
+                int i = 0;
+                while (blocks.next()) {
+                    long first = blocks.getLong(1);
+                    for (int j = 0; j < allocationSize && i < size; j++) {
+                        ids[i++] = first + j;
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    // a row of the csv format of COPY , name and email are quoted so they may have any char but NUL
+    private static void writeRow(StringBuilder row, long id, CustomerImportRow customer) {
+        row.setLength(0);
+        row.append(customer.line()).append(',').append(id).append(',');
+        quote(row, customer.name()).append(',');
+        quote(row, customer.email()).append(',');
+        row.append(customer.age()).append(',').append(customer.gender().name()).append('\n');
+    }
+
+    private static StringBuilder quote(StringBuilder row, String value) {
+        row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                row.append('"');
+            }
+            row.append(c);
+        }
+        return row.append('"');
+    }
+}
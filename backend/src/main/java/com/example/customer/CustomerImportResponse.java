@@ -0,0 +1,13 @@
+package com.example.customer;
+
+import java.util.List;
+
+// rows is the number of rows of the csv (the header isn't one) , rejects are the first of the rows that weren't imported ,
+// ordered by line , their index is the line of the row
+public record CustomerImportResponse(
+        long rows,
+        long created,
+        long rejected,
+        List<CustomerRegistrationResult> rejects
+) {
+}
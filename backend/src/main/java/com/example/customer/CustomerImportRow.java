@@ -0,0 +1,14 @@
+package com.example.customer;
+
+// a valid row of an import (POST /api/v1/customers/import) , line is where it starts in the csv (the header is line 1)
+public record CustomerImportRow(
+        int line,
+        String name,
+        String email,
+        int age,
+        Gender gender
+) {
+    Customer toCustomer() {
+        return new Customer(name, email, age, gender);
+    }
+}
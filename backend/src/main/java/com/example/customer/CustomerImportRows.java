@@ -0,0 +1,134 @@
+package com.example.customer;
+
+import com.example.exception.RequestValidationException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+// the valid rows of an import csv , parsed one at a time while they are iterated
+// the header (the first line) names the columns , name , email , age and gender in any order , other columns are ignored
+// a row that isn't valid is skipped , only the first maxRejects of them are kept , blank lines aren't rows
+class CustomerImportRows implements Iterator<CustomerImportRow> {
+
+    private static final List<String> COLUMNS = List.of("name", "email", "age", "gender");
+
+    private final CsvReader reader;
+    // the position of name , email , age and gender in a row
+    private final int[] columns;
+    private final int maxRejects;
+    private final List<CustomerRegistrationResult> invalid = new ArrayList<>();
+    private long rows;
+    private long invalidRows;
+    private CustomerImportRow next;
+
+    private CustomerImportRows(CsvReader reader, int[] columns, int maxRejects) {
+        this.reader = reader;
+        this.columns = columns;
+        this.maxRejects = maxRejects;
+    }
+
+    static CustomerImportRows of(CsvReader reader, int maxRejects) {
+        List<String> header = reader.next();
+        if (header == null) {
+            throw new RequestValidationException("the csv is empty , its first line must name the columns");
+        }
+        List<String> names = header.stream()
+                .map(name -> name.strip().toLowerCase(Locale.ROOT))
+                .toList();
+        int[] columns = new int[COLUMNS.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = names.indexOf(COLUMNS.get(i));
+            if (columns[i] == -1) {
+                throw new RequestValidationException(
+                        "the header has no [%s] column , it must have %s".formatted(COLUMNS.get(i), COLUMNS));
+            }
+        }
+        return new CustomerImportRows(reader, columns, maxRejects);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            List<String> fields = reader.next();
+            if (fields == null) {
+                return false;
+            }
+            if (fields.size() == 1 && fields.get(0).isBlank()) {
+                continue;
+            }
+            rows++;
+            next = validRow(reader.line(), fields);
+        }
+        return true;
+    }
+
+    @Override
+    public CustomerImportRow next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        CustomerImportRow row = next;
+        next = null;
+        return row;
+    }
+
+    // how many rows have been read so far
+    long rows() {
+        return rows;
+    }
+
+    long invalidRows() {
+        return invalidRows;
+    }
+
+    // the first of the invalid rows , in the order of the rows
+    List<CustomerRegistrationResult> invalid() {
+        return invalid;
+    }
+
+    // null when the row isn't valid
+    private CustomerImportRow validRow(int line, List<String> fields) {
+        String name = field(fields, 0);
+        String email = field(fields, 1);
+        String age = field(fields, 2);
+        String gender = field(fields, 3);
+        if (name == null || email == null || age == null || gender == null) {
+            return invalid(line, email, "name , email , age and gender are required");
+        }
+        // text can't have it in postgres
+        if (name.indexOf('\0') != -1 || email.indexOf('\0') != -1) {
+            return invalid(line, email, "name and email can't have a NUL char");
+        }
+        int customerAge;
+        try {
+            customerAge = Integer.parseInt(age.strip());
+        } catch (NumberFormatException e) {
+            return invalid(line, email, "age [%s] is not a number".formatted(age));
+        }
+        Gender customerGender;
+        try {
+            customerGender = Gender.valueOf(gender.strip().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return invalid(line, email, "gender [%s] is not one of %s".formatted(gender, Arrays.toString(Gender.values())));
+        }
+        return new CustomerImportRow(line, name, email, customerAge, customerGender);
+    }
+
+    // null when the row doesn't have it or it is blank
+    private String field(List<String> fields, int column) {
+        int i = columns[column];
+        return i < fields.size() && !fields.get(i).isBlank() ? fields.get(i) : null;
+    }
+
+    private CustomerImportRow invalid(int line, String email, String message) {
+        invalidRows++;
+        if (invalid.size() < maxRejects) {
+            invalid.add(CustomerRegistrationResult.rejected(line, email, CustomerRegistrationStatus.INVALID, message));
+        }
+        return null;
+    }
+}
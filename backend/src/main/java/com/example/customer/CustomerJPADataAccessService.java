@@ -1,32 +1,128 @@
 package com.example.customer;
 
+import com.example.exception.DuplicteResourceException;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Repository("jpa")
 public class CustomerJPADataAccessService implements CustomerDao{
 
+     static final String EMAIL_UNIQUE_CONSTRAINT = "customer_email_unique";
+
+     // postgres accepts at most 32767 parameters in one statement , and hibernate pads the IN list up to the next power of 2
+     static final int EMAILS_PER_QUERY = 16_384;
+
      private final CustomerRepository customerRepository;
 
     public CustomerJPADataAccessService(CustomerRepository customerRepository) {
         this.customerRepository = customerRepository;
     }
 
+    // the reads run in read-only transactions , hibernate doesn't flush them and loads their entities without the copy
+    // it keeps to dirty check them , and the connection goes back to the pool as soon as the transaction ends
     @Override
+    @Transactional(readOnly = true)
     public List<Customer> selectAllCustomers() {
-        return customerRepository.findAll();
+        return customerRepository.findAllPlain();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Customer> selectCustomersPage(CustomerSort sort, CustomerCursor after, int limit) {
+        if (after == null) {
+            return customerRepository.findBy(toSort(sort), Limit.of(limit));
+        }
+        return switch (sort) {
+            case ID -> customerRepository.findCustomersAfterId(after.id(), Limit.of(limit));
+            case NAME -> customerRepository.findCustomersAfterName(after.value(), after.id(), Limit.of(limit));
+            case AGE -> customerRepository.findCustomersAfterAge(Integer.valueOf(after.value()), after.id(), Limit.of(limit));
+        };
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Customer> searchCustomers(CustomerSearch search, CustomerSort sort, CustomerCursor after, int limit) {
+        return customerRepository.searchCustomers(search, sort, after, limit);
+    }
+
+    // the transaction keeps the connection (and the database cursor) open while the stream is consumed
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        try (Stream<Customer> customers = customerRepository.streamAllCustomers()) {
+            customers.forEach(consumer);
+        }
     }
 
+    // a read-only entity is loaded without the copy , a query for a plain customer would cost more than it saves for one row
     @Override
+    @Transactional(readOnly = true)
     public Optional<Customer> selectCustomerById(Integer id) {
         return customerRepository.findById(id);
     }
 
+    // the insert itself checks the email (customer_email_unique) , so registering costs one statement instead of
+    // an exists query followed by the insert , and of two concurrent registrations of one email exactly one wins
+    // flushing makes the violation happen here , where it can be told apart from other failures
     @Override
     public void insertCustomer(Customer customer) {
-        customerRepository.save(customer);
+        try {
+            customerRepository.saveAndFlush(customer);
+        } catch (DataIntegrityViolationException e) {
+            if (isEmailTaken(e)) {
+                throw new DuplicteResourceException("email already taken");
+            }
+            throw e;
+        }
+    }
+
+    // hibernate sends the inserts in jdbc batches (hibernate.jdbc.batch_size) , which it can only do
+    // because the ids come from pooled blocks instead of one nextval per customer
+    // a customer registered with one of the emails while the batch was being prepared fails the whole transaction
+    @Override
+    @Transactional
+    public void insertCustomers(List<Customer> customers) {
+        try {
+            customerRepository.saveAllAndFlush(customers);
+        } catch (DataIntegrityViolationException e) {
+            if (isEmailTaken(e)) {
+                throw new DuplicteResourceException("email already taken , no customer of the batch was registered");
+            }
+            throw e;
+        }
+    }
+
+    // the rows are copied into a temporary table while they are read and inserted from there with one statement
+    // (CustomerImportRepository) , the transaction holds a connection for the whole upload
+    @Override
+    @Transactional
+    public long importCustomers(Iterator<CustomerImportRow> rows, Consumer<CustomerImportRow> emailTaken) {
+        return customerRepository.importCustomers(rows, emailTaken);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        List<String> list = new ArrayList<>(emails);
+        Set<String> existing = new HashSet<>();
+        for (int from = 0; from < list.size(); from += EMAILS_PER_QUERY) {
+            int to = Math.min(from + EMAILS_PER_QUERY, list.size());
+            existing.addAll(customerRepository.findExistingEmails(list.subList(from, to)));
+        }
+        return existing;
     }
 
     @Override
@@ -40,20 +136,85 @@ public class CustomerJPADataAccessService implements CustomerDao{
     }
 
     @Override
-    public void deleteCustomerById(Integer id) {
-        customerRepository.deleteById(id);
+    @Transactional
+    public int deleteCustomerById(Integer id) {
+        return customerRepository.deleteCustomerById(id);
     }
 
     @Override
-    public void updateCustomer(Customer update) {
-        customerRepository.save(update);
+    @Transactional
+    public int deleteCustomerByIdAndVersion(Integer id, long version) {
+        return customerRepository.deleteCustomerByIdAndVersion(id, version);
     }
 
+    // one UPDATE instead of reading the customer , checking the email and merging the whole row back
+    // customer_email_unique checks the new email , and the version makes sure nobody changed the customer in between
+    // only when nothing was updated a second statement finds out why
     @Override
+    @Transactional
+    public CustomerUpdateStatus updateCustomer(Integer id, CustomerUpdateRequest update) {
+        int updated;
+        try {
+            updated = customerRepository.updateCustomer(id, update.name(), update.email(), update.age(), update.version());
+        } catch (DataIntegrityViolationException e) {
+            if (isEmailTaken(e)) {
+                throw new DuplicteResourceException("email already taken");
+            }
+            throw e;
+        }
+        if (updated == 1) {
+            return CustomerUpdateStatus.UPDATED;
+        }
+        return customerRepository.findVersionById(id)
+                .map(version -> update.version() != null && !update.version().equals(version)
+                        ? CustomerUpdateStatus.STALE
+                        : CustomerUpdateStatus.UNCHANGED)
+                .orElse(CustomerUpdateStatus.NOT_FOUND);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Optional<Customer> selectCustomerByEmail(String email) {
         return customerRepository.findCustomerByEmail(email);
     }
 
+    @Override
+    public Optional<Long> selectCustomerVersion(Integer id) {
+        return customerRepository.findVersionById(id);
+    }
+
+    @Override
+    public long selectCustomersVersion() {
+        return customerRepository.countCustomerChanges();
+    }
+
+    @Override
+    public CustomerStats selectCustomerStats() {
+        return CustomerStats.of(customerRepository.countCustomerStats().stream()
+                .map(count -> new CustomerStats.Count(count.getGender(), count.getAgeFrom(), count.getCustomers()))
+                .toList());
+    }
+
+    // the transaction keeps the similarity threshold and the query on one connection
+    @Override
+    @Transactional(readOnly = true)
+    public List<Customer> selectDuplicateCandidates(String name, String email, double minSimilarity, int limit) {
+        return customerRepository.findDuplicateCandidates(name, email, minSimilarity, limit);
+    }
+
+    private static boolean isEmailTaken(DataIntegrityViolationException e) {
+        return e.getCause() instanceof ConstraintViolationException violation
+                && EMAIL_UNIQUE_CONSTRAINT.equalsIgnoreCase(violation.getConstraintName());
+    }
+
+    private static Sort toSort(CustomerSort sort) {
+        return switch (sort) {
+            case ID -> Sort.by("id");
+            case NAME -> Sort.by("name", "id");
+            case AGE -> Sort.by("age", "id");
+        };
+    }
+
 
 
 }
@@ -0,0 +1,333 @@
+package com.example.customer;
+
+import com.example.exception.DuplicteResourceException;
+import io.r2dbc.postgresql.api.PostgresqlException;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// the DAO of the reactive profile , the statements of the jpa DAO (and of its repository) sent through r2dbc ,
+// no thread waits for the database , the rows are handed on while they arrive
+// the ids come from customer_id_sequence in blocks (pooled-lo) , the same way CustomerIdGenerator hands them to hibernate ,
+// so both can insert into the same table
+// the statements that have to see what another one did (the version after an update that changed nothing ,
+// the similarity threshold of the duplicates) run with it in one transaction
+@Repository("r2dbc")
+@Profile("reactive")
+public class CustomerR2dbcDataAccessService implements ReactiveCustomerDao {
+
+    private static final String COLUMNS = "id, name, email, age, gender, version";
+    private static final String NEXT_ID_BLOCKS = "SELECT nextval('customer_id_sequence') FROM generate_series(1, $1)";
+    // version is 0 by default
+    private static final String INSERT = "INSERT INTO customer (id, name, email, age, gender) VALUES ($1, $2, $3, $4, $5)";
+    // the whole batch is one statement , one array per column , so the triggers run once and it is all or nothing
+    private static final String INSERT_ALL = """
+            INSERT INTO customer (id, name, email, age, gender)
+            SELECT * FROM unnest($1::bigint[], $2::text[], $3::text[], $4::int[], $5::text[])
+            """;
+    // the UPDATE of CustomerRepository.updateCustomer , a null parameter keeps the value of its column
+    private static final String UPDATE = """
+            UPDATE customer
+            SET name = COALESCE($2, name),
+                email = COALESCE($3, email),
+                age = COALESCE($4, age),
+                version = version + 1
+            WHERE id = $1
+              AND ($5::bigint IS NULL OR version = $5)
+              AND (name <> $2 OR email <> $3 OR age <> $4)
+            """;
+    private static final String STATS = """
+            SELECT gender, age_from, CAST(sum(customers) AS bigint) AS customers
+            FROM customer_stats
+            GROUP BY gender, age_from
+            """;
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final int allocationSize;
+    // the ids of the blocks that were reserved and not used yet , {next , end (exclusive)} , the single registrations
+    // take them one by one , a block is only asked for when they are used up
+    private final Deque<long[]> idBlocks = new ArrayDeque<>();
+
+    public CustomerR2dbcDataAccessService(ConnectionFactory connectionFactory,
+                                         @Value("${customer.id.allocation-size}") int allocationSize) {
+        this.databaseClient = DatabaseClient.create(connectionFactory);
+        this.transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+        this.allocationSize = allocationSize;
+    }
+
+    @Override
+    public Flux<Customer> selectAllCustomers() {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM customer ORDER BY id")
+                .map(CustomerR2dbcDataAccessService::customer)
+                .all();
+    }
+
+    // a page is a search without filters , the same keyset conditions and order
+    @Override
+    public Flux<Customer> selectCustomersPage(CustomerSort sort, CustomerCursor after, int limit) {
+        return searchCustomers(new CustomerSearch(null, null, null, null, null), sort, after, limit);
+    }
+
+    @Override
+    public Flux<Customer> searchCustomers(CustomerSearch search, CustomerSort sort, CustomerCursor after, int limit) {
+        CustomerSearchQuery query = CustomerSearchQuery.of(search, sort, after, limit);
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(query.r2dbcSql());
+        for (int i = 0; i < query.parameters().size(); i++) {
+            spec = spec.bind(i, query.parameters().get(i));
+        }
+        return spec.map(CustomerR2dbcDataAccessService::customer)
+                .all();
+    }
+
+    @Override
+    public Mono<Customer> selectCustomerById(Integer id) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM customer WHERE id = $1")
+                .bind(0, id)
+                .map(CustomerR2dbcDataAccessService::customer)
+                .one();
+    }
+
+    // like the jpa DAO the insert itself checks the email (customer_email_unique)
+    @Override
+    public Mono<Customer> insertCustomer(Customer customer) {
+        return nextId()
+                .flatMap(id -> {
+                    customer.setId(id);
+                    DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(INSERT).bind(0, id);
+                    spec = bind(spec, 1, customer.getName(), String.class);
+                    spec = bind(spec, 2, customer.getEmail(), String.class);
+                    spec = bind(spec, 3, customer.getAge(), Integer.class);
+                    spec = bind(spec, 4, customer.getGender() == null ? null : customer.getGender().name(), String.class);
+                    return spec.fetch().rowsUpdated();
+                })
+                .onErrorMap(CustomerR2dbcDataAccessService::isEmailTaken,
+                        e -> new DuplicteResourceException("email already taken"))
+                .map(inserted -> {
+                    customer.setVersion(0L);
+                    return customer;
+                });
+    }
+
+    @Override
+    public Mono<Void> insertCustomers(List<Customer> customers) {
+        if (customers.isEmpty()) {
+            return Mono.empty();
+        }
+        return nextIds(customers.size())
+                .flatMap(ids -> {
+                    Long[] idColumn = new Long[customers.size()];
+                    String[] names = new String[customers.size()];
+                    String[] emails = new String[customers.size()];
+                    Integer[] ages = new Integer[customers.size()];
+                    String[] genders = new String[customers.size()];
+                    for (int i = 0; i < customers.size(); i++) {
+                        Customer customer = customers.get(i);
+                        customer.setId(Math.toIntExact(ids[i]));
+                        idColumn[i] = ids[i];
+                        names[i] = customer.getName();
+                        emails[i] = customer.getEmail();
+                        ages[i] = customer.getAge();
+                        genders[i] = customer.getGender().name();
+                    }
+                    return databaseClient.sql(INSERT_ALL)
+                            .bind(0, idColumn)
+                            .bind(1, names)
+                            .bind(2, emails)
+                            .bind(3, ages)
+                            .bind(4, genders)
+                            .fetch()
+                            .rowsUpdated();
+                })
+                .onErrorMap(CustomerR2dbcDataAccessService::isEmailTaken,
+                        e -> new DuplicteResourceException("email already taken , no customer of the batch was registered"))
+                .doOnNext(inserted -> customers.forEach(customer -> customer.setVersion(0L)))
+                .then();
+    }
+
+    // one array parameter , however many emails , postgres has no limit on the size of an array
+    @Override
+    public Mono<Set<String>> selectExistingEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Mono.just(Set.of());
+        }
+        return databaseClient.sql("SELECT email FROM customer WHERE email = ANY($1)")
+                .bind(0, emails.toArray(String[]::new))
+                .map(row -> row.get("email", String.class))
+                .all()
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public Mono<Long> deleteCustomerById(Integer id) {
+        return databaseClient.sql("DELETE FROM customer WHERE id = $1")
+                .bind(0, id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    @Override
+    public Mono<Long> deleteCustomerByIdAndVersion(Integer id, long version) {
+        return databaseClient.sql("DELETE FROM customer WHERE id = $1 AND version = $2")
+                .bind(0, id)
+                .bind(1, version)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    // only when nothing was updated a second statement finds out why , in the same transaction
+    @Override
+    public Mono<CustomerUpdateStatus> updateCustomer(Integer id, CustomerUpdateRequest update) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(UPDATE).bind(0, id);
+        spec = bind(spec, 1, update.name(), String.class);
+        spec = bind(spec, 2, update.email(), String.class);
+        spec = bind(spec, 3, update.age(), Integer.class);
+        spec = bind(spec, 4, update.version(), Long.class);
+        return spec.fetch()
+                .rowsUpdated()
+                .onErrorMap(CustomerR2dbcDataAccessService::isEmailTaken,
+                        e -> new DuplicteResourceException("email already taken"))
+                .flatMap(updated -> updated == 1
+                        ? Mono.just(CustomerUpdateStatus.UPDATED)
+                        : selectCustomerVersion(id)
+                                .map(version -> update.version() != null && !update.version().equals(version)
+                                        ? CustomerUpdateStatus.STALE
+                                        : CustomerUpdateStatus.UNCHANGED)
+                                .defaultIfEmpty(CustomerUpdateStatus.NOT_FOUND))
+                .as(transactionalOperator::transactional);
+    }
+
+    @Override
+    public Mono<Long> selectCustomerVersion(Integer id) {
+        return databaseClient.sql("SELECT version FROM customer WHERE id = $1")
+                .bind(0, id)
+                .map(row -> row.get("version", Long.class))
+                .one();
+    }
+
+    // the changes counted by the triggers of V10
+    @Override
+    public Mono<Long> selectCustomersVersion() {
+        return databaseClient.sql("SELECT CAST(sum(changes) AS bigint) AS changes FROM customer_changes")
+                .map(row -> row.get("changes", Long.class))
+                .one();
+    }
+
+    // the counts kept by the triggers of V11
+    @Override
+    public Mono<CustomerStats> selectCustomerStats() {
+        return databaseClient.sql(STATS)
+                .map(row -> new CustomerStats.Count(
+                        Gender.valueOf(row.get("gender", String.class)),
+                        row.get("age_from", Integer.class),
+                        row.get("customers", Long.class)))
+                .all()
+                .collectList()
+                .map(CustomerStats::of);
+    }
+
+    // the query of the jpa DAO (CustomerSearchRepositoryImpl) , the transaction keeps the threshold and the query on one connection
+    @Override
+    public Flux<Customer> selectDuplicateCandidates(String name, String email, double minSimilarity, int limit) {
+        if (name == null && email == null) {
+            return Flux.empty();
+        }
+        DatabaseClient.GenericExecuteSpec query = databaseClient
+                .sql(CustomerSearchRepositoryImpl.duplicateCandidatesSql(name != null, email != null))
+                .bind("limit", limit);
+        if (name != null) {
+            query = query.bind("name", name);
+        }
+        if (email != null) {
+            query = query.bind("emailLocalPart", CustomerDuplicate.emailLocalPart(email));
+        }
+        return databaseClient.sql("SELECT set_config('pg_trgm.similarity_threshold', :threshold, true)")
+                .bind("threshold", String.valueOf(minSimilarity))
+                .fetch()
+                .first()
+                .thenMany(query.map(CustomerR2dbcDataAccessService::customer).all())
+                .as(transactionalOperator::transactional);
+    }
+
+    // the id of one registration , the registrations that find no id left each reserve a block , the ids of the blocks
+    // they don't use are kept for the next ones , so concurrent registrations don't waste them
+    private Mono<Integer> nextId() {
+        return Mono.defer(() -> {
+            synchronized (idBlocks) {
+                long[] block;
+                while ((block = idBlocks.peekFirst()) != null) {
+                    if (block[0] < block[1]) {
+                        return Mono.just(Math.toIntExact(block[0]++));
+                    }
+                    idBlocks.removeFirst();
+                }
+            }
+            return databaseClient.sql("SELECT nextval('customer_id_sequence') AS id")
+                    .map(row -> row.get("id", Long.class))
+                    .one()
+                    .map(first -> {
+                        synchronized (idBlocks) {
+                            idBlocks.addLast(new long[]{first + 1, first + allocationSize});
+                        }
+                        return Math.toIntExact(first);
+                    });
+        });
+    }
+
+    // the ids of a batch , its own blocks , every nextval is the first id of a block (pooled-lo , CustomerIdGenerator)
+    private Mono<long[]> nextIds(int size) {
+        return databaseClient.sql(NEXT_ID_BLOCKS)
+                .bind(0, (size + allocationSize - 1) / allocationSize)
+                .map(row -> row.get(0, Long.class))
+                .all()
+                .collectList()
+                .map(blocks -> {
+                    long[] ids = new long[size];
+                    int i = 0;
+                    for (long first : blocks) {
+                        for (int j = 0; j < allocationSize && i < size; j++) {
+                            ids[i++] = first + j;
+                        }
+                    }
+                    return ids;
+                });
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec,
+                                                          int index, Object value, Class<?> type) {
+        return value == null ? spec.bindNull(index, type) : spec.bind(index, value);
+    }
+
+    private static Customer customer(Readable row) {
+        return new Customer(
+                row.get("id", Integer.class),
+                row.get("name", String.class),
+                row.get("email", String.class),
+                row.get("age", Integer.class),
+                Gender.valueOf(row.get("gender", String.class)),
+                row.get("version", Long.class));
+    }
+
+    // DatabaseClient translates the error of the driver , the driver knows the violated constraint
+    private static boolean isEmailTaken(Throwable e) {
+        return e instanceof DataIntegrityViolationException
+                && e.getCause() instanceof PostgresqlException violation
+                && CustomerJPADataAccessService.EMAIL_UNIQUE_CONSTRAINT.equalsIgnoreCase(
+                        violation.getErrorDetails().getConstraintName().orElse(null));
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.customer;
+
+import java.util.List;
+
+// the registered customer is created either way , the possible duplicates are only shown so they can be looked at
+public record CustomerRegistrationResponse(
+        Integer id,
+        List<CustomerDuplicate> possibleDuplicates
+) {
+}
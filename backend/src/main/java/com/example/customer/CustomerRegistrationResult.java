@@ -0,0 +1,19 @@
+package com.example.customer;
+
+// the outcome of one row of a batch registration , index is the position of the row in the request
+// id is only set when the customer was created and message only when it wasn't
+public record CustomerRegistrationResult(
+        int index,
+        String email,
+        CustomerRegistrationStatus status,
+        Integer id,
+        String message
+) {
+    static CustomerRegistrationResult created(int index, Customer customer) {
+        return new CustomerRegistrationResult(index, customer.getEmail(), CustomerRegistrationStatus.CREATED, customer.getId(), null);
+    }
+
+    static CustomerRegistrationResult rejected(int index, String email, CustomerRegistrationStatus status, String message) {
+        return new CustomerRegistrationResult(index, email, status, null, message);
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.customer;
+
+public enum CustomerRegistrationStatus {
+    CREATED,
+    // the email belongs to an existing customer or to an earlier row of the same batch
+    EMAIL_TAKEN,
+    // a required field is missing
+    INVALID
+}
@@ -0,0 +1,180 @@
+package com.example.customer;
+
+import com.example.exception.DuplicteResourceException;
+import com.example.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// only when customer.registration.group-commit.enabled=true , then a registration (CustomerService.addCustomer) doesn't
+// insert its customer itself , it queues it and waits , one thread takes the queued customers and inserts them together
+// in one transaction (one commit and so one fsync of the wal for all of them) , the next group is queued meanwhile
+// a group is written once it has max-batch-size customers or max-delay after its first customer came , whatever is first
+// every registration gets its own outcome , its customer with the id or DuplicteResourceException when the email is taken
+// (or whatever else failed its insert)
+// a registration that finds the queue full isn't queued , it gets ServiceUnavailableException (503) right away
+// the size of the queue and of the groups are the customer.registration.queue and customer.registration.group metrics
+@Component
+@ConditionalOnProperty(name = "customer.registration.group-commit.enabled", havingValue = "true")
+public class CustomerRegistrationWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerRegistrationWriter.class);
+    private static final Duration IDLE_POLL = Duration.ofMillis(100);
+
+    private record Registration(Customer customer, CompletableFuture<Customer> registered) {
+    }
+
+    private final CustomerDao customerDao;
+    private final BlockingQueue<Registration> queue;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final DistributionSummary groupSizes;
+    private final Thread writer;
+    private volatile boolean stopped;
+
+    @Autowired
+    public CustomerRegistrationWriter(@Qualifier("cached") CustomerDao customerDao,
+                                      @Value("${customer.registration.group-commit.queue-capacity}") int queueCapacity,
+                                      @Value("${customer.registration.group-commit.max-batch-size}") int maxBatchSize,
+                                      @Value("${customer.registration.group-commit.max-delay}") Duration maxDelay,
+                                      MeterRegistry meterRegistry) {
+        this.customerDao = customerDao;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        Gauge.builder("customer.registration.queue", queue, BlockingQueue::size)
+                .description("registrations waiting to be written")
+                .register(meterRegistry);
+        this.groupSizes = DistributionSummary.builder("customer.registration.group")
+                .description("registrations written in one transaction")
+                .register(meterRegistry);
+        this.writer = Thread.ofPlatform()
+                .name("customer-registration-writer")
+                .daemon()
+                .start(this::writeGroups);
+    }
+
+    // completes once the customer is committed , or exceptionally when it can't be
+    public CompletableFuture<Customer> register(Customer customer) {
+        Registration registration = new Registration(customer, new CompletableFuture<>());
+        if (stopped || !queue.offer(registration)) {
+            throw new ServiceUnavailableException("too many registrations at once , try again later");
+        }
+        // stop() may have come between the check and the offer , and the writer may be gone already ,
+        // a registration still queued is taken back , one that isn't was taken by the writer (or failed by it)
+        if (stopped && queue.remove(registration)) {
+            throw new ServiceUnavailableException("the registrations are stopping , try again later");
+        }
+        return registration.registered();
+    }
+
+    // the queued registrations are still written , the writer isn't interrupted , that would fail the statement it runs
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        stopped = true;
+        writer.join();
+    }
+
+    private void writeGroups() {
+        List<Registration> group = new ArrayList<>(maxBatchSize);
+        while (!stopped || !queue.isEmpty()) {
+            try {
+                nextGroup(group);
+            } catch (InterruptedException e) {
+                // only stop() ends the writer , what was taken is written
+            }
+            if (!group.isEmpty()) {
+                groupSizes.record(group.size());
+                write(group);
+                group.clear();
+            }
+        }
+        // registered while the writer was stopping (after its last look at the queue) , nobody would complete them
+        List<Registration> leftovers = new ArrayList<>();
+        queue.drainTo(leftovers);
+        leftovers.forEach(r -> r.registered().completeExceptionally(
+                new ServiceUnavailableException("the registrations are stopping , try again later")));
+    }
+
+    private void nextGroup(List<Registration> group) throws InterruptedException {
+        // not take() , stopped is checked every IDLE_POLL when nothing is registered
+        Registration first = queue.poll(IDLE_POLL.toNanos(), TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+        group.add(first);
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (group.size() < maxBatchSize) {
+            // what is already queued doesn't wait
+            queue.drainTo(group, maxBatchSize - group.size());
+            long remaining = deadline - System.nanoTime();
+            if (group.size() == maxBatchSize || remaining <= 0) {
+                return;
+            }
+            Registration next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            group.add(next);
+        }
+    }
+
+    // the emails aren't looked up first , a taken one is rare and fails the insert of the group , then every customer
+    // of the group is inserted alone , so a spike costs one statement and one commit per group
+    // the first registration of an email in the group takes it
+    private void write(List<Registration> group) {
+        if (group.size() == 1) {
+            writeAlone(group.get(0));
+            return;
+        }
+        Set<String> emails = new HashSet<>();
+        List<Registration> inserted = new ArrayList<>(group.size());
+        for (Registration registration : group) {
+            String email = registration.customer().getEmail();
+            if (email != null && !emails.add(email)) {
+                registration.registered().completeExceptionally(new DuplicteResourceException("email already taken"));
+            } else {
+                inserted.add(registration);
+            }
+        }
+        try {
+            customerDao.insertCustomers(inserted.stream().map(Registration::customer).toList());
+        } catch (RuntimeException e) {
+            // a taken email or a customer the database refuses rolls back the whole group
+            log.debug("group of {} registrations failed , inserting them one by one", inserted.size(), e);
+            inserted.forEach(this::writeAlone);
+            return;
+        }
+        inserted.forEach(r -> r.registered().complete(r.customer()));
+    }
+
+    private void writeAlone(Registration registration) {
+        try {
+            // the rolled back transaction may have given it an id and a version
+            registration.customer().setId(null);
+            registration.customer().setVersion(null);
+            customerDao.insertCustomer(registration.customer());
+            registration.registered().complete(registration.customer());
+        } catch (RuntimeException e) {
+            registration.registered().completeExceptionally(e);
+        }
+    }
+}
@@ -1,12 +1,100 @@
 package com.example.customer;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 
-public interface CustomerRepository extends JpaRepository<Customer, Integer> {
+public interface CustomerRepository extends JpaRepository<Customer, Integer>, CustomerSearchRepository, CustomerImportRepository {
     boolean existsCustomerByEmail(String email);
     boolean existsCustomerById(Integer id);
     Optional<Customer> findCustomerByEmail(String email);
+
+    // keyset pagination , every page seeks straight to its first row through an index instead of skipping (OFFSET) the previous ones
+    List<Customer> findBy(Sort sort, Limit limit);
+
+    @Query("SELECT c FROM Customer c WHERE c.id > :id ORDER BY c.id")
+    List<Customer> findCustomersAfterId(Integer id, Limit limit);
+
+    @Query("SELECT c FROM Customer c WHERE (c.name, c.id) > (:name, :id) ORDER BY c.name, c.id")
+    List<Customer> findCustomersAfterName(String name, Integer id, Limit limit);
+
+    @Query("SELECT c FROM Customer c WHERE (c.age, c.id) > (:age, :id) ORDER BY c.age, c.id")
+    List<Customer> findCustomersAfterAge(Integer age, Integer id, Limit limit);
+
+    // the emails of the given ones that are already taken , one statement for a whole batch registration
+    @Query("SELECT c.email FROM Customer c WHERE c.email IN :emails")
+    List<String> findExistingEmails(Collection<String> emails);
+
+    // a partial update in one statement , a null parameter keeps the value of its column
+    // nothing is updated (0) when the customer doesn't exist , is not at the given version (when one is given)
+    // or already has every given value , comparing with a null parameter is never true so it doesn't count as a change
+    // it must run inside a transaction , the persistence context is cleared because its customer would be out of date
+    @Modifying(clearAutomatically = true)
+    @Query("""
+            UPDATE Customer c
+            SET c.name = COALESCE(:name, c.name),
+                c.email = COALESCE(:email, c.email),
+                c.age = COALESCE(:age, c.age),
+                c.version = c.version + 1
+            WHERE c.id = :id
+              AND (:version IS NULL OR c.version = :version)
+              AND (c.name <> :name OR c.email <> :email OR c.age <> :age)
+            """)
+    int updateCustomer(Integer id, String name, String email, Integer age, Long version);
+
+    // one DELETE , deleteById reads the customer first and fails when it is missing instead of telling how many rows went
+    // it must run inside a transaction , the persistence context is cleared because it may still hold the customer
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM Customer c WHERE c.id = :id")
+    int deleteCustomerById(Integer id);
+
+    // the same , only when the customer still has this version
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM Customer c WHERE c.id = :id AND c.version = :version")
+    int deleteCustomerByIdAndVersion(Integer id, Long version);
+
+    @Query("SELECT c.version FROM Customer c WHERE c.id = :id")
+    Optional<Long> findVersionById(Integer id);
+
+    // the changes counted by the triggers of V10 , 16 rows are summed up
+    @Query(value = "SELECT CAST(sum(changes) AS bigint) FROM customer_changes", nativeQuery = true)
+    long countCustomerChanges();
+
+    // the counts kept by the triggers of V11 , the slots of every gender and age range are summed up ,
+    // a few hundred rows at most however many customers there are
+    @Query(value = """
+            SELECT gender AS "gender", age_from AS "ageFrom", CAST(sum(customers) AS bigint) AS "customers"
+            FROM customer_stats
+            GROUP BY gender, age_from
+            """, nativeQuery = true)
+    List<StatsCount> countCustomerStats();
+
+    interface StatsCount {
+        Gender getGender();
+        int getAgeFrom();
+        long getCustomers();
+    }
+
+    // plain (not managed) customers for GET /api/v1/customers , which never changes them , hibernate doesn't register
+    // every row in the persistence context , about a third less is allocated than by findAll (CustomerDaoBenchmark -prof gc)
+    @Query("SELECT new com.example.customer.Customer(c.id, c.name, c.email, c.age, c.gender, c.version) FROM Customer c")
+    List<Customer> findAllPlain();
+
+    // forward only cursor , postgres sends the rows in chunks of the fetch size instead of the whole result at once
+    // the constructor expression creates plain (not managed) customers , so the persistence context doesn't grow with every row
+    // it must be consumed inside a transaction and closed afterwards
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.example.customer.Customer(c.id, c.name, c.email, c.age, c.gender, c.version) FROM Customer c ORDER BY c.id")
+    Stream<Customer> streamAllCustomers();
 }
@@ -0,0 +1,35 @@
+package com.example.customer;
+
+import java.util.Locale;
+
+// the filters of GET /api/v1/customers/search , a null filter matches every customer
+// name is a prefix and emailDomain the part after @ , both compared ignoring case , the ages are inclusive
+public record CustomerSearch(
+        String name,
+        String emailDomain,
+        Integer minAge,
+        Integer maxAge,
+        Gender gender
+) {
+    public CustomerSearch {
+        name = blankToNull(name);
+        emailDomain = blankToNull(emailDomain);
+    }
+
+    // the same as the WHERE of CustomerSearchQuery , for the customers kept in memory
+    public boolean matches(Customer customer) {
+        return (name == null || lowerCase(customer.getName()).startsWith(lowerCase(name)))
+                && (emailDomain == null || lowerCase(customer.getEmail()).endsWith("@" + lowerCase(emailDomain)))
+                && (minAge == null || customer.getAge() >= minAge)
+                && (maxAge == null || customer.getAge() <= maxAge)
+                && (gender == null || customer.getGender() == gender);
+    }
+
+    static String lowerCase(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
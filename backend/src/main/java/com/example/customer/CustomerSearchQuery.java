@@ -0,0 +1,88 @@
+package com.example.customer;
+
+import jakarta.persistence.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// the SQL of one search page , only the conditions of the given filters are part of it
+// every condition has the shape of an index of V8 (lower(name) , lower(email) , gender + age) , the keyset and the order
+// are the same as GET /api/v1/customers/page
+// the parameters are numbered in the order they are added , so the same query can be run with EXPLAIN in front of it
+record CustomerSearchQuery(String sql, List<Object> parameters) {
+
+    static CustomerSearchQuery of(CustomerSearch search, CustomerSort sort, CustomerCursor after, int limit) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> parameters = new ArrayList<>();
+        if (search.name() != null) {
+            parameters.add(escapeLike(CustomerSearch.lowerCase(search.name())) + "%");
+            conditions.add("lower(c.name) LIKE ?" + parameters.size());
+        }
+        if (search.emailDomain() != null) {
+            parameters.add("%@" + escapeLike(CustomerSearch.lowerCase(search.emailDomain())));
+            conditions.add("lower(c.email) LIKE ?" + parameters.size());
+        }
+        if (search.gender() != null) {
+            parameters.add(search.gender().name());
+            conditions.add("c.gender = ?" + parameters.size());
+        }
+        if (search.minAge() != null) {
+            parameters.add(search.minAge());
+            conditions.add("c.age >= ?" + parameters.size());
+        }
+        if (search.maxAge() != null) {
+            parameters.add(search.maxAge());
+            conditions.add("c.age <= ?" + parameters.size());
+        }
+        if (after != null) {
+            switch (sort) {
+                case ID -> {
+                    parameters.add(after.id());
+                    conditions.add("c.id > ?" + parameters.size());
+                }
+                case NAME -> {
+                    parameters.add(after.value());
+                    parameters.add(after.id());
+                    conditions.add("(c.name, c.id) > (?%s, ?%s)".formatted(parameters.size() - 1, parameters.size()));
+                }
+                case AGE -> {
+                    parameters.add(Integer.valueOf(after.value()));
+                    parameters.add(after.id());
+                    conditions.add("(c.age, c.id) > (?%s, ?%s)".formatted(parameters.size() - 1, parameters.size()));
+                }
+            }
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT * FROM customer c");
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(switch (sort) {
+            case ID -> " ORDER BY c.id";
+            case NAME -> " ORDER BY c.name, c.id";
+            case AGE -> " ORDER BY c.age, c.id";
+        });
+        parameters.add(limit);
+        sql.append(" LIMIT ?").append(parameters.size());
+        return new CustomerSearchQuery(sql.toString(), List.copyOf(parameters));
+    }
+
+    Query bind(Query query) {
+        for (int i = 0; i < parameters.size(); i++) {
+            query.setParameter(i + 1, parameters.get(i));
+        }
+        return query;
+    }
+
+    // the same sql with the placeholders of r2dbc postgres ($1 , $2 ...) , for CustomerR2dbcDataAccessService
+    String r2dbcSql() {
+        return sql.replaceAll("\\?(\\d+)", "\\$$1");
+    }
+
+    // % and _ typed by the user are searched for as they are
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+}
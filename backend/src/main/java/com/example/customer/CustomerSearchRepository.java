@@ -0,0 +1,14 @@
+package com.example.customer;
+
+import java.util.List;
+
+// part of CustomerRepository , implemented by CustomerSearchRepositoryImpl because the query depends on the given filters
+public interface CustomerSearchRepository {
+
+    // keyset page of the customers matching the search , after is null for the first page
+    List<Customer> searchCustomers(CustomerSearch search, CustomerSort sort, CustomerCursor after, int limit);
+
+    // the customers with a name or an email (before the @) at least minSimilarity similar , the most similar (at most
+    // limit) of each , it must run in a transaction , the similarity is set for the transaction only
+    List<Customer> findDuplicateCandidates(String name, String email, double minSimilarity, int limit);
+}
@@ -0,0 +1,59 @@
+package com.example.customer;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class CustomerSearchRepositoryImpl implements CustomerSearchRepository {
+
+    private final EntityManager entityManager;
+
+    CustomerSearchRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Customer> searchCustomers(CustomerSearch search, CustomerSort sort, CustomerCursor after, int limit) {
+        CustomerSearchQuery query = CustomerSearchQuery.of(search, sort, after, limit);
+        return query.bind(entityManager.createNativeQuery(query.sql(), Customer.class))
+                .getResultList();
+    }
+
+    // every side is answered by its gin index (V9) , % only keeps what is at least pg_trgm.similarity_threshold similar ,
+    // the union drops a customer found by both
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Customer> findDuplicateCandidates(String name, String email, double minSimilarity, int limit) {
+        if (name == null && email == null) {
+            return List.of();
+        }
+        entityManager.createNativeQuery("SELECT set_config('pg_trgm.similarity_threshold', :threshold, true)")
+                .setParameter("threshold", String.valueOf(minSimilarity))
+                .getSingleResult();
+        Query query = entityManager.createNativeQuery(duplicateCandidatesSql(name != null, email != null), Customer.class);
+        if (name != null) {
+            query.setParameter("name", name);
+        }
+        if (email != null) {
+            query.setParameter("emailLocalPart", CustomerDuplicate.emailLocalPart(email));
+        }
+        return query.setParameter("limit", limit)
+                .getResultList();
+    }
+
+    // :name , :emailLocalPart (the email before the @) and :limit (of each side)
+    static String duplicateCandidatesSql(boolean byName, boolean byEmail) {
+        List<String> sides = new ArrayList<>();
+        if (byName) {
+            sides.add("(SELECT * FROM customer c WHERE c.name % :name ORDER BY c.name <-> :name LIMIT :limit)");
+        }
+        if (byEmail) {
+            sides.add("(SELECT * FROM customer c WHERE split_part(c.email, '@', 1) % :emailLocalPart"
+                    + " ORDER BY split_part(c.email, '@', 1) <-> :emailLocalPart LIMIT :limit)");
+        }
+        return String.join(" UNION ", sides);
+    }
+}
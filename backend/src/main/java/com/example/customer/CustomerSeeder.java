@@ -0,0 +1,322 @@
+package com.example.customer;
+
+import com.github.javafaker.Faker;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// the seed profile (application-seed.properties) fills customer with fake customers for load tests , millions in minutes
+//   mvn spring-boot:run -Dspring-boot.run.profiles=seed -Dspring-boot.run.arguments=--customer.seed.rows=10000000
+// the app has no web server then and stops once the customers are in
+// every thread generates chunks of customers and streams each chunk into customer with one COPY (pgjdbc CopyManager) ,
+// one statement and transaction per chunk , so the triggers run once per chunk and a failed chunk leaves the others in
+// the secondary indexes are dropped while the rows are copied and created again at the end (customer.seed.rebuild-indexes)
+// the ids come from customer_id_sequence in the blocks of CustomerIdGenerator , so a running app keeps registering customers
+// and the email ends with the id , so it is unique (customer_email_unique)
+@Component
+@Profile("seed")
+public class CustomerSeeder implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerSeeder.class);
+
+    // version is 0 by default
+    private static final String COPY = "COPY customer (id, name, email, age, gender) FROM STDIN";
+    private static final String NEXT_ID_BLOCKS = "SELECT nextval('customer_id_sequence') FROM generate_series(1, ?)";
+    // Faker is slow and not thread safe , the names are drawn from it once and then combined at random
+    private static final int NAMES = 1_000;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final String INDEXES = """
+            SELECT quote_ident(i.indexname), i.indexdef
+            FROM pg_indexes i
+            WHERE i.schemaname = current_schema() AND i.tablename = 'customer'
+              AND NOT EXISTS (SELECT 1 FROM pg_constraint c
+                              WHERE c.conindid = to_regclass(quote_ident(i.schemaname) || '.' || quote_ident(i.indexname)))
+            """;
+    // for the sorts of the index builds , the default 64MB makes them spill to disk
+    private static final String MAINTENANCE_WORK_MEM = "SET maintenance_work_mem = '256MB'";
+
+    private final DataSource dataSource;
+    private final long rows;
+    private final int threads;
+    private final int chunkSize;
+    private final boolean rebuildIndexes;
+    private final int allocationSize;
+    private final Duration progressInterval;
+    private final Name[] firstNames;
+    private final Name[] lastNames;
+
+    public CustomerSeeder(DataSource dataSource,
+                          @Value("${customer.seed.rows}") long rows,
+                          @Value("${customer.seed.threads}") int threads,
+                          @Value("${customer.seed.chunk-size}") int chunkSize,
+                          @Value("${customer.seed.rebuild-indexes}") boolean rebuildIndexes,
+                          @Value("${customer.id.allocation-size}") int allocationSize,
+                          @Value("${customer.seed.progress-interval}") Duration progressInterval) {
+        this.dataSource = dataSource;
+        this.rows = rows;
+        // 0 is one thread per core
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.chunkSize = chunkSize;
+        this.rebuildIndexes = rebuildIndexes;
+        this.allocationSize = allocationSize;
+        this.progressInterval = progressInterval;
+        Faker faker = new Faker(Locale.ENGLISH);
+        this.firstNames = names(() -> faker.name().firstName());
+        this.lastNames = names(() -> faker.name().lastName());
+    }
+
+    public record Result(long rows, Duration took) {
+
+        public long rowsPerSecond() {
+            return Math.round(rows / Math.max(took.toNanos() / 1e9, 1e-9));
+        }
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        seed();
+    }
+
+    public Result seed() throws InterruptedException {
+        long start = System.nanoTime();
+        List<String> indexes = rebuildIndexes ? dropIndexes() : List.of();
+        long copied;
+        try {
+            copied = copyCustomers();
+        } finally {
+            createIndexes(indexes);
+        }
+        Result result = new Result(copied, Duration.ofNanos(System.nanoTime() - start));
+        log.info("Seeded {} customers in {} , {} per second", result.rows(), result.took(), result.rowsPerSecond());
+        return result;
+    }
+
+    private long copyCustomers() throws InterruptedException {
+        long chunks = (rows + chunkSize - 1) / chunkSize;
+        int workers = (int) Math.min(threads, Math.max(chunks, 1));
+        log.info("Seeding {} customers in {} chunks of {} with {} threads", rows, chunks, chunkSize, workers);
+        AtomicLong nextChunk = new AtomicLong();
+        AtomicLong copied = new AtomicLong();
+        Progress progress = new Progress();
+        inParallel(workers, () -> {
+            long chunk = nextChunk.getAndIncrement();
+            if (chunk >= chunks) {
+                return false;
+            }
+            copied.addAndGet(copyChunk((int) Math.min(chunkSize, rows - chunk * chunkSize), progress.sent));
+            return true;
+        }, progress::log);
+        return copied.get();
+    }
+
+    // the indexes that aren't a constraint (the primary key and customer_email_unique stay) , every row copied into the
+    // trigram indexes costs more than the copy itself , building them again once all rows are in is many times faster
+    // the definitions are logged , to create them by hand if the seeder is killed before it does
+    private List<String> dropIndexes() {
+        List<String> definitions = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            List<String> names = new ArrayList<>();
+            try (ResultSet indexes = statement.executeQuery(INDEXES)) {
+                while (indexes.next()) {
+                    names.add(indexes.getString(1));
+                    definitions.add(indexes.getString(2));
+                }
+            }
+            for (int i = 0; i < names.size(); i++) {
+                statement.execute("DROP INDEX " + names.get(i));
+                log.info("Dropped index {} until the customers are in : {}", names.get(i), definitions.get(i));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Dropping the indexes of customer failed", e);
+        }
+        return definitions;
+    }
+
+    // in parallel , every thread builds one index at a time
+    private void createIndexes(List<String> definitions) throws InterruptedException {
+        if (definitions.isEmpty()) {
+            return;
+        }
+        log.info("Creating {} indexes", definitions.size());
+        Queue<String> remaining = new ConcurrentLinkedQueue<>(definitions);
+        inParallel(Math.min(threads, definitions.size()), () -> {
+            String definition = remaining.poll();
+            if (definition == null) {
+                return false;
+            }
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute(MAINTENANCE_WORK_MEM);
+                statement.execute(definition);
+            }
+            log.info("Created {}", definition);
+            return true;
+        }, () -> log.info("Creating indexes , {} left", remaining.size()));
+    }
+
+    // what every thread does until there is nothing left (next returns false) or another thread failed
+    private interface Work {
+        boolean next() throws SQLException, IOException;
+    }
+
+    // the calling thread logs the progress while it waits , the first failure is thrown once all threads stopped
+    private void inParallel(int workers, Work work, Runnable progress) throws InterruptedException {
+        AtomicBoolean failed = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        boolean more = true;
+                        while (more && !failed.get()) {
+                            more = work.next();
+                        }
+                    } catch (SQLException | IOException | RuntimeException e) {
+                        // the other threads stop once they finished what they are doing
+                        failed.set(true);
+                        throw new IllegalStateException("Seeding customers failed", e);
+                    }
+                    return null;
+                }));
+            }
+            executor.shutdown();
+            while (!executor.awaitTermination(progressInterval.toMillis(), TimeUnit.MILLISECONDS)) {
+                progress.run();
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // the rows sent to postgres , a chunk is only committed once it is all sent
+    private final class Progress {
+        private final LongAdder sent = new LongAdder();
+        private long lastSent;
+        private long lastTime = System.nanoTime();
+
+        private void log() {
+            long now = System.nanoTime();
+            long nowSent = sent.sum();
+            log.info("Seeded {} of {} customers , {} per second", nowSent, rows,
+                    Math.round((nowSent - lastSent) / ((now - lastTime) / 1e9)));
+            lastSent = nowSent;
+            lastTime = now;
+        }
+    }
+
+    // the connection is in autocommit , the COPY is the transaction of the chunk , cancelled (rolled back) when it fails
+    private long copyChunk(int size, LongAdder sent) throws SQLException, IOException {
+        try (Connection connection = dataSource.getConnection()) {
+            long[] ids = nextIds(connection, size);
+            PGCopyOutputStream copy = new PGCopyOutputStream(
+                    connection.unwrap(PGConnection.class), COPY, WRITE_BUFFER_SIZE);
+            try {
+                Writer writer = new OutputStreamWriter(copy, StandardCharsets.UTF_8);
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                StringBuilder row = new StringBuilder(128);
+                for (long id : ids) {
+                    writeRow(row, id, random);
+                    writer.append(row);
+                    sent.increment();
+                }
+                writer.flush();
+                return copy.endCopy();
+            } catch (SQLException | IOException | RuntimeException e) {
+                if (copy.isActive()) {
+                    copy.cancelCopy();
+                }
+                throw e;
+            }
+        }
+    }
+
+    // every nextval is the first id of a block (pooled-lo) , the blocks of one chunk may not follow each other
+    // when the app allocates ids at the same time
+    private long[] nextIds(Connection connection, int size) throws SQLException {
+        long[] ids = new long[size];
+        try (PreparedStatement statement = connection.prepareStatement(NEXT_ID_BLOCKS)) {
+            statement.setInt(1, (size + allocationSize - 1) / allocationSize);
+            try (ResultSet blocks = statement.executeQuery()) {
+                int i = 0;
+                while (blocks.next()) {
+                    long first = blocks.getLong(1);
+                    for (int j = 0; j < allocationSize && i < size; j++) {
+                        ids[i++] = first + j;
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    // a row of the text format of COPY , tab separated , the names have no tab , newline or backslash to escape
+    private void writeRow(StringBuilder row, long id, ThreadLocalRandom random) {
+        Name firstName = firstNames[random.nextInt(firstNames.length)];
+        Name lastName = lastNames[random.nextInt(lastNames.length)];
+        row.setLength(0);
+        row.append(id).append('\t')
+                .append(firstName.name()).append(' ').append(lastName.name()).append('\t')
+                .append(firstName.email()).append('.').append(lastName.email()).append('.').append(id)
+                .append("@seed.example.com").append('\t')
+                .append(random.nextInt(16, 99)).append('\t')
+                .append(random.nextBoolean() ? Gender.MALE : Gender.FEMALE).append('\n');
+    }
+
+    private record Name(String name, String email) {
+    }
+
+    private static Name[] names(Supplier<String> faker) {
+        Set<String> names = new LinkedHashSet<>();
+        for (int i = 0; i < NAMES; i++) {
+            String name = faker.get();
+            if (!name.isBlank() && name.chars().noneMatch(c -> c == '\t' || c == '\n' || c == '\r' || c == '\\')) {
+                names.add(name);
+            }
+        }
+        return names.stream()
+                .map(name -> new Name(name, name.toLowerCase(Locale.ROOT).replaceAll("[^a-z]", "")))
+                .filter(name -> !name.email().isEmpty())
+                .toArray(Name[]::new);
+    }
+}
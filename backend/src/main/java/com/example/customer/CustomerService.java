@@ -1,12 +1,22 @@
 package com.example.customer;
 
-import com.example.exception.DuplicteResourceException;
+import com.example.exception.PreconditionFailedException;
 import com.example.exception.RequestValidationException;
 import com.example.exception.ResourceNotFoundException;
+import com.example.exception.StaleResourceException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 
 // this class perform business logic
@@ -14,10 +24,28 @@ import java.util.List;
 @Service
 public class CustomerService {
 
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+    public static final int MAX_BATCH_SIZE = 5_000;
+    public static final int MAX_DUPLICATES = 10;
+    public static final int MAX_IMPORT_REJECTS = 1_000;
+    // a customer is a possible duplicate when its name or its email (before the @) is at least that similar (pg_trgm) ,
+    // "George Magdy" and "Georg Magdi" are 0.56 , "jsmith" and "j.smith" 0.5 , "Alex" and "Jamila" 0
+    static final double DUPLICATE_SIMILARITY = 0.5;
+
     private final CustomerDao customerDao;
+    // null unless customer.registration.group-commit.enabled=true
+    private final CustomerRegistrationWriter registrationWriter;
+
+    public CustomerService(CustomerDao customerDao) {
+        this(customerDao, Optional.empty());
+    }
 
-    public CustomerService(@Qualifier("jpa") CustomerDao customerDao) {
+    @Autowired
+    public CustomerService(@Qualifier("cached") CustomerDao customerDao,
+                           Optional<CustomerRegistrationWriter> registrationWriter) {
         this.customerDao = customerDao;
+        this.registrationWriter = registrationWriter.orElse(null);
     }
 
 
@@ -25,6 +53,92 @@ public class CustomerService {
         return customerDao.selectAllCustomers();
     }
 
+    public CustomerPage getCustomersPage(String sort, String cursor, Integer size) {
+        return page(sort, cursor, size, customerDao::selectCustomersPage);
+    }
+
+    // the filters are not part of the cursor , the next page must be asked for with the same ones
+    public CustomerPage searchCustomers(CustomerSearch search, String sort, String cursor, Integer size) {
+        checkSearch(search);
+        return page(sort, cursor, size, (customerSort, after, limit) ->
+                customerDao.searchCustomers(search, customerSort, after, limit));
+    }
+
+    private interface PageQuery {
+        List<Customer> select(CustomerSort sort, CustomerCursor after, int limit);
+    }
+
+    private CustomerPage page(String sort, String cursor, Integer size, PageQuery query) {
+        CustomerCursor after = cursor == null ? null : CustomerCursor.decode(cursor);
+        CustomerSort customerSort = pageSort(sort, after);
+        int pageSize = pageSize(size);
+        return pageOf(query.select(customerSort, after, pageSize + 1), customerSort, pageSize);
+    }
+
+    // the checks and the paging below are shared with ReactiveCustomerService , both answer the same
+
+    static void checkSearch(CustomerSearch search) {
+        if (search.minAge() != null && search.maxAge() != null && search.minAge() > search.maxAge()) {
+            throw new RequestValidationException(
+                    "minAge [%s] is greater than maxAge [%s]".formatted(search.minAge(), search.maxAge())
+            );
+        }
+    }
+
+    // the sort can be left out when a cursor is given , the cursor remembers the sort it was issued for
+    static CustomerSort pageSort(String sort, CustomerCursor after) {
+        CustomerSort customerSort = sort != null ? CustomerSort.fromParam(sort)
+                : after != null ? after.sort()
+                : CustomerSort.ID;
+        if (after != null && after.sort() != customerSort) {
+            throw new RequestValidationException(
+                    "cursor was issued for sort [%s]".formatted(after.sort())
+            );
+        }
+        return customerSort;
+    }
+
+    static int pageSize(Integer size) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        if (pageSize < 1) {
+            throw new RequestValidationException("page size must be positive");
+        }
+        return Math.min(pageSize, MAX_PAGE_SIZE);
+    }
+
+    // one extra row (pageSize + 1 were read) tells us whether there is a next page without counting the table
+    static CustomerPage pageOf(List<Customer> customers, CustomerSort sort, int pageSize) {
+        if (customers.size() <= pageSize) {
+            return new CustomerPage(customers, null);
+        }
+        List<Customer> page = customers.subList(0, pageSize);
+        return new CustomerPage(page, CustomerCursor.after(sort, page.get(pageSize - 1)).encode());
+    }
+
+
+    public void exportCustomers(Consumer<Customer> consumer) {
+        customerDao.streamAllCustomers(consumer);
+    }
+
+
+    // the ETag of the customer , the customer itself isn't read
+    public long getCustomerVersion(Integer id) {
+        return customerDao.selectCustomerVersion(id)
+                .orElseThrow(() -> new ResourceNotFoundException(
+                        "customer with id [%s] not found".formatted(id)
+                ));
+    }
+
+    // the ETag of the list of customers
+    public long getCustomersVersion() {
+        return customerDao.selectCustomersVersion();
+    }
+
+    // the counts are kept up to date by every change , reading them doesn't count the customers
+    public CustomerStats getCustomerStats() {
+        return customerDao.selectCustomerStats();
+    }
+
 
     // it  should return 404 (not found) instead of 500 (internal server error)
     public Customer getCustomer(Integer id) {
@@ -35,67 +149,151 @@ public class CustomerService {
 
     }
 
-    public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest){
+    // the email isn't checked before inserting , the DAO throws DuplicteResourceException when it is already taken
+    // the similar customers are looked up after , the new customer is registered whatever they are
+    public CustomerRegistrationResponse addCustomer(CustomerRegistrationRequest customerRegistrationRequest){
 
-        /// check if email exists ---> throw an exception
-        String email = customerRegistrationRequest.email();
-        if(customerDao.isPersonExistWithEmail(email)){
-            throw new DuplicteResourceException("email already taken");
-        }
-        /// add
         Customer customer = new Customer(
                 customerRegistrationRequest.name(),
                 customerRegistrationRequest.email(),
                 customerRegistrationRequest.age(),
                 customerRegistrationRequest.gender());
 
-        customerDao.insertCustomer(customer);
+        insertCustomer(customer);
+        return new CustomerRegistrationResponse(
+                customer.getId(), duplicates(customer.getName(), customer.getEmail(), customer.getId()));
     }
 
-    public void deleteCustomerById(Integer customerId) {
-        if (!customerDao.isPersonExistWithId(customerId)) {
-            throw new ResourceNotFoundException(
-                    "customer with id [%s] not found".formatted(customerId)
-            );
+    // with group commit the customer is inserted in one transaction with the others registered meanwhile and this waits
+    // for it (CustomerRegistrationWriter) , otherwise it is inserted in its own transaction
+    private void insertCustomer(Customer customer) {
+        if (registrationWriter == null) {
+            customerDao.insertCustomer(customer);
+            return;
+        }
+        try {
+            registrationWriter.register(customer).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
         }
+    }
 
-        customerDao.deleteCustomerById(customerId);
+    // the customers that look like the one of the request , the most similar first
+    public List<CustomerDuplicate> findDuplicates(CustomerRegistrationRequest request) {
+        if (request.name() == null && request.email() == null) {
+            throw new RequestValidationException("name or email is required");
+        }
+        return duplicates(request.name(), request.email(), null);
     }
 
-    public void updateCustomer(Integer customerId , CustomerUpdateRequest updateRequest) {
-        Customer customer = getCustomer(customerId);
+    // the DAO finds the similar customers with an index lookup , instead of comparing the request with every
+    // registered customer , they are only scored and ordered here
+    // one more than needed , a registered customer finds itself
+    private List<CustomerDuplicate> duplicates(String name, String email, Integer registeredId) {
+        return rankDuplicates(customerDao.selectDuplicateCandidates(name, email, DUPLICATE_SIMILARITY, MAX_DUPLICATES + 1),
+                name, email, registeredId);
+    }
 
-        boolean isChanged = false;
+    static List<CustomerDuplicate> rankDuplicates(List<Customer> candidates, String name, String email, Integer registeredId) {
+        return candidates.stream()
+                .filter(c -> !c.getId().equals(registeredId))
+                .map(c -> CustomerDuplicate.of(c, name, email))
+                .sorted(Comparator.comparingDouble(CustomerDuplicate::similarity).reversed()
+                        .thenComparing(d -> d.customer().getId()))
+                .limit(MAX_DUPLICATES)
+                .toList();
+    }
 
-        if(updateRequest.name() != null && !updateRequest.name().equals(customer.getName()) ){
-            customer.setName(updateRequest.name());
-            isChanged = true;
+    // one statement checks all the emails and the new customers are inserted together in jdbc batches ,
+    // instead of two statements (and an http call) per customer
+    // a row that can't be registered doesn't stop the others , its result says why
+    public CustomerBatchRegistrationResponse addCustomers(List<CustomerRegistrationRequest> requests) {
+        CustomerBatchRegistration batch = CustomerBatchRegistration.of(requests);
+        batch.checkEmails(customerDao.selectExistingEmails(batch.emails()));
+        if (!batch.customers().isEmpty()) {
+            customerDao.insertCustomers(batch.customers());
         }
+        return batch.response();
+    }
 
-        if(updateRequest.email() != null && !updateRequest.email().equals(customer.getEmail()) ){
-            if (updateRequest.email() != null && !updateRequest.email().equals(customer.getEmail())) {
-                if (customerDao.isPersonExistWithEmail(updateRequest.email())) {
-                    throw new DuplicteResourceException(
-                            "email already taken"
-                    );
-                }
-                customer.setEmail(updateRequest.email());
-                isChanged = true;
+    // the csv is parsed while it arrives and every valid row goes to the DAO as soon as it is parsed , the DAO streams them
+    // into the database , so only the rejects kept for the response are in memory , whatever the size of the csv
+    // a row that can't be imported doesn't stop the others , only the first MAX_IMPORT_REJECTS are told about
+    public CustomerImportResponse importCustomers(Reader csv) {
+        CustomerImportRows rows = CustomerImportRows.of(new CsvReader(csv), MAX_IMPORT_REJECTS);
+        List<CustomerRegistrationResult> emailTaken = new ArrayList<>();
+        long created = customerDao.importCustomers(rows, row -> {
+            if (emailTaken.size() < MAX_IMPORT_REJECTS) {
+                emailTaken.add(CustomerRegistrationResult.rejected(
+                        row.line(), row.email(), CustomerRegistrationStatus.EMAIL_TAKEN, "email already taken"));
             }
+        });
+
+        List<CustomerRegistrationResult> rejects = Stream.concat(rows.invalid().stream(), emailTaken.stream())
+                .sorted(Comparator.comparingInt(CustomerRegistrationResult::index))
+                .limit(MAX_IMPORT_REJECTS)
+                .toList();
+        return new CustomerImportResponse(rows.rows(), created, rows.rows() - created, rejects);
+    }
+
+    // the delete itself tells whether the customer existed , one statement instead of checking first
+    public void deleteCustomerById(Integer customerId) {
+        if (customerDao.deleteCustomerById(customerId) == 0) {
+            throw new ResourceNotFoundException(
+                    "customer with id [%s] not found".formatted(customerId)
+            );
         }
+    }
 
-        if(updateRequest.age() != null && !updateRequest.age().equals(customer.getAge()) ){
-            customer.setAge(updateRequest.age());
-            isChanged = true;
+    // If-Match , the customer is only deleted when it still has this version
+    // only when nothing was deleted a second statement finds out why
+    public void deleteCustomerById(Integer customerId, long ifMatch) {
+        if (customerDao.deleteCustomerByIdAndVersion(customerId, ifMatch) == 0) {
+            if (customerDao.selectCustomerVersion(customerId).isPresent()) {
+                throw new PreconditionFailedException(
+                        "customer with id [%s] doesn't have version [%s]".formatted(customerId, ifMatch)
+                );
+            }
+            throw new ResourceNotFoundException(
+                    "customer with id [%s] not found".formatted(customerId)
+            );
         }
+    }
 
+    // one statement checks and changes the customer (see CustomerDao.updateCustomer) , the customer isn't read first
+    // and the email isn't checked before , the DAO throws DuplicteResourceException when it is already taken
+    public void updateCustomer(Integer customerId , CustomerUpdateRequest updateRequest) {
+        checkUpdated(customerId, customerDao.updateCustomer(customerId, updateRequest), () -> new StaleResourceException(
+                "customer with id [%s] was changed since version [%s]".formatted(customerId, updateRequest.version())
+        ));
+    }
 
-        /// if data is the same as it is requested to be updated
-        if (!isChanged) {
-            throw new RequestValidationException("no data changes , as it remains the same");
+    // If-Match , the version of the header is checked by the same statement , a changed customer is 412 (precondition failed)
+    public void updateCustomer(Integer customerId, CustomerUpdateRequest updateRequest, long ifMatch) {
+        if (updateRequest.version() != null && updateRequest.version() != ifMatch) {
+            throw new RequestValidationException(
+                    "version [%s] doesn't match If-Match [%s]".formatted(updateRequest.version(), ifMatch)
+            );
         }
+        CustomerUpdateRequest conditional = new CustomerUpdateRequest(
+                updateRequest.name(), updateRequest.email(), updateRequest.age(), ifMatch);
+        checkUpdated(customerId, customerDao.updateCustomer(customerId, conditional), () -> new PreconditionFailedException(
+                "customer with id [%s] doesn't have version [%s]".formatted(customerId, ifMatch)
+        ));
+    }
 
-        customerDao.updateCustomer(customer);
-
+    static void checkUpdated(Integer customerId, CustomerUpdateStatus status, Supplier<RuntimeException> stale) {
+        switch (status) {
+            case NOT_FOUND -> throw new ResourceNotFoundException(
+                    "customer with id [%s] not found".formatted(customerId)
+            );
+            /// if data is the same as it is requested to be updated
+            case UNCHANGED -> throw new RequestValidationException("no data changes , as it remains the same");
+            case STALE -> throw stale.get();
+            case UPDATED -> { }
+        }
     }
 }
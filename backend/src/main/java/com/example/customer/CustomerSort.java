@@ -0,0 +1,40 @@
+package com.example.customer;
+
+import com.example.exception.RequestValidationException;
+
+import java.util.Comparator;
+
+// the orders a customer page can be read in , the id is always the tie breaker so every order is total
+// and the last row of a page identifies exactly where the next page starts (keyset pagination)
+public enum CustomerSort {
+    ID(Comparator.comparing(Customer::getId)),
+    NAME(Comparator.comparing(Customer::getName).thenComparing(Customer::getId)),
+    AGE(Comparator.comparing(Customer::getAge).thenComparing(Customer::getId));
+
+    private final Comparator<Customer> comparator;
+
+    CustomerSort(Comparator<Customer> comparator) {
+        this.comparator = comparator;
+    }
+
+    public Comparator<Customer> comparator() {
+        return comparator;
+    }
+
+    // the value of the sort column (other than the id) that is stored inside the cursor
+    String keyOf(Customer customer) {
+        return switch (this) {
+            case ID -> "";
+            case NAME -> customer.getName();
+            case AGE -> String.valueOf(customer.getAge());
+        };
+    }
+
+    public static CustomerSort fromParam(String sort) {
+        try {
+            return CustomerSort.valueOf(sort.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new RequestValidationException("unknown sort [%s]".formatted(sort));
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.customer;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// GET /api/v1/customers/stats , how many customers there are , of every gender and in every age range (youngest first ,
+// only the ranges with customers) , every gender is there , also when it has none
+public record CustomerStats(
+        long customers,
+        Map<Gender, Long> genders,
+        List<AgeRange> ages
+) {
+
+    // the same ranges as customer_stats (V11)
+    public static final int AGE_RANGE_YEARS = 10;
+
+    public record AgeRange(int from, int to, long customers) {
+    }
+
+    // how many customers of a gender are in the age range starting at ageFrom , what the DAOs keep up to date
+    public record Count(Gender gender, int ageFrom, long customers) {
+    }
+
+    static int ageFrom(int age) {
+        return age / AGE_RANGE_YEARS * AGE_RANGE_YEARS;
+    }
+
+    static CustomerStats of(Collection<Count> counts) {
+        long customers = 0;
+        Map<Gender, Long> genders = new EnumMap<>(Gender.class);
+        for (Gender gender : Gender.values()) {
+            genders.put(gender, 0L);
+        }
+        Map<Integer, Long> ages = new TreeMap<>();
+        for (Count count : counts) {
+            customers += count.customers();
+            genders.merge(count.gender(), count.customers(), Long::sum);
+            ages.merge(count.ageFrom(), count.customers(), Long::sum);
+        }
+        return new CustomerStats(customers, genders, ages.entrySet().stream()
+                .filter(age -> age.getValue() != 0)
+                .map(age -> new AgeRange(age.getKey(), age.getKey() + AGE_RANGE_YEARS - 1, age.getValue()))
+                .toList());
+    }
+}
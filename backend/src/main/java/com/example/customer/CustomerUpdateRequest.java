@@ -1,8 +1,14 @@
 package com.example.customer;
 
+// only the given (not null) values are changed
+// version is the one of the customer the client read , when given the update is refused once someone else changed it
 public record CustomerUpdateRequest(
         String name,
         String email,
-        Integer age
+        Integer age,
+        Long version
 ) {
+    public CustomerUpdateRequest(String name, String email, Integer age) {
+        this(name, email, age, null);
+    }
 }
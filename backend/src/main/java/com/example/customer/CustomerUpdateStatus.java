@@ -0,0 +1,11 @@
+package com.example.customer;
+
+public enum CustomerUpdateStatus {
+    UPDATED,
+    // there is no customer with the id
+    NOT_FOUND,
+    // every given value is the one the customer already has
+    UNCHANGED,
+    // the customer is no longer at the version the update was made for
+    STALE
+}
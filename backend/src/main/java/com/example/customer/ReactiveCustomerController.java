@@ -0,0 +1,140 @@
+package com.example.customer;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+// CustomerController of the reactive profile , the same endpoints , ETags , responses and errors (the exceptions carry
+// their status) , on webflux instead of spring mvc
+@RestController
+@RequestMapping("/api/v1/customers")
+@Profile("reactive")
+public class ReactiveCustomerController {
+
+    private final ReactiveCustomerService customerService;
+
+    public ReactiveCustomerController(ReactiveCustomerService customerService) {
+        this.customerService = customerService;
+    }
+
+    // the version is read before the customers , like CustomerController , and the customers are written while they are read
+    @GetMapping
+    public Mono<ResponseEntity<Flux<Customer>>> getCutomers(ServerWebExchange exchange) {
+        String representation = representation(exchange);
+        return customerService.getCustomersVersion()
+                .mapNotNull(version -> {
+                    String eTag = "W/" + CustomerController.eTag(version, representation);
+                    if (exchange.checkNotModified(eTag)) {
+                        return null; // 304 (not modified) , the customers aren't read
+                    }
+                    return ResponseEntity.ok()
+                            .eTag(eTag)
+                            .body(customerService.getAllCustomers());
+                });
+    }
+
+    @GetMapping("page")
+    public Mono<CustomerPage> getCustomersPage(
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
+        return customerService.getCustomersPage(sort, cursor, size);
+    }
+
+    @GetMapping("search")
+    public Mono<CustomerPage> searchCustomers(
+            @RequestParam(value = "name", required = false) String name,
+            @RequestParam(value = "emailDomain", required = false) String emailDomain,
+            @RequestParam(value = "minAge", required = false) Integer minAge,
+            @RequestParam(value = "maxAge", required = false) Integer maxAge,
+            @RequestParam(value = "gender", required = false) Gender gender,
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
+        return customerService.searchCustomers(
+                new CustomerSearch(name, emailDomain, minAge, maxAge, gender), sort, cursor, size);
+    }
+
+    @GetMapping("stats")
+    public Mono<CustomerStats> getCustomerStats() {
+        return customerService.getCustomerStats();
+    }
+
+    // one JSON object per line , every customer is written (and flushed) as soon as it is read
+    @GetMapping(value = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Customer> exportCustomers() {
+        return customerService.exportCustomers();
+    }
+
+    // If-None-Match only needs the version of the customer , it is read and serialized when it changed
+    @GetMapping("{customerId}")
+    public Mono<ResponseEntity<Customer>> getCustomer(@PathVariable Integer customerId, ServerWebExchange exchange) {
+        String representation = representation(exchange);
+        Mono<Boolean> notModified = exchange.getRequest().getHeaders().getFirst(HttpHeaders.IF_NONE_MATCH) == null
+                ? Mono.just(false)
+                : customerService.getCustomerVersion(customerId)
+                        .map(version -> exchange.checkNotModified(CustomerController.eTag(version, representation)));
+        return notModified.flatMap(unchanged -> unchanged
+                ? Mono.<ResponseEntity<Customer>>empty() // 304 (not modified)
+                : customerService.getCustomer(customerId)
+                        .map(customer -> ResponseEntity.ok()
+                                .eTag(CustomerController.eTag(customer.getVersion(), representation))
+                                .body(customer)));
+    }
+
+    @PostMapping
+    public Mono<CustomerRegistrationResponse> registerCustomer(@RequestBody CustomerRegistrationRequest request) {
+        return customerService.addCustomer(request);
+    }
+
+    @PostMapping("duplicates")
+    public Mono<List<CustomerDuplicate>> findDuplicates(@RequestBody CustomerRegistrationRequest request) {
+        return customerService.findDuplicates(request);
+    }
+
+    @PostMapping("batch")
+    public Mono<CustomerBatchRegistrationResponse> registerCustomers(@RequestBody List<CustomerRegistrationRequest> requests) {
+        return customerService.addCustomers(requests);
+    }
+
+    // the body is handed to the import while it arrives , see ReactiveCustomerService.importCustomers
+    @PostMapping(value = "import", consumes = "text/csv")
+    public Mono<CustomerImportResponse> importCustomers(ServerHttpRequest request) {
+        return customerService.importCustomers(request.getBody());
+    }
+
+    @DeleteMapping("{customerId}")
+    public Mono<Void> deleteCustomer(
+            @PathVariable("customerId") Integer customerId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long version = CustomerController.version(ifMatch);
+        return version == null
+                ? customerService.deleteCustomerById(customerId)
+                : customerService.deleteCustomerById(customerId, version);
+    }
+
+    @PutMapping("{customerId}")
+    public Mono<Void> updateCustomer(
+            @PathVariable("customerId") Integer customerId,
+            @RequestBody CustomerUpdateRequest updateRequest,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long version = CustomerController.version(ifMatch);
+        return version == null
+                ? customerService.updateCustomer(customerId, updateRequest)
+                : customerService.updateCustomer(customerId, updateRequest, version);
+    }
+
+    // the ETags of the customers depend on Accept , like the ones of CustomerController
+    private static String representation(ServerWebExchange exchange) {
+        exchange.getResponse().getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        return CustomerController.representation(exchange.getRequest().getHeaders().getOrEmpty(HttpHeaders.ACCEPT));
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.customer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+// CustomerDao without blocking , for the reactive profile , nothing happens until the result is subscribed to
+// a missing customer is an empty Mono
+public interface ReactiveCustomerDao {
+
+    // ordered by id , the rows are read while they are consumed (the export) , not all at once
+    Flux<Customer> selectAllCustomers();
+    // keyset page , after is null for the first page
+    Flux<Customer> selectCustomersPage(CustomerSort sort, CustomerCursor after, int limit);
+    // the same page , of the customers matching the search only
+    Flux<Customer> searchCustomers(CustomerSearch search, CustomerSort sort, CustomerCursor after, int limit);
+    Mono<Customer> selectCustomerById(Integer id);
+    // the generated id (and version) are set on the given customer
+    Mono<Customer> insertCustomer(Customer customer);
+    // all of them or none , the generated ids are set on the given customers
+    Mono<Void> insertCustomers(List<Customer> customers);
+    // which of the given emails are already taken
+    Mono<Set<String>> selectExistingEmails(Collection<String> emails);
+    // how many customers were deleted , 0 when there was none with the id
+    Mono<Long> deleteCustomerById(Integer id);
+    // the same , 0 also when the customer has another version
+    Mono<Long> deleteCustomerByIdAndVersion(Integer id, long version);
+    // changes only the given values , in one step that also checks the version and whether anything changes at all
+    Mono<CustomerUpdateStatus> updateCustomer(Integer id, CustomerUpdateRequest update);
+    // the version of the customer (its ETag) , without reading the customer itself
+    Mono<Long> selectCustomerVersion(Integer id);
+    // the version of all the customers together (the ETag of the list)
+    Mono<Long> selectCustomersVersion();
+    // how many customers there are by gender and age range , kept up to date by every change instead of counted
+    Mono<CustomerStats> selectCustomerStats();
+    // the customers whose name or email (before the @) is at least minSimilarity similar (pg_trgm) ,
+    // the most similar (at most limit) of each , name or email may be null , they are not ordered
+    Flux<Customer> selectDuplicateCandidates(String name, String email, double minSimilarity, int limit);
+}
@@ -0,0 +1,201 @@
+package com.example.customer;
+
+import com.example.exception.PreconditionFailedException;
+import com.example.exception.RequestValidationException;
+import com.example.exception.ResourceNotFoundException;
+import com.example.exception.StaleResourceException;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// CustomerService of the reactive profile , the same checks and answers , the same exceptions (and so the same statuses)
+// nothing blocks , every method returns at once and the work is done when the result is subscribed to
+// group commit (CustomerRegistrationWriter) is a thread waiting for the database , a registration is inserted on its own here
+@Service
+@Profile("reactive")
+public class ReactiveCustomerService {
+
+    // the csv buffered between the request and the import , the request is read no further ahead
+    private static final int IMPORT_BUFFER_SIZE = 64 * 1024;
+
+    private final ReactiveCustomerDao customerDao;
+    // only for the imports
+    private final CustomerService customerService;
+
+    public ReactiveCustomerService(ReactiveCustomerDao customerDao, CustomerService customerService) {
+        this.customerDao = customerDao;
+        this.customerService = customerService;
+    }
+
+
+    public Flux<Customer> getAllCustomers() {
+        return customerDao.selectAllCustomers();
+    }
+
+    public Mono<CustomerPage> getCustomersPage(String sort, String cursor, Integer size) {
+        return page(sort, cursor, size, customerDao::selectCustomersPage);
+    }
+
+    // the filters are not part of the cursor , the next page must be asked for with the same ones
+    public Mono<CustomerPage> searchCustomers(CustomerSearch search, String sort, String cursor, Integer size) {
+        CustomerService.checkSearch(search);
+        return page(sort, cursor, size, (customerSort, after, limit) ->
+                customerDao.searchCustomers(search, customerSort, after, limit));
+    }
+
+    private interface PageQuery {
+        Flux<Customer> select(CustomerSort sort, CustomerCursor after, int limit);
+    }
+
+    private Mono<CustomerPage> page(String sort, String cursor, Integer size, PageQuery query) {
+        CustomerCursor after = cursor == null ? null : CustomerCursor.decode(cursor);
+        CustomerSort customerSort = CustomerService.pageSort(sort, after);
+        int pageSize = CustomerService.pageSize(size);
+        return query.select(customerSort, after, pageSize + 1)
+                .collectList()
+                .map(customers -> CustomerService.pageOf(customers, customerSort, pageSize));
+    }
+
+
+    // the customers are read while they are written to the response , as fast as the client takes them
+    public Flux<Customer> exportCustomers() {
+        return customerDao.selectAllCustomers();
+    }
+
+
+    public Mono<Long> getCustomerVersion(Integer id) {
+        return customerDao.selectCustomerVersion(id)
+                .switchIfEmpty(Mono.error(() -> notFound(id)));
+    }
+
+    public Mono<Long> getCustomersVersion() {
+        return customerDao.selectCustomersVersion();
+    }
+
+    public Mono<CustomerStats> getCustomerStats() {
+        return customerDao.selectCustomerStats();
+    }
+
+    public Mono<Customer> getCustomer(Integer id) {
+        return customerDao.selectCustomerById(id)
+                .switchIfEmpty(Mono.error(() -> notFound(id)));
+    }
+
+    // the email isn't checked before inserting , the DAO fails with DuplicteResourceException when it is already taken
+    public Mono<CustomerRegistrationResponse> addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
+        Customer customer = new Customer(
+                customerRegistrationRequest.name(),
+                customerRegistrationRequest.email(),
+                customerRegistrationRequest.age(),
+                customerRegistrationRequest.gender());
+
+        return customerDao.insertCustomer(customer)
+                .flatMap(registered -> duplicates(registered.getName(), registered.getEmail(), registered.getId())
+                        .map(duplicates -> new CustomerRegistrationResponse(registered.getId(), duplicates)));
+    }
+
+    public Mono<List<CustomerDuplicate>> findDuplicates(CustomerRegistrationRequest request) {
+        if (request.name() == null && request.email() == null) {
+            return Mono.error(new RequestValidationException("name or email is required"));
+        }
+        return duplicates(request.name(), request.email(), null);
+    }
+
+    // one more than needed , a registered customer finds itself
+    private Mono<List<CustomerDuplicate>> duplicates(String name, String email, Integer registeredId) {
+        return customerDao.selectDuplicateCandidates(
+                        name, email, CustomerService.DUPLICATE_SIMILARITY, CustomerService.MAX_DUPLICATES + 1)
+                .collectList()
+                .map(candidates -> CustomerService.rankDuplicates(candidates, name, email, registeredId));
+    }
+
+    public Mono<CustomerBatchRegistrationResponse> addCustomers(List<CustomerRegistrationRequest> requests) {
+        CustomerBatchRegistration batch = CustomerBatchRegistration.of(requests);
+        return customerDao.selectExistingEmails(batch.emails())
+                .flatMap(existingEmails -> {
+                    batch.checkEmails(existingEmails);
+                    return customerDao.insertCustomers(batch.customers());
+                })
+                .then(Mono.fromSupplier(batch::response));
+    }
+
+    // r2dbc has no COPY , the import is the one of CustomerService (COPY over jdbc) , on a thread of the bounded elastic
+    // scheduler , the request is piped into it while it arrives , the event loop only hands the bytes over
+    public Mono<CustomerImportResponse> importCustomers(Flux<DataBuffer> csv) {
+        return Mono.fromCallable(() -> {
+            PipedInputStream input = new PipedInputStream(IMPORT_BUFFER_SIZE);
+            PipedOutputStream output = new PipedOutputStream(input);
+            // the writes wait while the pipe is full , on their own thread
+            DataBufferUtils.write(csv.publishOn(Schedulers.boundedElastic()), output)
+                    .doFinally(signal -> close(output))
+                    .subscribe(DataBufferUtils.releaseConsumer(), error -> close(output));
+            try (Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8)) {
+                return customerService.importCustomers(reader);
+            }
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // the delete itself tells whether the customer existed
+    public Mono<Void> deleteCustomerById(Integer customerId) {
+        return customerDao.deleteCustomerById(customerId)
+                .flatMap(deleted -> deleted == 0 ? Mono.<Void>error(notFound(customerId)) : Mono.<Void>empty());
+    }
+
+    // If-Match , only when nothing was deleted a second statement finds out why
+    public Mono<Void> deleteCustomerById(Integer customerId, long ifMatch) {
+        return customerDao.deleteCustomerByIdAndVersion(customerId, ifMatch)
+                .flatMap(deleted -> deleted != 0 ? Mono.<Void>empty() : customerDao.selectCustomerVersion(customerId)
+                        .flatMap(version -> Mono.<Void>error(new PreconditionFailedException(
+                                "customer with id [%s] doesn't have version [%s]".formatted(customerId, ifMatch)
+                        )))
+                        .switchIfEmpty(Mono.error(() -> notFound(customerId))));
+    }
+
+    public Mono<Void> updateCustomer(Integer customerId, CustomerUpdateRequest updateRequest) {
+        return customerDao.updateCustomer(customerId, updateRequest)
+                .doOnNext(status -> CustomerService.checkUpdated(customerId, status, () -> new StaleResourceException(
+                        "customer with id [%s] was changed since version [%s]".formatted(customerId, updateRequest.version())
+                )))
+                .then();
+    }
+
+    // If-Match , the version of the header is checked by the same statement
+    public Mono<Void> updateCustomer(Integer customerId, CustomerUpdateRequest updateRequest, long ifMatch) {
+        if (updateRequest.version() != null && updateRequest.version() != ifMatch) {
+            return Mono.error(new RequestValidationException(
+                    "version [%s] doesn't match If-Match [%s]".formatted(updateRequest.version(), ifMatch)
+            ));
+        }
+        CustomerUpdateRequest conditional = new CustomerUpdateRequest(
+                updateRequest.name(), updateRequest.email(), updateRequest.age(), ifMatch);
+        return customerDao.updateCustomer(customerId, conditional)
+                .doOnNext(status -> CustomerService.checkUpdated(customerId, status, () -> new PreconditionFailedException(
+                        "customer with id [%s] doesn't have version [%s]".formatted(customerId, ifMatch)
+                )))
+                .then();
+    }
+
+    private static ResourceNotFoundException notFound(Integer id) {
+        return new ResourceNotFoundException("customer with id [%s] not found".formatted(id));
+    }
+
+    private static void close(PipedOutputStream output) {
+        try {
+            output.close();
+        } catch (IOException e) {
+            // the import already stopped reading
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.customer;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+// the similarity of pg_trgm (similarity(a, b)) for the customers kept in memory
+// every word (letters and digits) is lower cased and padded with two spaces in front and one after ,
+// the similarity is the number of 3 character pieces both strings have divided by the number of pieces of either one
+final class Trigrams {
+
+    private Trigrams() {
+    }
+
+    static double similarity(String a, String b) {
+        Set<String> first = trigrams(a);
+        Set<String> second = trigrams(b);
+        if (first.isEmpty() || second.isEmpty()) {
+            return 0;
+        }
+        Set<String> shared = new HashSet<>(first);
+        shared.retainAll(second);
+        return (double) shared.size() / (first.size() + second.size() - shared.size());
+    }
+
+    private static Set<String> trigrams(String value) {
+        Set<String> trigrams = new HashSet<>();
+        for (String word : value.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                trigrams.add(padded.substring(i, i + 3));
+            }
+        }
+        return trigrams;
+    }
+}
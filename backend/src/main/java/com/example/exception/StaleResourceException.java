@@ -0,0 +1,13 @@
+package com.example.exception;
+
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// the resource was changed by someone else since the client read it
+@ResponseStatus(code = HttpStatus.CONFLICT)
+public class StaleResourceException extends RuntimeException{
+    public StaleResourceException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+-- the increment of customer_id_sequence is the block size of CustomerIdGenerator (customer.id.allocation-size)
+-- flyway re-runs this script whenever the placeholder changes
+DO $$
+DECLARE
+    old_increment BIGINT;
+BEGIN
+    SELECT increment_by INTO old_increment
+    FROM pg_sequences
+    WHERE schemaname = current_schema() AND sequencename = 'customer_id_sequence';
+
+    -- the last block handed out with the old increment may still be in use , the first new block starts after it
+    PERFORM setval('customer_id_sequence', (SELECT last_value FROM customer_id_sequence) + old_increment, false);
+    ALTER SEQUENCE customer_id_sequence INCREMENT BY ${customer_id_allocation_size};
+END
+$$;
@@ -0,0 +1,37 @@
+-- the version of the whole list of customers (the ETag of GET /api/v1/customers) , it grows with every statement that
+-- changes customers , so a client that already has the list gets 304 (not modified) after one tiny query
+-- a single counter row would make every registration wait for the lock of that row until the one before commits ,
+-- the count is spread over 16 rows (the connection picks one , pg_backend_pid() % 16) and the version is their sum
+CREATE TABLE customer_changes (
+    slot    INTEGER PRIMARY KEY,
+    changes BIGINT  NOT NULL
+);
+
+INSERT INTO customer_changes (slot, changes)
+SELECT slot, 0 FROM generate_series(0, 15) slot;
+
+-- once per statement (a batch registration is a few multi-row inserts) , not once per row
+-- a statement that changed nothing (an update of an old version , a delete of a missing id) doesn't count
+CREATE FUNCTION count_customer_changes() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+BEGIN
+    IF EXISTS (SELECT 1 FROM changed) THEN
+        UPDATE customer_changes SET changes = changes + 1 WHERE slot = pg_backend_pid() % 16;
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+-- a trigger with a transition table can only have one event
+CREATE TRIGGER customer_inserted AFTER INSERT ON customer
+    REFERENCING NEW TABLE AS changed
+    FOR EACH STATEMENT EXECUTE FUNCTION count_customer_changes();
+
+CREATE TRIGGER customer_updated AFTER UPDATE ON customer
+    REFERENCING NEW TABLE AS changed
+    FOR EACH STATEMENT EXECUTE FUNCTION count_customer_changes();
+
+CREATE TRIGGER customer_deleted AFTER DELETE ON customer
+    REFERENCING OLD TABLE AS changed
+    FOR EACH STATEMENT EXECUTE FUNCTION count_customer_changes();
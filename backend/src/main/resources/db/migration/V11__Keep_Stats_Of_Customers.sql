@@ -0,0 +1,83 @@
+-- the numbers of GET /api/v1/customers/stats , how many customers there are of every gender in every age range
+-- (10 years , age_from is the first age of the range) , kept up to date by the triggers below so reading them
+-- never scans customer , only these few rows
+-- like customer_changes the counts are spread over 16 slots (the connection picks one , pg_backend_pid() % 16) ,
+-- a slot may go negative (a customer registered through one connection and deleted through another) ,
+-- only the sum of the slots is the number of customers
+CREATE TABLE customer_stats (
+    slot      INTEGER NOT NULL,
+    gender    TEXT    NOT NULL,
+    age_from  INTEGER NOT NULL,
+    customers BIGINT  NOT NULL,
+    PRIMARY KEY (slot, gender, age_from)
+);
+
+-- the customers there already are , nobody can change them until the triggers exist (the lock is held until the
+-- migration commits)
+LOCK TABLE customer IN SHARE MODE;
+
+INSERT INTO customer_stats (slot, gender, age_from, customers)
+SELECT 0, gender, age / 10 * 10, count(*)
+FROM customer
+GROUP BY 2, 3;
+
+-- once per statement , the rows it inserted count +1 and the rows it deleted -1 , an update moves its customers from the
+-- range of the old age to the one of the new age , the ranges that didn't change in the end aren't touched
+-- the rows of customer_stats are locked in the order of the key , two statements using the same slot can't deadlock
+CREATE FUNCTION count_customer_stats() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO customer_stats AS s (slot, gender, age_from, customers)
+        SELECT pg_backend_pid() % 16, gender, age / 10 * 10, count(*)
+        FROM new_customers
+        GROUP BY 2, 3
+        ORDER BY 2, 3
+        ON CONFLICT (slot, gender, age_from) DO UPDATE SET customers = s.customers + EXCLUDED.customers;
+    ELSIF TG_OP = 'DELETE' THEN
+        INSERT INTO customer_stats AS s (slot, gender, age_from, customers)
+        SELECT pg_backend_pid() % 16, gender, age / 10 * 10, -count(*)
+        FROM old_customers
+        GROUP BY 2, 3
+        ORDER BY 2, 3
+        ON CONFLICT (slot, gender, age_from) DO UPDATE SET customers = s.customers + EXCLUDED.customers;
+    ELSE
+        INSERT INTO customer_stats AS s (slot, gender, age_from, customers)
+        SELECT pg_backend_pid() % 16, gender, age / 10 * 10, sum(customers)
+        FROM (SELECT gender, age, 1 AS customers FROM new_customers
+              UNION ALL
+              SELECT gender, age, -1 FROM old_customers) changed
+        GROUP BY 2, 3
+        HAVING sum(customers) <> 0
+        ORDER BY 2, 3
+        ON CONFLICT (slot, gender, age_from) DO UPDATE SET customers = s.customers + EXCLUDED.customers;
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER customer_stats_inserted AFTER INSERT ON customer
+    REFERENCING NEW TABLE AS new_customers
+    FOR EACH STATEMENT EXECUTE FUNCTION count_customer_stats();
+
+CREATE TRIGGER customer_stats_updated AFTER UPDATE ON customer
+    REFERENCING OLD TABLE AS old_customers NEW TABLE AS new_customers
+    FOR EACH STATEMENT EXECUTE FUNCTION count_customer_stats();
+
+CREATE TRIGGER customer_stats_deleted AFTER DELETE ON customer
+    REFERENCING OLD TABLE AS old_customers
+    FOR EACH STATEMENT EXECUTE FUNCTION count_customer_stats();
+
+-- TRUNCATE doesn't fire the delete trigger (the benchmarks empty the table with it)
+CREATE FUNCTION reset_customer_stats() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+BEGIN
+    DELETE FROM customer_stats;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER customer_stats_truncated AFTER TRUNCATE ON customer
+    FOR EACH STATEMENT EXECUTE FUNCTION reset_customer_stats();
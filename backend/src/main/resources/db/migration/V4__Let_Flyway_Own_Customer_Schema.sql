@@ -0,0 +1,14 @@
+-- hibernate (ddl-auto=create-drop) used to drop the customer table on shutdown and re-create it on start ,
+-- so a database that already ran V1..V3 may have no customer table at all , from here on flyway owns the schema
+CREATE TABLE IF NOT EXISTS customer(
+    id BIGSERIAL PRIMARY KEY,
+    name TEXT NOT NULL,
+    email TEXT NOT NULL,
+    age INT NOT NULL,
+    gender TEXT NOT NULL,
+    CONSTRAINT customer_email_unique UNIQUE (email)
+);
+
+-- the sequence the Customer entity takes its ids from (@SequenceGenerator) , it used to be created by hibernate
+CREATE SEQUENCE IF NOT EXISTS customer_id_sequence;
+SELECT setval('customer_id_sequence', COALESCE((SELECT MAX(id) FROM customer), 0) + 1, false);
@@ -0,0 +1,3 @@
+-- keyset pagination seeks to (name, id) / (age, id) of the last row of the previous page
+CREATE INDEX customer_name_id_idx ON customer (name, id);
+CREATE INDEX customer_age_id_idx ON customer (age, id);
@@ -0,0 +1,7 @@
+-- every id comes from customer_id_sequence , handed out by hibernate in blocks (pooled-lo)
+-- the BIGSERIAL default of V1 (customer_id_seq) hands out one id per nextval and would collide with those blocks ,
+-- so the column has no default anymore and an insert without an id fails instead of burning a whole block
+ALTER TABLE customer ALTER COLUMN id DROP DEFAULT;
+DROP SEQUENCE IF EXISTS customer_id_seq;
+ALTER SEQUENCE customer_id_sequence OWNED BY customer.id;
+SELECT setval('customer_id_sequence', COALESCE((SELECT MAX(id) FROM customer), 0) + 1, false);
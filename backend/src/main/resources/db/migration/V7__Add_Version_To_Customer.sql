@@ -0,0 +1,3 @@
+-- optimistic locking , every update increments it and an update made for another version changes nothing
+-- a constant default only changes the catalog , the existing rows are not rewritten
+ALTER TABLE customer ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,15 @@
+-- GET /api/v1/customers/search (CustomerSearchQuery) , every filter can be answered by an index
+-- trusted extension , the owner of the database may create it
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- name prefix , case insensitive : lower(name) LIKE 'al%'
+-- text_pattern_ops compares character by character , so LIKE with a fixed prefix becomes a range of the index
+CREATE INDEX customer_lower_name_pattern_idx ON customer (lower(name) text_pattern_ops);
+
+-- email domain : lower(email) LIKE '%@gmail.com' , a btree can't find a suffix but the trigrams of it can
+-- fastupdate off , every insert goes into the index right away instead of a pending list that every search has to read
+-- (and that only vacuum empties) , customers are registered one by one so searches would get slower between vacuums
+CREATE INDEX customer_lower_email_trgm_idx ON customer USING gin (lower(email) gin_trgm_ops) WITH (fastupdate = off);
+
+-- gender with or without an age range , already in the order of sort=age
+CREATE INDEX customer_gender_age_id_idx ON customer (gender, age, id);
@@ -0,0 +1,58 @@
+package com.example;
+
+import com.example.config.RequestStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PingPongControllerTest {
+
+    private final DataSource dataSource = mock(DataSource.class);
+    private final PingPongController underTest = new PingPongController(new RequestStats(), dataSource);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+    }
+
+    @Test
+    void databaseIsDownWhenNoConnectionComesInTime() throws Exception {
+        //Given
+        // like a pool without a free connection , it would wait for its connection timeout (30s)
+        when(dataSource.getConnection()).thenAnswer(invocation -> {
+            release.await();
+            throw new IllegalStateException("no connection");
+        });
+
+        //When
+        ResponseEntity<PingPongController.PingPong> actual = underTest.getPingPong(true).block(Duration.ofSeconds(10));
+
+        //Then
+        // the probe answers after DATABASE_TIMEOUT_SECONDS , not after the timeout of the pool
+        assertThat(actual.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(actual.getBody().database().up()).isFalse();
+        assertThat(actual.getBody().database().millis()).isBetween(2_000.0, 10_000.0);
+    }
+
+    @Test
+    void pingWithoutDatabaseDoesNotTouchIt() {
+        //When
+        ResponseEntity<PingPongController.PingPong> actual = underTest.getPingPong(false).block(Duration.ofSeconds(1));
+
+        //Then
+        assertThat(actual.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(actual.getBody().result()).isEqualTo("Pong: 1");
+        assertThat(actual.getBody().database()).isNull();
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.example;
+
+import com.example.customer.CustomerService;
+import io.r2dbc.spi.ConnectionFactory;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.boot.web.embedded.netty.NettyWebServer;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+// the reactive profile boots with both of its connections to the database , r2dbc for the customer api and jdbc
+// (ReactiveJdbcConfig) for flyway , jpa and the imports , spring boot creates no data source next to r2dbc by itself
+// and on netty (WebFluxConfig) , not on the tomcat of spring mvc
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@ActiveProfiles("reactive")
+class ReactiveProfileContextTest extends AbstractTestContainersUnitTest {
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @DynamicPropertySource
+    private static void registerR2dbcProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.r2dbc.url", () -> "r2dbc:postgresql://%s:%s/%s".formatted(
+                postgreSQLContainer.getHost(),
+                postgreSQLContainer.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT),
+                postgreSQLContainer.getDatabaseName()));
+    }
+
+    @Test
+    void bootsWithJdbcNextToR2dbc() {
+        assertThat(applicationContext.getBeansOfType(ConnectionFactory.class)).hasSize(1);
+        assertThat(applicationContext.getBeansOfType(DataSource.class)).hasSize(1);
+        assertThat(applicationContext.getBean(CustomerService.class)).isNotNull();
+
+        // flyway migrated the schema through the jdbc data source
+        assertThat(applicationContext.getBean(Flyway.class).info().applied()).isNotEmpty();
+        Integer customers = new JdbcTemplate(applicationContext.getBean(DataSource.class))
+                .queryForObject("SELECT count(*) FROM customer", Integer.class);
+        assertThat(customers).isNotNull();
+    }
+
+    @Test
+    void servesOnNetty() {
+        assertThat(((WebServerApplicationContext) applicationContext).getWebServer()).isInstanceOf(NettyWebServer.class);
+    }
+
+}
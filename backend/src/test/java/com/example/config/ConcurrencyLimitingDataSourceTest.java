@@ -0,0 +1,112 @@
+package com.example.config;
+
+import com.example.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConcurrencyLimitingDataSourceTest {
+
+    private static final Duration ACQUIRE_TIMEOUT = Duration.ofMillis(100);
+
+    private ConcurrencyLimitingDataSource underTest;
+    private AutoCloseable autoCloseable;
+
+    @Mock
+    private DataSource dataSource; // the connection pool will be a mock
+
+    @Mock
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        autoCloseable = MockitoAnnotations.openMocks(this);
+        when(dataSource.getConnection()).thenReturn(connection);
+        underTest = new ConcurrencyLimitingDataSource(dataSource, 2, ACQUIRE_TIMEOUT);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        autoCloseable.close();
+    }
+
+    @Test
+    void closingConnectionGivesPermitBackOnce() throws SQLException {
+        //Given
+        Connection actual = underTest.getConnection();
+        assertThat(underTest.availablePermits()).isEqualTo(1);
+
+        //When
+        actual.close();
+        actual.close();
+
+        //Then
+        assertThat(underTest.availablePermits()).isEqualTo(2);
+        verify(connection, times(2)).close();
+    }
+
+    @Test
+    void willThrowWhenNoPermitWithinTimeout() throws SQLException {
+        //Given
+        underTest.getConnection();
+        underTest.getConnection();
+
+        //When
+        //Then
+        // spring wraps it , the cause makes the response 503 instead of 500
+        assertThatThrownBy(() -> underTest.getConnection())
+                .isInstanceOf(SQLTransientConnectionException.class)
+                .hasCauseInstanceOf(ServiceUnavailableException.class);
+        verify(dataSource, times(2)).getConnection();
+    }
+
+    @Test
+    void waitingThreadGetsConnectionWhenOneIsClosed() throws Exception {
+        //Given
+        ConcurrencyLimitingDataSource limiter = new ConcurrencyLimitingDataSource(dataSource, 1, Duration.ofSeconds(10));
+        Connection held = limiter.getConnection();
+
+        //When
+        CompletableFuture<Connection> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return limiter.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        held.close();
+
+        //Then
+        assertThat(waiting.get(5, TimeUnit.SECONDS)).isNotNull();
+        assertThat(limiter.availablePermits()).isZero();
+    }
+
+    @Test
+    void failingPoolGivesPermitBack() throws SQLException {
+        //Given
+        when(dataSource.getConnection()).thenThrow(new SQLException("database is down"));
+
+        //When
+        assertThatThrownBy(() -> underTest.getConnection())
+                .hasMessage("database is down");
+
+        //Then
+        assertThat(underTest.availablePermits()).isEqualTo(2);
+    }
+}
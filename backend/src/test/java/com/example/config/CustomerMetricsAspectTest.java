@@ -0,0 +1,68 @@
+package com.example.config;
+
+import com.example.customer.CustomeListDataAccessService;
+import com.example.customer.CustomerDao;
+import com.example.customer.CustomerService;
+import com.example.exception.ResourceNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerMetricsAspectTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CustomerDao customerDao;
+    private CustomerService underTest;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        CustomerMetricsAspect aspect = new CustomerMetricsAspect(meterRegistry);
+        // the same proxies spring creates around the beans
+        customerDao = proxy(new CustomeListDataAccessService(), aspect);
+        underTest = proxy(new CustomerService(customerDao), aspect);
+    }
+
+    @Test
+    void timesServiceAndDaoCalls() {
+        //When
+        underTest.getCustomer(1);
+        underTest.getCustomer(2);
+
+        //Then
+        assertThat(meterRegistry.get("customer.service").tag("method", "getCustomer")
+                .timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("customer.dao").tag("dao", "list").tag("method", "selectCustomerById")
+                .timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void countsErrorsByException() {
+        //When
+        assertThatThrownBy(() -> underTest.getCustomer(-1))
+                .isInstanceOf(ResourceNotFoundException.class);
+
+        //Then
+        assertThat(meterRegistry.get("customer.service.errors")
+                .tag("method", "getCustomer")
+                .tag("exception", "ResourceNotFoundException")
+                .counter().count()).isEqualTo(1);
+        // the failed call is still timed
+        assertThat(meterRegistry.get("customer.service").tag("method", "getCustomer")
+                .timer().count()).isEqualTo(1);
+        // the DAO didn't fail , it found nothing
+        assertThat(meterRegistry.find("customer.dao.errors").counters()).isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(T target, CustomerMetricsAspect aspect) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(aspect);
+        return (T) factory.getProxy();
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactiveRequestStatsFilterTest {
+
+    private final RequestStats requestStats = new RequestStats();
+    private final ReactiveRequestStatsFilter underTest = new ReactiveRequestStatsFilter(requestStats);
+
+    @Test
+    void countsRequestsByEndpoint() {
+        //When
+        request("/api/v1/customers/1", "/api/v1/customers/{customerId}");
+        request("/api/v1/customers/2", "/api/v1/customers/{customerId}");
+        request("/nothing", null);
+
+        //Then
+        assertThat(requestStats.requests()).isEqualTo(Map.of(
+                "GET /api/v1/customers/{customerId}", 2L,
+                "GET unmapped", 1L));
+        assertThat(requestStats.latency().requests()).isEqualTo(3);
+    }
+
+    @Test
+    void failedRequestIsCountedToo() {
+        //Given
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/customers"));
+
+        //When
+        underTest.filter(exchange, e -> Mono.error(new IllegalStateException("failed")))
+                .onErrorComplete()
+                .block();
+
+        //Then
+        assertThat(requestStats.requests()).containsEntry("GET unmapped", 1L);
+    }
+
+    // the pattern is set by webflux while it handles the request , like it is here by the chain
+    private void request(String path, String pattern) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get(path));
+        underTest.filter(exchange, e -> {
+            if (pattern != null) {
+                e.getAttributes().put(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE,
+                        PathPatternParser.defaultInstance.parse(pattern));
+            }
+            return Mono.empty();
+        }).block();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.config;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequestStatsFilterTest {
+
+    private final RequestStats requestStats = new RequestStats();
+    private final RequestStatsFilter underTest = new RequestStatsFilter(requestStats);
+
+    @Test
+    void countsRequestsByEndpoint() throws Exception {
+        //When
+        request("GET", "/api/v1/customers/1", "/api/v1/customers/{customerId}");
+        request("GET", "/api/v1/customers/2", "/api/v1/customers/{customerId}");
+        request("DELETE", "/api/v1/customers/2", "/api/v1/customers/{customerId}");
+        request("GET", "/nothing", null);
+
+        //Then
+        // by pattern , not by path , so there is one counter per endpoint however many customers there are
+        assertThat(requestStats.requests()).isEqualTo(Map.of(
+                "GET /api/v1/customers/{customerId}", 2L,
+                "DELETE /api/v1/customers/{customerId}", 1L,
+                "GET unmapped", 1L));
+        assertThat(requestStats.latency().requests()).isEqualTo(4);
+    }
+
+    @Test
+    void pingsAreCountedButNotTimed() throws Exception {
+        //When
+        request("GET", "/ping", "/ping");
+
+        //Then
+        assertThat(requestStats.requests()).containsEntry(RequestStats.PING, 1L);
+        assertThat(requestStats.latency().requests()).isZero();
+    }
+
+    @Test
+    void failedRequestIsCountedToo() {
+        //Given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/customers");
+        MockFilterChain chain = new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) {
+                req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/v1/customers");
+                throw new IllegalStateException("failed");
+            }
+        });
+
+        //When
+        assertThatThrownBy(() -> underTest.doFilter(request, new MockHttpServletResponse(), chain))
+                .hasMessage("failed");
+
+        //Then
+        assertThat(requestStats.requests()).containsEntry("GET /api/v1/customers", 1L);
+    }
+
+    // the pattern is set by spring mvc while it handles the request , like it is here by the servlet
+    private void request(String method, String path, String pattern) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        MockFilterChain chain = new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) {
+                if (pattern != null) {
+                    req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+                }
+            }
+        });
+        underTest.doFilter(request, new MockHttpServletResponse(), chain);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class RollingLatencyTest {
+
+    // the time the window sees , in nanos
+    private final AtomicLong time = new AtomicLong();
+    private final RollingLatency underTest = new RollingLatency(time::get);
+
+    @Test
+    void summarizesRecordedLatencies() {
+        //Given
+        for (int millis = 1; millis <= 100; millis++) {
+            underTest.record(Duration.ofMillis(millis).toNanos());
+        }
+
+        //When
+        RollingLatency.Summary actual = underTest.summary();
+
+        //Then
+        // a percentile is the upper bound of its bucket , at most an eighth more than the real one
+        assertThat(actual.requests()).isEqualTo(100);
+        assertThat(actual.meanMillis()).isEqualTo(50.5);
+        assertThat(actual.p50Millis()).isBetween(50.0, 50.0 * 9 / 8);
+        assertThat(actual.p95Millis()).isBetween(95.0, 95.0 * 9 / 8);
+        assertThat(actual.p99Millis()).isBetween(99.0, 100.0);
+        assertThat(actual.maxMillis()).isEqualTo(100.0);
+        assertThat(actual.windowSeconds()).isEqualTo(60);
+    }
+
+    @Test
+    void forgetsLatenciesOlderThanWindow() {
+        //Given
+        underTest.record(Duration.ofSeconds(5).toNanos());
+        time.addAndGet(Duration.ofSeconds(30).toNanos());
+        underTest.record(Duration.ofMillis(2).toNanos());
+
+        //When
+        RollingLatency.Summary halfAMinuteLater = underTest.summary();
+        time.addAndGet(Duration.ofSeconds(35).toNanos());
+        RollingLatency.Summary aMinuteLater = underTest.summary();
+
+        //Then
+        assertThat(halfAMinuteLater.requests()).isEqualTo(2);
+        assertThat(halfAMinuteLater.maxMillis()).isEqualTo(5_000.0);
+        // the slow one is out of the window , its interval is emptied when it is used again
+        assertThat(aMinuteLater.requests()).isEqualTo(1);
+        assertThat(aMinuteLater.maxMillis()).isEqualTo(2.0);
+        underTest.record(Duration.ofMillis(1).toNanos());
+        assertThat(underTest.summary().requests()).isEqualTo(2);
+    }
+
+    @Test
+    void emptyWindowIsAllZeros() {
+        //When
+        RollingLatency.Summary actual = underTest.summary();
+
+        //Then
+        assertThat(actual).isEqualTo(new RollingLatency.Summary(60, 0, 0, 0, 0, 0, 0));
+    }
+
+    @Test
+    void bucketsCoverEveryLatency() {
+        //Then
+        // every value is counted in a bucket whose upper bound is at least the value and at most an eighth more
+        for (long micros = 0; micros < 1_000_000; micros += 7) {
+            long upperBound = RollingLatency.upperBound(RollingLatency.bucket(micros));
+            assertThat((double) upperBound).isCloseTo(micros, within(micros / 8.0 + 1));
+            assertThat(upperBound).isGreaterThanOrEqualTo(micros);
+        }
+        assertThat(RollingLatency.bucket(Long.MAX_VALUE)).isEqualTo(RollingLatency.bucket(1L << 50));
+    }
+}
@@ -0,0 +1,451 @@
+package com.example.customer;
+
+import com.example.exception.DuplicteResourceException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomeListDataAccessServiceTest {
+
+    private static final int THREADS = 16;
+
+    private CustomeListDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        // a new instance for every test , the customers are no longer kept in a static list shared by all of them
+        underTest = new CustomeListDataAccessService();
+    }
+
+    @Test
+    void selectCustomerByEmail() {
+        //When
+        Optional<Customer> actual = underTest.selectCustomerByEmail("alex@gmail.com");
+
+        //Then
+        // it used to compare the email against the name of the customer
+        assertThat(actual).map(Customer::getName).hasValue("Alex");
+    }
+
+    @Test
+    void insertCustomerGeneratesId() {
+        //Given
+        Customer customer = new Customer("George", "george@gmail.com", 22, Gender.MALE);
+
+        //When
+        underTest.insertCustomer(customer);
+
+        //Then
+        // the seeded customers took 1 and 2
+        assertThat(customer.getId()).isEqualTo(3);
+        assertThat(underTest.selectCustomerById(3)).hasValue(customer);
+    }
+
+    @Test
+    void willThrowWhenInsertingTakenEmail() {
+        //Given
+        Customer customer = new Customer("Other Alex", "alex@gmail.com", 30, Gender.MALE);
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.insertCustomer(customer))
+                .isInstanceOf(DuplicteResourceException.class)
+                .hasMessage("email already taken");
+        assertThat(underTest.selectAllCustomers()).hasSize(2);
+    }
+
+    @Test
+    void insertCustomersInsertsNoneWhenOneEmailIsTaken() {
+        //Given
+        List<Customer> customers = List.of(
+                new Customer("George", "george@gmail.com", 22, Gender.MALE),
+                new Customer("Other Alex", "alex@gmail.com", 30, Gender.MALE));
+
+        //When
+        assertThatThrownBy(() -> underTest.insertCustomers(customers))
+                .isInstanceOf(DuplicteResourceException.class);
+
+        //Then
+        // like a rolled back transaction , george was removed again
+        assertThat(underTest.selectAllCustomers()).hasSize(2);
+        assertThat(underTest.isPersonExistWithEmail("george@gmail.com")).isFalse();
+    }
+
+    @Test
+    void importCustomersHandsBackRowsWithTakenEmails() {
+        //Given
+        List<CustomerImportRow> rows = List.of(
+                new CustomerImportRow(2, "George", "george@gmail.com", 22, Gender.MALE),
+                new CustomerImportRow(3, "Other Alex", "alex@gmail.com", 30, Gender.MALE),
+                new CustomerImportRow(4, "Other George", "george@gmail.com", 40, Gender.MALE));
+        List<CustomerImportRow> emailTaken = new ArrayList<>();
+
+        //When
+        long actual = underTest.importCustomers(rows.iterator(), emailTaken::add);
+
+        //Then
+        assertThat(actual).isEqualTo(1);
+        assertThat(emailTaken).containsExactly(rows.get(1), rows.get(2));
+        assertThat(underTest.selectCustomerByEmail("george@gmail.com")).get()
+                .extracting(Customer::getName).isEqualTo("George");
+    }
+
+    @Test
+    void selectExistingEmails() {
+        //When
+        Set<String> actual = underTest.selectExistingEmails(List.of("alex@gmail.com", "george@gmail.com"));
+
+        //Then
+        assertThat(actual).containsExactly("alex@gmail.com");
+    }
+
+    @Test
+    void searchCustomers() {
+        //Given
+        underTest.insertCustomer(new Customer("Albert", "albert@GMAIL.com", 40, Gender.MALE));
+        underTest.insertCustomer(new Customer("Alba", "alba@gmail.com", 19, Gender.FEMALE));
+
+        //When
+        List<Customer> byName = underTest.searchCustomers(
+                new CustomerSearch("al", null, null, null, null), CustomerSort.AGE, null, 10);
+        List<Customer> byEverything = underTest.searchCustomers(
+                new CustomerSearch("AL", "gmail.com", 20, 50, Gender.MALE), CustomerSort.ID, null, 10);
+
+        //Then
+        // the prefix and the domain ignore case , like lower() in the query of the jpa DAO
+        assertThat(byName).extracting(Customer::getName).containsExactly("Alba", "Alex", "Albert");
+        assertThat(byEverything).extracting(Customer::getName).containsExactly("Alex", "Albert");
+    }
+
+    @Test
+    void selectDuplicateCandidates() {
+        //Given
+        underTest.insertCustomer(new Customer("George Magdy", "gmagdy@gmail.com", 30, Gender.MALE));
+        underTest.insertCustomer(new Customer("Mina Samir", "mina.samir@gmail.com", 28, Gender.MALE));
+
+        //When
+        List<Customer> byName = underTest.selectDuplicateCandidates("Georg Magdi", null, 0.5, 1);
+        List<Customer> byEmail = underTest.selectDuplicateCandidates(null, "minasamir@yahoo.com", 0.5, 1);
+        List<Customer> byBoth = underTest.selectDuplicateCandidates("Georg Magdi", "minasamir@yahoo.com", 0.5, 1);
+
+        //Then
+        // the most similar of each , the domain of the email doesn't count and Alex and Jamila aren't similar at all
+        assertThat(byName).extracting(Customer::getName).containsExactly("George Magdy");
+        assertThat(byEmail).extracting(Customer::getName).containsExactly("Mina Samir");
+        assertThat(byBoth).extracting(Customer::getName).containsExactlyInAnyOrder("George Magdy", "Mina Samir");
+    }
+
+    @Test
+    void updateCustomerReplacesInsteadOfAppending() {
+        //Given
+        CustomerUpdateRequest update = new CustomerUpdateRequest("Alexander", null, 22);
+
+        //When
+        CustomerUpdateStatus actual = underTest.updateCustomer(1, update);
+
+        //Then
+        // it used to add the updated customer next to the old one
+        assertThat(actual).isEqualTo(CustomerUpdateStatus.UPDATED);
+        assertThat(underTest.selectAllCustomers()).hasSize(2);
+        assertThat(underTest.selectCustomerById(1))
+                .hasValue(new Customer(1, "Alexander", "alex@gmail.com", 22, Gender.MALE));
+    }
+
+    @Test
+    void updateCustomerMovesEmailIndex() {
+        //Given
+        CustomerUpdateRequest update = new CustomerUpdateRequest(null, "alexander@gmail.com", null);
+
+        //When
+        underTest.updateCustomer(1, update);
+
+        //Then
+        assertThat(underTest.isPersonExistWithEmail("alex@gmail.com")).isFalse();
+        assertThat(underTest.selectCustomerByEmail("alex@gmail.com")).isEmpty();
+        assertThat(underTest.selectCustomerByEmail("alexander@gmail.com"))
+                .hasValue(new Customer(1, "Alex", "alexander@gmail.com", 21, Gender.MALE));
+    }
+
+    @Test
+    void updateCustomerIncrementsVersion() {
+        //When
+        underTest.updateCustomer(1, new CustomerUpdateRequest("Alexander", null, null));
+        underTest.updateCustomer(1, new CustomerUpdateRequest(null, null, 30));
+
+        //Then
+        assertThat(underTest.selectCustomerById(1)).map(Customer::getVersion).hasValue(2L);
+    }
+
+    @Test
+    void updateCustomerForOtherVersionIsStale() {
+        //Given
+        // the client read version 0 , then someone else updated the customer
+        underTest.updateCustomer(1, new CustomerUpdateRequest("Alexander", null, null));
+
+        //When
+        CustomerUpdateStatus actual = underTest.updateCustomer(1, new CustomerUpdateRequest(null, null, 30, 0L));
+
+        //Then
+        assertThat(actual).isEqualTo(CustomerUpdateStatus.STALE);
+        assertThat(underTest.selectCustomerById(1)).map(Customer::getAge).hasValue(21);
+    }
+
+    @Test
+    void updateCustomerWithSameValuesIsUnchanged() {
+        //When
+        CustomerUpdateStatus actual = underTest.updateCustomer(1, new CustomerUpdateRequest("Alex", "alex@gmail.com", null));
+
+        //Then
+        assertThat(actual).isEqualTo(CustomerUpdateStatus.UNCHANGED);
+        assertThat(underTest.selectCustomerById(1)).map(Customer::getVersion).hasValue(0L);
+        assertThat(underTest.updateCustomer(42, new CustomerUpdateRequest("Nobody", null, null)))
+                .isEqualTo(CustomerUpdateStatus.NOT_FOUND);
+    }
+
+    @Test
+    void willThrowWhenUpdatingToTakenEmail() {
+        //Given
+        CustomerUpdateRequest update = new CustomerUpdateRequest(null, "jamila@gmail.com", null);
+
+        //When
+        assertThatThrownBy(() -> underTest.updateCustomer(1, update))
+                .isInstanceOf(DuplicteResourceException.class)
+                .hasMessage("email already taken");
+
+        //Then
+        // nothing changed , neither the customer nor any of the indexes
+        assertThat(underTest.selectCustomerById(1)).map(Customer::getEmail).hasValue("alex@gmail.com");
+        assertThat(underTest.selectCustomerByEmail("alex@gmail.com")).map(Customer::getId).hasValue(1);
+        assertThat(underTest.selectCustomerByEmail("jamila@gmail.com")).map(Customer::getId).hasValue(2);
+    }
+
+    @Test
+    void deleteCustomerByIdRemovesItFromEveryIndex() {
+        //When
+        int actual = underTest.deleteCustomerById(1);
+
+        //Then
+        assertThat(actual).isEqualTo(1);
+        assertThat(underTest.deleteCustomerById(1)).isZero();
+        assertThat(underTest.isPersonExistWithId(1)).isFalse();
+        assertThat(underTest.isPersonExistWithEmail("alex@gmail.com")).isFalse();
+        assertThat(underTest.selectAllCustomers()).extracting(Customer::getId).containsExactly(2);
+    }
+
+    @Test
+    void deleteCustomerByIdAndVersionDeletesOnlyThatVersion() {
+        //Given
+        Customer customer = new Customer("George", "george@gmail.com", 22, Gender.MALE);
+        underTest.insertCustomer(customer);
+        underTest.updateCustomer(customer.getId(), new CustomerUpdateRequest("Georgy", null, null));
+
+        //When
+        int deletedOldVersion = underTest.deleteCustomerByIdAndVersion(customer.getId(), 0L);
+        int deleted = underTest.deleteCustomerByIdAndVersion(customer.getId(), 1L);
+
+        //Then
+        assertThat(deletedOldVersion).isZero();
+        assertThat(deleted).isEqualTo(1);
+        assertThat(underTest.selectCustomerVersion(customer.getId())).isEmpty();
+        assertThat(underTest.isPersonExistWithEmail("george@gmail.com")).isFalse();
+    }
+
+    @Test
+    void customersVersionGrowsWithEveryChange() {
+        //Given
+        long version = underTest.selectCustomersVersion();
+        Customer customer = new Customer("George", "george@gmail.com", 22, Gender.MALE);
+
+        //When
+        underTest.insertCustomer(customer);
+        long inserted = underTest.selectCustomersVersion();
+        underTest.updateCustomer(customer.getId(), new CustomerUpdateRequest("George", null, null));
+        long unchanged = underTest.selectCustomersVersion();
+        underTest.deleteCustomerById(customer.getId());
+        long deleted = underTest.selectCustomersVersion();
+
+        //Then
+        // an update that changes nothing isn't a change
+        assertThat(inserted).isGreaterThan(version);
+        assertThat(unchanged).isEqualTo(inserted);
+        assertThat(deleted).isGreaterThan(unchanged);
+    }
+
+    @Test
+    void customerStatsFollowEveryChange() {
+        //Given
+        // Alex (21 , male) and Jamila (19 , female) are there from the start
+        Customer george = new Customer("George", "george@gmail.com", 22, Gender.MALE);
+
+        //When
+        underTest.insertCustomer(george);
+        underTest.updateCustomer(1, new CustomerUpdateRequest(null, null, 35));
+        underTest.deleteCustomerById(2);
+        CustomerStats actual = underTest.selectCustomerStats();
+
+        //Then
+        // Alex moved to the thirties , nobody is left in the teens
+        assertThat(actual.customers()).isEqualTo(2);
+        assertThat(actual.genders()).containsEntry(Gender.MALE, 2L).containsEntry(Gender.FEMALE, 0L);
+        assertThat(actual.ages()).containsExactly(
+                new CustomerStats.AgeRange(20, 29, 1),
+                new CustomerStats.AgeRange(30, 39, 1));
+    }
+
+    @Test
+    void changingReturnedCustomerDoesNotChangeKeptOne() {
+        //Given
+        Customer customer = underTest.selectCustomerById(1).orElseThrow();
+
+        //When
+        // this is what CustomerService does before calling updateCustomer
+        customer.setEmail("changed@gmail.com");
+
+        //Then
+        assertThat(underTest.selectCustomerById(1)).map(Customer::getEmail).hasValue("alex@gmail.com");
+        assertThat(underTest.isPersonExistWithEmail("alex@gmail.com")).isTrue();
+    }
+
+    @Test
+    void concurrentInsertsGetUniqueIds() throws Exception {
+        //Given
+        int insertsPerThread = 500;
+
+        //When
+        runConcurrently(thread -> {
+            for (int i = 0; i < insertsPerThread; i++) {
+                underTest.insertCustomer(new Customer(
+                        "Customer " + thread + "-" + i, "customer-" + thread + "-" + i + "@gmail.com", 20, Gender.FEMALE));
+            }
+            return null;
+        });
+
+        //Then
+        List<Customer> customers = underTest.selectAllCustomers();
+        assertThat(customers).hasSize(2 + THREADS * insertsPerThread);
+        assertThat(customers).extracting(Customer::getId).doesNotHaveDuplicates();
+        assertIndexesAreConsistent(customers);
+    }
+
+    @Test
+    void concurrentInsertsOfSameEmailHaveOneWinner() throws Exception {
+        //Given
+        AtomicInteger winners = new AtomicInteger();
+        AtomicInteger duplicates = new AtomicInteger();
+
+        //When
+        runConcurrently(thread -> {
+            try {
+                underTest.insertCustomer(new Customer("George " + thread, "george@gmail.com", 22, Gender.MALE));
+                winners.incrementAndGet();
+            } catch (DuplicteResourceException e) {
+                duplicates.incrementAndGet();
+            }
+            return null;
+        });
+
+        //Then
+        assertThat(winners).hasValue(1);
+        assertThat(duplicates).hasValue(THREADS - 1);
+        assertIndexesAreConsistent(underTest.selectAllCustomers());
+    }
+
+    @Test
+    void concurrentUpdatesAndDeletesKeepIndexesConsistent() throws Exception {
+        //Given
+        // a small pool of emails that all the threads fight over
+        List<String> emails = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            emails.add("shared-" + i + "@gmail.com");
+        }
+        for (int i = 0; i < 10; i++) {
+            underTest.insertCustomer(new Customer("Shared " + i, emails.get(i), 30, Gender.MALE));
+        }
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        underTest.selectAllCustomers().forEach(c -> ids.add(c.getId()));
+
+        //When
+        runConcurrently(thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < 2_000; i++) {
+                Integer id = ids.stream().skip(random.nextInt(ids.size())).findFirst().orElseThrow();
+                String email = emails.get(random.nextInt(emails.size()));
+                try {
+                    switch (random.nextInt(3)) {
+                        case 0 -> underTest.updateCustomer(id, new CustomerUpdateRequest("Updated " + thread, email, 31));
+                        case 1 -> underTest.deleteCustomerById(id);
+                        default -> {
+                            Customer customer = new Customer("Inserted " + thread, email, 32, Gender.MALE);
+                            underTest.insertCustomer(customer);
+                            ids.add(customer.getId());
+                        }
+                    }
+                } catch (DuplicteResourceException e) {
+                    // the email was taken by another thread , that's expected
+                }
+            }
+            return null;
+        });
+
+        //Then
+        List<Customer> customers = underTest.selectAllCustomers();
+        assertIndexesAreConsistent(customers);
+        // no email is left in the email index without a customer owning it
+        for (String email : emails) {
+            boolean owned = customers.stream().anyMatch(c -> c.getEmail().equals(email));
+            assertThat(underTest.isPersonExistWithEmail(email)).as(email).isEqualTo(owned);
+        }
+    }
+
+    // every customer can be found by its id and by its email
+    private void assertIndexesAreConsistent(List<Customer> customers) {
+        assertThat(customers).extracting(Customer::getEmail).doesNotHaveDuplicates();
+        for (Customer customer : customers) {
+            assertThat(underTest.selectCustomerById(customer.getId())).hasValue(customer);
+            assertThat(underTest.selectCustomerByEmail(customer.getEmail())).hasValue(customer);
+        }
+    }
+
+    private interface ThreadTask {
+        Void run(int thread) throws Exception;
+    }
+
+    // starts all the threads at the same moment , so they really run into each other
+    private static void runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int t = thread;
+                Callable<Void> callable = () -> {
+                    start.await();
+                    return task.run(t);
+                };
+                futures.add(executor.submit(callable));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
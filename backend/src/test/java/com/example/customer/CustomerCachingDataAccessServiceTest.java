@@ -0,0 +1,266 @@
+package com.example.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CustomerCachingDataAccessServiceTest {
+
+    private static final long MAXIMUM_SIZE = 2;
+    private static final Duration TIME_TO_LIVE = Duration.ofMinutes(10);
+
+    private CustomerCachingDataAccessService underTest;
+    private AutoCloseable autoCloseable;
+    private SimpleMeterRegistry meterRegistry;
+    // the time the caches see , in nanos
+    private final AtomicLong time = new AtomicLong();
+
+    @Mock
+    private CustomerDao customerDao; // the jpa DAO will be a mock
+
+    @BeforeEach
+    void setUp() {
+        autoCloseable = MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        // evictions run on the calling thread , so the tests see them right away
+        underTest = new CustomerCachingDataAccessService(
+                customerDao, MAXIMUM_SIZE, TIME_TO_LIVE, meterRegistry, time::get, Runnable::run);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        autoCloseable.close();
+    }
+
+    @Test
+    void selectCustomerByIdGoesToDatabaseOnce() {
+        //Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE);
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(alex));
+
+        //When
+        underTest.selectCustomerById(1);
+        Optional<Customer> actual = underTest.selectCustomerById(1);
+
+        //Then
+        assertThat(actual).hasValue(alex);
+        verify(customerDao, times(1)).selectCustomerById(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "customers-by-id").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "customers-by-id").tag("result", "miss")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void missingCustomerIsNotCached() {
+        //Given
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.empty());
+
+        //When
+        underTest.selectCustomerById(1);
+        underTest.selectCustomerById(1);
+
+        //Then
+        // it may be registered any moment , so it is looked up every time
+        verify(customerDao, times(2)).selectCustomerById(1);
+    }
+
+    @Test
+    void changingReturnedCustomerDoesNotChangeCachedOne() {
+        //Given
+        when(customerDao.selectCustomerById(1))
+                .thenReturn(Optional.of(new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE)));
+        Customer customer = underTest.selectCustomerById(1).orElseThrow();
+
+        //When
+        // this is what CustomerService does before calling updateCustomer
+        customer.setName("Changed");
+
+        //Then
+        assertThat(underTest.selectCustomerById(1)).map(Customer::getName).hasValue("Alex");
+    }
+
+    @Test
+    void updateCustomerInvalidatesIdAndOldEmail() {
+        //Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE);
+        Customer update = new Customer(1, "Alex", "alexander@gmail.com", 21, Gender.MALE);
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(alex), Optional.of(update));
+        when(customerDao.selectCustomerByEmail("alex@gmail.com")).thenReturn(Optional.of(alex), Optional.empty());
+        underTest.selectCustomerById(1);
+        underTest.selectCustomerByEmail("alex@gmail.com");
+
+        CustomerUpdateRequest request = new CustomerUpdateRequest(null, "alexander@gmail.com", null);
+        when(customerDao.updateCustomer(1, request)).thenReturn(CustomerUpdateStatus.UPDATED);
+
+        //When
+        underTest.updateCustomer(1, request);
+
+        //Then
+        verify(customerDao).updateCustomer(1, request);
+        assertThat(underTest.selectCustomerById(1)).hasValue(update);
+        assertThat(underTest.selectCustomerByEmail("alex@gmail.com")).isEmpty();
+    }
+
+    @Test
+    void deleteCustomerByIdInvalidatesIt() {
+        //Given
+        when(customerDao.selectCustomerById(1))
+                .thenReturn(Optional.of(new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE)), Optional.empty());
+        underTest.selectCustomerById(1);
+        when(customerDao.deleteCustomerById(1)).thenReturn(1);
+
+        //When
+        int actual = underTest.deleteCustomerById(1);
+
+        //Then
+        assertThat(actual).isEqualTo(1);
+        verify(customerDao).deleteCustomerById(1);
+        assertThat(underTest.selectCustomerById(1)).isEmpty();
+    }
+
+    @Test
+    void insertedCustomerIsReadFromCache() {
+        //Given
+        Customer george = new Customer("George", "george@gmail.com", 22, Gender.MALE);
+        // the DAO sets the generated id like the database does
+        doAnswer(invocation -> {
+            george.setId(3);
+            return null;
+        }).when(customerDao).insertCustomer(george);
+
+        //When
+        underTest.insertCustomer(george);
+
+        //Then
+        assertThat(underTest.selectCustomerById(3)).hasValue(george);
+        assertThat(underTest.selectCustomerByEmail("george@gmail.com")).hasValue(george);
+        verify(customerDao, never()).selectCustomerById(3);
+        verify(customerDao, never()).selectCustomerByEmail("george@gmail.com");
+    }
+
+    @Test
+    void selectCustomerByEmailChecksCustomerStillHasIt() {
+        //Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE);
+        Customer changed = new Customer(1, "Alex", "changed@gmail.com", 21, Gender.MALE);
+        when(customerDao.selectCustomerByEmail("alex@gmail.com")).thenReturn(Optional.of(alex), Optional.empty());
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(changed));
+        underTest.selectCustomerByEmail("alex@gmail.com");
+
+        //When
+        // the email entry still points to 1 , but customer 1 has another email now
+        Optional<Customer> actual = underTest.selectCustomerByEmail("alex@gmail.com");
+
+        //Then
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void loadDoesNotHoldLockOfCache() throws Exception {
+        //Given
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch loaded = new CountDownLatch(1);
+        when(customerDao.selectCustomerById(1)).thenAnswer(invocation -> {
+            loading.countDown();
+            loaded.await();
+            return Optional.of(new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE));
+        });
+        CompletableFuture<Optional<Customer>> select = CompletableFuture.supplyAsync(() -> underTest.selectCustomerById(1));
+        loading.await();
+
+        //When
+        // a delete of the id waits for the lock of its entry , it used to be held until the load was over
+        CompletableFuture<Void> delete = CompletableFuture.runAsync(() -> underTest.deleteCustomerById(1));
+
+        //Then
+        delete.get(10, TimeUnit.SECONDS);
+        loaded.countDown();
+        assertThat(select.get(10, TimeUnit.SECONDS)).map(Customer::getName).hasValue("Alex");
+        // what was read before the delete was not kept
+        underTest.selectCustomerById(1);
+        verify(customerDao, times(2)).selectCustomerById(1);
+    }
+
+    @Test
+    void selectCustomerVersionIsReadFromDatabaseAndDropsAStaleCachedCustomer() {
+        //Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE);
+        alex.setVersion(3L);
+        Customer george = new Customer(2, "George", "george@gmail.com", 22, Gender.MALE);
+        george.setVersion(5L);
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(alex));
+        when(customerDao.selectCustomerById(2)).thenReturn(Optional.of(george));
+        // another instance updated alex since it was cached here
+        when(customerDao.selectCustomerVersion(1)).thenReturn(Optional.of(4L));
+        when(customerDao.selectCustomerVersion(2)).thenReturn(Optional.of(5L));
+        underTest.selectCustomerById(1);
+        underTest.selectCustomerById(2);
+
+        //When
+        Optional<Long> changed = underTest.selectCustomerVersion(1);
+        Optional<Long> unchanged = underTest.selectCustomerVersion(2);
+
+        //Then
+        assertThat(changed).hasValue(4L);
+        assertThat(unchanged).hasValue(5L);
+        // alex is loaded again , george is still cached
+        underTest.selectCustomerById(1);
+        underTest.selectCustomerById(2);
+        verify(customerDao, times(2)).selectCustomerById(1);
+        verify(customerDao, times(1)).selectCustomerById(2);
+    }
+
+    @Test
+    void entriesExpireAfterTimeToLive() {
+        //Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE);
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(alex));
+        underTest.selectCustomerById(1);
+
+        //When
+        time.addAndGet(TIME_TO_LIVE.toNanos() + TimeUnit.SECONDS.toNanos(1));
+        underTest.selectCustomerById(1);
+
+        //Then
+        verify(customerDao, times(2)).selectCustomerById(1);
+    }
+
+    @Test
+    void cacheIsBoundedBySize() {
+        //Given
+        for (int id = 1; id <= 3; id++) {
+            when(customerDao.selectCustomerById(id)).thenReturn(
+                    Optional.of(new Customer(id, "Customer " + id, "customer" + id + "@gmail.com", 20, Gender.MALE)));
+        }
+
+        //When
+        // one more than the maximum size
+        for (int id = 1; id <= 3; id++) {
+            underTest.selectCustomerById(id);
+        }
+
+        //Then
+        assertThat(meterRegistry.get("cache.evictions").tag("cache", "customers-by-id")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.size").tag("cache", "customers-by-id")
+                .gauge().value()).isEqualTo(MAXIMUM_SIZE);
+    }
+}
@@ -1,11 +1,33 @@
 package com.example.customer;
 
+import com.example.exception.DuplicteResourceException;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.when;
 
 
 class CustomerJPADataAccessServiceTest {
@@ -39,11 +61,51 @@ class CustomerJPADataAccessServiceTest {
 
         //Then
         // we just want to verify that the method from the repository is invoked
-        Mockito.verify(customerRepository).findAll(); // if selectAllCustomer invoked another method instead of findAll for example deleteAll then the test will fail
+        Mockito.verify(customerRepository).findAllPlain(); // if selectAllCustomer invoked another method instead of findAllPlain for example deleteAll then the test will fail
 
     }
 
 
+    @Test
+    void selectCustomersFirstPage() {
+        //When
+        underTest.selectCustomersPage(CustomerSort.NAME, null, 10);
+
+        //Then
+        // the first page has no cursor , so it is read from the start of the (name , id) order
+        Mockito.verify(customerRepository).findBy(Sort.by("name", "id"), Limit.of(10));
+    }
+
+    @Test
+    void selectCustomersPageAfterCursor() {
+        //Given
+        CustomerCursor after = new CustomerCursor(CustomerSort.AGE, 7, "30");
+
+        //When
+        underTest.selectCustomersPage(CustomerSort.AGE, after, 10);
+
+        //Then
+        // we just want to verify that the values of the cursor are passed correctly to the keyset query
+        Mockito.verify(customerRepository).findCustomersAfterAge(30, 7, Limit.of(10));
+    }
+
+
+    @Test
+    void streamAllCustomers() {
+        //Given
+        Customer customer = new Customer(1,"Ali","ali@gmail.com",2,Gender.MALE);
+        Mockito.when(customerRepository.streamAllCustomers()).thenReturn(Stream.of(customer));
+        List<Customer> consumed = new ArrayList<>();
+
+        //When
+        underTest.streamAllCustomers(consumed::add);
+
+        //Then
+        // every customer of the repository stream reaches the consumer
+        assertThat(consumed).containsExactly(customer);
+    }
+
+
     // we just want to verify that the value is passed correctly to the method inside the repository and the method is invoked
     @Test
     void selectCustomerById() {
@@ -58,6 +120,67 @@ class CustomerJPADataAccessServiceTest {
         Mockito.verify(customerRepository).findById(id);
     }
 
+    @Test
+    void insertCustomers() {
+        //Given
+        List<Customer> customers = List.of(
+                new Customer("Ali", "ali@gmail.com", 2, Gender.MALE),
+                new Customer("Mona", "mona@gmail.com", 3, Gender.FEMALE));
+
+        //When
+        underTest.insertCustomers(customers);
+
+        //Then
+        // flushed inside the transaction , so a taken email fails here and not later at commit
+        Mockito.verify(customerRepository).saveAllAndFlush(customers);
+    }
+
+    @Test
+    void willThrowWhenInsertingCustomersWithTakenEmail() {
+        //Given
+        List<Customer> customers = List.of(new Customer("Ali", "ali@gmail.com", 2, Gender.MALE));
+        when(customerRepository.saveAllAndFlush(customers)).thenThrow(emailTaken());
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.insertCustomers(customers))
+                .isInstanceOf(DuplicteResourceException.class)
+                .hasMessage("email already taken , no customer of the batch was registered");
+    }
+
+    @Test
+    void importCustomers() {
+        //Given
+        Iterator<CustomerImportRow> rows = List.of(
+                new CustomerImportRow(2, "Ali", "ali@gmail.com", 2, Gender.MALE)).iterator();
+        Consumer<CustomerImportRow> emailTaken = row -> {};
+        when(customerRepository.importCustomers(rows, emailTaken)).thenReturn(1L);
+
+        //When
+        long actual = underTest.importCustomers(rows, emailTaken);
+
+        //Then
+        assertThat(actual).isEqualTo(1);
+    }
+
+    @Test
+    void selectExistingEmailsSplitsLongListsIntoSeveralQueries() {
+        //Given
+        List<String> emails = IntStream.range(0, CustomerJPADataAccessService.EMAILS_PER_QUERY + 1)
+                .mapToObj(i -> "customer-" + i + "@gmail.com")
+                .toList();
+        when(customerRepository.findExistingEmails(anyCollection()))
+                .thenReturn(List.of("customer-0@gmail.com"))
+                .thenReturn(List.of());
+
+        //When
+        Set<String> actual = underTest.selectExistingEmails(emails);
+
+        //Then
+        Mockito.verify(customerRepository, times(2)).findExistingEmails(anyCollection());
+        assertThat(actual).containsExactly("customer-0@gmail.com");
+    }
+
     @Test
     void insertCustomer() {
         //Given
@@ -68,7 +191,42 @@ class CustomerJPADataAccessServiceTest {
 
         //Then
         // we just want to verify that the value is passed correctly to the method inside the repository and the method is invoked
-        Mockito.verify(customerRepository).save(customer);
+        Mockito.verify(customerRepository).saveAndFlush(customer);
+    }
+
+    @Test
+    void willThrowWhenInsertingCustomerWithTakenEmail() {
+        //Given
+        Customer customer = new Customer("Ali", "ali@gmail.com", 2, Gender.MALE);
+        when(customerRepository.saveAndFlush(customer)).thenThrow(emailTaken());
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.insertCustomer(customer))
+                .isInstanceOf(DuplicteResourceException.class)
+                .hasMessage("email already taken");
+    }
+
+    @Test
+    void insertCustomerRethrowsOtherViolations() {
+        //Given
+        Customer customer = new Customer("Ali", null, 2, Gender.MALE);
+        DataIntegrityViolationException notNull = new DataIntegrityViolationException("not null",
+                new ConstraintViolationException("null value in column email", new SQLException(), null));
+        when(customerRepository.saveAndFlush(customer)).thenThrow(notNull);
+
+        //When
+        //Then
+        // only customer_email_unique means the email is taken
+        assertThatThrownBy(() -> underTest.insertCustomer(customer))
+                .isSameAs(notNull);
+    }
+
+    // what spring throws when the insert violates customer_email_unique
+    private static DataIntegrityViolationException emailTaken() {
+        return new DataIntegrityViolationException("duplicate key",
+                new ConstraintViolationException("duplicate key value violates unique constraint",
+                        new SQLException(), CustomerJPADataAccessService.EMAIL_UNIQUE_CONSTRAINT));
     }
 
     @Test
@@ -99,27 +257,125 @@ class CustomerJPADataAccessServiceTest {
     @Test
     void deleteCustomerById() {
         int id = 1;
+        when(customerRepository.deleteCustomerById(id)).thenReturn(1);
 
         //when
-        underTest.deleteCustomerById(id);
+        int actual = underTest.deleteCustomerById(id);
 
         //Then
         // we just want to verify that the value is passed correctly to the method inside the repository and the method is invoked
-        Mockito.verify(customerRepository).deleteById(id);
+        // deleteById would read the customer before deleting it
+        assertThat(actual).isEqualTo(1);
+        Mockito.verify(customerRepository).deleteCustomerById(id);
+        Mockito.verify(customerRepository, Mockito.never()).deleteById(id);
+
+    }
+
+    @Test
+    void deleteCustomerByIdAndVersion() {
+        //Given
+        when(customerRepository.deleteCustomerByIdAndVersion(1, 3L)).thenReturn(0);
+
+        //When
+        int actual = underTest.deleteCustomerByIdAndVersion(1, 3L);
+
+        //Then
+        // the version is checked by the delete itself
+        assertThat(actual).isZero();
+        Mockito.verify(customerRepository).deleteCustomerByIdAndVersion(1, 3L);
+    }
+
+    @Test
+    void selectVersions() {
+        //Given
+        when(customerRepository.findVersionById(1)).thenReturn(Optional.of(3L));
+        when(customerRepository.countCustomerChanges()).thenReturn(42L);
 
+        //When
+        Optional<Long> customerVersion = underTest.selectCustomerVersion(1);
+        long customersVersion = underTest.selectCustomersVersion();
+
+        //Then
+        // no customer is read for either of them
+        assertThat(customerVersion).hasValue(3L);
+        assertThat(customersVersion).isEqualTo(42L);
+        Mockito.verify(customerRepository, Mockito.never()).findById(1);
+    }
+
+    @Test
+    void selectCustomerStats() {
+        //Given
+        when(customerRepository.countCustomerStats()).thenReturn(List.of(
+                statsCount(Gender.MALE, 20, 3),
+                statsCount(Gender.FEMALE, 20, 2),
+                statsCount(Gender.FEMALE, 40, 1)));
+
+        //When
+        CustomerStats actual = underTest.selectCustomerStats();
+
+        //Then
+        assertThat(actual).isEqualTo(new CustomerStats(6,
+                Map.of(Gender.MALE, 3L, Gender.FEMALE, 3L),
+                List.of(new CustomerStats.AgeRange(20, 29, 5), new CustomerStats.AgeRange(40, 49, 1))));
     }
 
     @Test
     void updateCustomer() {
         //Given
-        Customer customer = new Customer(1,"Ali","ali@gmail.com",2, Gender.MALE);
+        CustomerUpdateRequest update = new CustomerUpdateRequest("Ali", null, 2, 4L);
+        when(customerRepository.updateCustomer(1, "Ali", null, 2, 4L)).thenReturn(1);
 
         //When
-        underTest.updateCustomer(customer);
+        CustomerUpdateStatus actual = underTest.updateCustomer(1, update);
 
         //Then
-        // we just want to verify that the value is passed correctly to the method inside the repository and the method is invoked
-        // it will fail if we passed new customer object in CustomerJPADataAccessService as it test that the object passed (send) is the same that is receive
-        Mockito.verify(customerRepository).save(customer);
+        // one statement , the customer isn't read before and nothing else is asked when it was updated
+        assertThat(actual).isEqualTo(CustomerUpdateStatus.UPDATED);
+        Mockito.verify(customerRepository, Mockito.never()).findVersionById(1);
+    }
+
+    @Test
+    void updateCustomerTellsWhyNothingWasUpdated() {
+        //Given
+        CustomerUpdateRequest update = new CustomerUpdateRequest("Ali", null, null, 4L);
+        when(customerRepository.updateCustomer(1, "Ali", null, null, 4L)).thenReturn(0);
+        when(customerRepository.findVersionById(1)).thenReturn(Optional.of(5L), Optional.of(4L), Optional.empty());
+
+        //When
+        //Then
+        assertThat(underTest.updateCustomer(1, update)).isEqualTo(CustomerUpdateStatus.STALE);
+        assertThat(underTest.updateCustomer(1, update)).isEqualTo(CustomerUpdateStatus.UNCHANGED);
+        assertThat(underTest.updateCustomer(1, update)).isEqualTo(CustomerUpdateStatus.NOT_FOUND);
+    }
+
+    @Test
+    void willThrowWhenUpdatingToTakenEmail() {
+        //Given
+        when(customerRepository.updateCustomer(1, null, "taken@gmail.com", null, null)).thenThrow(emailTaken());
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(1, new CustomerUpdateRequest(null, "taken@gmail.com", null)))
+                .isInstanceOf(DuplicteResourceException.class)
+                .hasMessage("email already taken");
+    }
+
+    private static CustomerRepository.StatsCount statsCount(Gender gender, int ageFrom, long customers) {
+        return new CustomerRepository.StatsCount() {
+            @Override
+            public Gender getGender() {
+                return gender;
+            }
+
+            @Override
+            public int getAgeFrom() {
+                return ageFrom;
+            }
+
+            @Override
+            public long getCustomers() {
+                return customers;
+            }
+        };
     }
-}
\ No newline at end of file
+}
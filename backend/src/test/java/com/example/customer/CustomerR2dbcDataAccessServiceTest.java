@@ -0,0 +1,216 @@
+package com.example.customer;
+
+import com.example.AbstractTestContainersUnitTest;
+import com.example.exception.DuplicteResourceException;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// the DAO of the reactive profile against the database of test containers , flyway migrates it through jdbc (JdbcTest)
+// the DAO commits through its own r2dbc connections , so the test isn't rolled back and deletes its customers itself
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CustomerR2dbcDataAccessServiceTest extends AbstractTestContainersUnitTest {
+
+    private static final String DOMAIN = "@r2dbc.example.com";
+    private static final int ALLOCATION_SIZE = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private CustomerR2dbcDataAccessService underTest;
+    // every test has its own names , the table is shared with the other tests
+    private final String run = UUID.randomUUID().toString();
+
+    @BeforeEach
+    void setUp() {
+        ConnectionFactory connectionFactory = ConnectionFactories.get(ConnectionFactoryOptions.parse(
+                        "r2dbc:postgresql://%s:%s/%s".formatted(
+                                postgreSQLContainer.getHost(),
+                                postgreSQLContainer.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT),
+                                postgreSQLContainer.getDatabaseName()))
+                .mutate()
+                .option(ConnectionFactoryOptions.USER, postgreSQLContainer.getUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, postgreSQLContainer.getPassword())
+                .build());
+        underTest = new CustomerR2dbcDataAccessService(connectionFactory, ALLOCATION_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM customer WHERE email LIKE ?", "%" + DOMAIN);
+    }
+
+    @Test
+    void insertCustomerAndSelectItById() {
+        //Given
+        Customer customer = customer("George");
+
+        //When
+        underTest.insertCustomer(customer).block();
+
+        //Then
+        assertThat(customer.getId()).isNotNull();
+        assertThat(customer.getVersion()).isZero();
+        assertThat(underTest.selectCustomerById(customer.getId()).block())
+                .usingRecursiveComparison()
+                .isEqualTo(customer);
+    }
+
+    @Test
+    void singleRegistrationsTakeTheirIdsFromOneBlock() {
+        //When
+        List<Integer> actual = List.of(customer("Alex"), customer("Jamila"), customer("George")).stream()
+                .map(customer -> underTest.insertCustomer(customer).block().getId())
+                .toList();
+
+        //Then
+        // only the first one went to customer_id_sequence
+        assertThat(actual).containsExactly(actual.get(0), actual.get(0) + 1, actual.get(0) + 2);
+    }
+
+    @Test
+    void willThrowWhenEmailIsTaken() {
+        //Given
+        Customer george = customer("George");
+        underTest.insertCustomer(george).block();
+        Customer other = new Customer("Other George", george.getEmail(), 30, Gender.MALE);
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.insertCustomer(other).block())
+                .isInstanceOf(DuplicteResourceException.class)
+                .hasMessage("email already taken");
+    }
+
+    @Test
+    void insertCustomersSetsTheirIds() {
+        //Given
+        List<Customer> customers = List.of(customer("Alex"), customer("Jamila"));
+
+        //When
+        underTest.insertCustomers(customers).block();
+
+        //Then
+        assertThat(customers).allSatisfy(customer -> assertThat(customer.getId()).isNotNull());
+        assertThat(underTest.selectExistingEmails(List.of(customers.get(0).getEmail(), "nobody-" + run + DOMAIN)).block())
+                .containsExactly(customers.get(0).getEmail());
+    }
+
+    @Test
+    void insertCustomersInsertsNoneWhenOneEmailIsTaken() {
+        //Given
+        Customer george = customer("George");
+        underTest.insertCustomer(george).block();
+        Customer alex = customer("Alex");
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.insertCustomers(
+                List.of(alex, new Customer("Other George", george.getEmail(), 30, Gender.MALE))).block())
+                .isInstanceOf(DuplicteResourceException.class)
+                .hasMessage("email already taken , no customer of the batch was registered");
+        assertThat(underTest.selectExistingEmails(List.of(alex.getEmail())).block()).isEmpty();
+    }
+
+    @Test
+    void searchCustomersReadsPagesAfterTheCursor() {
+        //Given
+        underTest.insertCustomers(List.of(customer("Jamila"), customer("Alex"), customer("George"))).block();
+        CustomerSearch search = new CustomerSearch(run, null, null, null, null);
+
+        //When
+        List<Customer> firstPage = underTest.searchCustomers(search, CustomerSort.NAME, null, 2).collectList().block();
+        List<Customer> nextPage = underTest.searchCustomers(
+                search, CustomerSort.NAME, CustomerCursor.after(CustomerSort.NAME, firstPage.get(1)), 2).collectList().block();
+
+        //Then
+        assertThat(firstPage).extracting(Customer::getName).containsExactly(run + " Alex", run + " George");
+        assertThat(nextPage).extracting(Customer::getName).containsExactly(run + " Jamila");
+    }
+
+    @Test
+    void updateCustomerTellsWhyNothingWasUpdated() {
+        //Given
+        Customer george = customer("George");
+        underTest.insertCustomer(george).block();
+        Integer id = george.getId();
+
+        //When
+        //Then
+        assertThat(underTest.updateCustomer(id, new CustomerUpdateRequest(null, null, 30, 0L)).block())
+                .isEqualTo(CustomerUpdateStatus.UPDATED);
+        assertThat(underTest.selectCustomerVersion(id).block()).isEqualTo(1L);
+        // the same age again
+        assertThat(underTest.updateCustomer(id, new CustomerUpdateRequest(null, null, 30)).block())
+                .isEqualTo(CustomerUpdateStatus.UNCHANGED);
+        // made for the version before the update
+        assertThat(underTest.updateCustomer(id, new CustomerUpdateRequest(null, null, 31, 0L)).block())
+                .isEqualTo(CustomerUpdateStatus.STALE);
+        assertThat(underTest.updateCustomer(-1, new CustomerUpdateRequest(null, null, 31)).block())
+                .isEqualTo(CustomerUpdateStatus.NOT_FOUND);
+    }
+
+    @Test
+    void deleteCustomerByIdAndVersionOnlyDeletesThatVersion() {
+        //Given
+        Customer george = customer("George");
+        underTest.insertCustomer(george).block();
+
+        //When
+        //Then
+        assertThat(underTest.deleteCustomerByIdAndVersion(george.getId(), 1L).block()).isZero();
+        assertThat(underTest.deleteCustomerByIdAndVersion(george.getId(), 0L).block()).isEqualTo(1L);
+        assertThat(underTest.selectCustomerById(george.getId()).block()).isNull();
+    }
+
+    @Test
+    void changesAreCountedInTheVersionAndTheStats() {
+        //Given
+        long version = underTest.selectCustomersVersion().block();
+        long customers = underTest.selectCustomerStats().block().customers();
+
+        //When
+        underTest.insertCustomers(List.of(customer("Alex"), customer("Jamila"))).block();
+
+        //Then
+        // one statement , one change
+        assertThat(underTest.selectCustomersVersion().block()).isEqualTo(version + 1);
+        assertThat(underTest.selectCustomerStats().block().customers()).isEqualTo(customers + 2);
+    }
+
+    @Test
+    void selectDuplicateCandidatesFindsSimilarNames() {
+        //Given
+        Customer george = new Customer("Georgios Magdylopoulos", "gm-" + run + DOMAIN, 22, Gender.MALE);
+        underTest.insertCustomer(george).block();
+
+        //When
+        List<Customer> actual = underTest.selectDuplicateCandidates(
+                "Georgios Magdilopoulos", null, CustomerService.DUPLICATE_SIMILARITY, 10).collectList().block();
+
+        //Then
+        assertThat(actual).extracting(Customer::getId).contains(george.getId());
+    }
+
+    private Customer customer(String name) {
+        return new Customer(run + " " + name, name.toLowerCase() + "-" + run + DOMAIN, 22, Gender.MALE);
+    }
+}
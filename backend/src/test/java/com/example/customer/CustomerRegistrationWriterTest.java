@@ -0,0 +1,190 @@
+package com.example.customer;
+
+import com.example.exception.DuplicteResourceException;
+import com.example.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerRegistrationWriterTest {
+
+    @Mock
+    private CustomerDao customerDao;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger ids = new AtomicInteger(100);
+    private CustomerRegistrationWriter underTest;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        underTest.stop();
+    }
+
+    @Test
+    void registrationsAreInsertedTogether() {
+        //Given
+        // the group is full before max-delay
+        underTest = new CustomerRegistrationWriter(customerDao, 100, 3, Duration.ofMinutes(1), meterRegistry);
+        setIdsOnInsert();
+        Customer george = new Customer("George", "george@gmail.com", 22, Gender.MALE);
+        Customer alex = new Customer("Alex", "alex@gmail.com", 21, Gender.MALE);
+        Customer jamila = new Customer("Jamila", "jamila@gmail.com", 19, Gender.FEMALE);
+
+        //When
+        List<CompletableFuture<Customer>> actual = List.of(
+                underTest.register(george), underTest.register(alex), underTest.register(jamila));
+
+        //Then
+        assertThat(actual).extracting(f -> f.orTimeout(5, TimeUnit.SECONDS).join().getId())
+                .containsExactly(100, 101, 102);
+        // one transaction for the three
+        ArgumentCaptor<List<Customer>> customersArgumentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(customerDao).insertCustomers(customersArgumentCaptor.capture());
+        assertThat(customersArgumentCaptor.getValue()).containsExactly(george, alex, jamila);
+        verify(customerDao, never()).insertCustomer(any());
+        assertThat(meterRegistry.get("customer.registration.group").summary().max()).isEqualTo(3);
+    }
+
+    @Test
+    void registrationIsInsertedAfterMaxDelay() {
+        //Given
+        underTest = new CustomerRegistrationWriter(customerDao, 100, 500, Duration.ofMillis(5), meterRegistry);
+        doAnswer(invocation -> {
+            invocation.<Customer>getArgument(0).setId(ids.getAndIncrement());
+            return null;
+        }).when(customerDao).insertCustomer(any());
+
+        //When
+        CompletableFuture<Customer> actual = underTest.register(new Customer("George", "george@gmail.com", 22, Gender.MALE));
+
+        //Then
+        // alone , it doesn't wait for 499 others , and is inserted like without group commit
+        assertThat(actual.orTimeout(5, TimeUnit.SECONDS).join().getId()).isEqualTo(100);
+        verify(customerDao, never()).insertCustomers(any());
+    }
+
+    @Test
+    void firstRegistrationOfAnEmailInTheGroupTakesIt() {
+        //Given
+        underTest = new CustomerRegistrationWriter(customerDao, 100, 3, Duration.ofMinutes(1), meterRegistry);
+        setIdsOnInsert();
+
+        //When
+        List<CompletableFuture<Customer>> actual = List.of(
+                underTest.register(new Customer("George", "george@gmail.com", 22, Gender.MALE)),
+                underTest.register(new Customer("Other George", "george@gmail.com", 30, Gender.MALE)),
+                underTest.register(new Customer("Jamila", "jamila@gmail.com", 19, Gender.FEMALE)));
+
+        //Then
+        assertThat(actual.get(0).orTimeout(5, TimeUnit.SECONDS).join().getName()).isEqualTo("George");
+        assertThat(actual.get(2).orTimeout(5, TimeUnit.SECONDS).join().getName()).isEqualTo("Jamila");
+        assertThatThrownBy(actual.get(1)::join)
+                .hasCauseInstanceOf(DuplicteResourceException.class)
+                .hasMessageContaining("email already taken");
+        // the emails aren't looked up , the insert finds the taken ones
+        verify(customerDao, never()).selectExistingEmails(any());
+        ArgumentCaptor<List<Customer>> customersArgumentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(customerDao).insertCustomers(customersArgumentCaptor.capture());
+        assertThat(customersArgumentCaptor.getValue()).extracting(Customer::getName).containsExactly("George", "Jamila");
+    }
+
+    @Test
+    void registrationsAreInsertedOneByOneWhenTheGroupFails() {
+        //Given
+        underTest = new CustomerRegistrationWriter(customerDao, 100, 2, Duration.ofMinutes(1), meterRegistry);
+        // alex is already registered
+        doThrow(new DuplicteResourceException("email already taken , no customer of the batch was registered"))
+                .when(customerDao).insertCustomers(any());
+        doAnswer(invocation -> {
+            Customer customer = invocation.getArgument(0);
+            if (customer.getEmail().equals("alex@gmail.com")) {
+                throw new DuplicteResourceException("email already taken");
+            }
+            customer.setId(ids.getAndIncrement());
+            return null;
+        }).when(customerDao).insertCustomer(any());
+        Customer george = new Customer("George", "george@gmail.com", 22, Gender.MALE);
+        // the rolled back group gave it an id
+        george.setId(1);
+
+        //When
+        CompletableFuture<Customer> actualGeorge = underTest.register(george);
+        CompletableFuture<Customer> actualAlex = underTest.register(new Customer("Alex", "alex@gmail.com", 21, Gender.MALE));
+
+        //Then
+        assertThat(actualGeorge.orTimeout(5, TimeUnit.SECONDS).join().getId()).isEqualTo(100);
+        assertThatThrownBy(() -> actualAlex.orTimeout(5, TimeUnit.SECONDS).join())
+                .hasCauseInstanceOf(DuplicteResourceException.class);
+        verify(customerDao, times(2)).insertCustomer(any());
+    }
+
+    @Test
+    void willThrowWhenQueueIsFull() throws InterruptedException {
+        //Given
+        underTest = new CustomerRegistrationWriter(customerDao, 1, 1, Duration.ZERO, meterRegistry);
+        // the writer is kept busy with the first registration
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            invocation.<Customer>getArgument(0).setId(ids.getAndIncrement());
+            return null;
+        }).when(customerDao).insertCustomer(any());
+        CompletableFuture<Customer> first = underTest.register(new Customer("George", "george@gmail.com", 22, Gender.MALE));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Customer> queued = underTest.register(new Customer("Alex", "alex@gmail.com", 21, Gender.MALE));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.register(new Customer("Jamila", "jamila@gmail.com", 19, Gender.FEMALE)))
+                .isInstanceOf(ServiceUnavailableException.class)
+                .hasMessage("too many registrations at once , try again later");
+        assertThat(meterRegistry.get("customer.registration.queue").gauge().value()).isEqualTo(1);
+
+        // the queued one is still written when stopping
+        release.countDown();
+        underTest.stop();
+        assertThat(first.isDone() && queued.isDone()).isTrue();
+        assertThat(queued.join().getId()).isNotNull();
+    }
+
+    @Test
+    void willThrowWhenStopped() throws InterruptedException {
+        //Given
+        underTest = new CustomerRegistrationWriter(customerDao, 100, 500, Duration.ofMillis(5), meterRegistry);
+        underTest.stop();
+
+        //When
+        //Then
+        // nothing is queued that the stopped writer would never complete
+        assertThatThrownBy(() -> underTest.register(new Customer("George", "george@gmail.com", 22, Gender.MALE)))
+                .isInstanceOf(ServiceUnavailableException.class);
+        assertThat(meterRegistry.get("customer.registration.queue").gauge().value()).isZero();
+        verifyNoInteractions(customerDao);
+    }
+
+    // like the database does
+    private void setIdsOnInsert() {
+        lenient().doAnswer(invocation -> {
+            List<Customer> customers = invocation.getArgument(0);
+            customers.forEach(c -> c.setId(ids.getAndIncrement()));
+            return null;
+        }).when(customerDao).insertCustomers(any());
+    }
+}
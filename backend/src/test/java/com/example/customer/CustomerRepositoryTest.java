@@ -1,21 +1,31 @@
 package com.example.customer;
 
 import com.example.AbstractTestContainersUnitTest;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import jakarta.persistence.EntityManager;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.Limit;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
-import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.Assertions.assertThat;
 
 // we shouldn't use @SpringBootTest bec it will load the application context with a bunch of beans which will make the test slower
 // extends the AbstractTestContainersUnitTest in order to use the database of test containers
 // instead of database of docker compose
-@DataJpaTest // it is only loading the beans that JPA component need to use for running testing instead of all beans inside the application context
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true") // it is only loading the beans that JPA component need to use for running testing instead of all beans inside the application context
+                                                                                    // the statistics count the statements that are sent
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE) // to disable the embedded database and connect to the database of the docker compose
 class CustomerRepositoryTest extends AbstractTestContainersUnitTest{
 
@@ -27,6 +37,9 @@ class CustomerRepositoryTest extends AbstractTestContainersUnitTest{
     @Autowired
     private ApplicationContext applicationContext;
 
+    @Autowired
+    private EntityManager entityManager;
+
     @BeforeEach
     void setUp() {
         System.out.println("No of beans loaded " + applicationContext.getBeanDefinitionCount()); // no of beans loaded which is needed to for running testing
@@ -107,4 +120,426 @@ class CustomerRepositoryTest extends AbstractTestContainersUnitTest{
         assertThat(actual).isFalse();
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void findCustomersAfterName() {
+
+        //Given
+        // a name that sorts after anything FAKER generates , so the customers saved here are the only ones after the cursor
+        String name = "zzz-" + UUID.randomUUID();
+        Customer first = new Customer(name, FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 20, Gender.MALE);
+        Customer second = new Customer(name, FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 21, Gender.FEMALE);
+        Customer third = new Customer(name + "-next", FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 22, Gender.MALE);
+
+        underTest.save(first);
+        underTest.save(second);
+        underTest.save(third);
+
+        // When
+        // the page starts right after the first customer , the id breaks the tie with the second one which has the same name
+        List<Customer> actual = underTest.findCustomersAfterName(name, first.getId(), Limit.of(10));
+
+        // Then
+        assertThat(actual).extracting(Customer::getId)
+                .containsExactly(second.getId(), third.getId());
+    }
+
+    @Test
+    void findExistingEmails() {
+
+        //Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.save(new Customer(FAKER.name().fullName(), email, 20, Gender.MALE));
+        String unknownEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+
+        // When
+        List<String> actual = underTest.findExistingEmails(List.of(email, unknownEmail));
+
+        // Then
+        assertThat(actual).containsExactly(email);
+    }
+
+    @Test
+    void importCustomersSkipsTakenEmails() {
+
+        //Given
+        String takenEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.saveAndFlush(new Customer("George", takenEmail, 20, Gender.MALE));
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        // the name has what COPY would otherwise take for the end of a field or a row
+        List<CustomerImportRow> rows = List.of(
+                new CustomerImportRow(2, "Magdy, \"George\"\nMagdy\\", email, 22, Gender.MALE),
+                new CustomerImportRow(3, "Other George", takenEmail, 30, Gender.MALE),
+                new CustomerImportRow(4, "Jamila", email, 19, Gender.FEMALE));
+        List<CustomerImportRow> emailTaken = new ArrayList<>();
+
+        // When
+        long actual = underTest.importCustomers(rows.iterator(), emailTaken::add);
+
+        // Then
+        // the row with the email first is the one inserted
+        assertThat(actual).isEqualTo(1);
+        assertThat(emailTaken).containsExactly(rows.get(1), rows.get(2));
+        assertThat(underTest.findCustomerByEmail(email)).get()
+                .extracting(Customer::getName, Customer::getAge, Customer::getGender, Customer::getVersion)
+                .containsExactly("Magdy, \"George\"\nMagdy\\", 22, Gender.MALE, 0L);
+    }
+
+    @Test
+    void importCustomersCopiesRowsInChunks() {
+
+        //Given
+        // more than a chunk , the last chunk is smaller
+        String domain = "@" + UUID.randomUUID() + ".example.com";
+        List<CustomerImportRow> rows = IntStream.range(0, 10_050)
+                .mapToObj(i -> new CustomerImportRow(i + 2, "Customer " + i, "customer" + i + domain, 20, Gender.FEMALE))
+                .toList();
+
+        // When
+        long actual = underTest.importCustomers(rows.iterator(), row -> { throw new AssertionError(row); });
+
+        // Then
+        assertThat(actual).isEqualTo(10_050);
+        assertThat(underTest.findExistingEmails(List.of("customer0" + domain, "customer10049" + domain)))
+                .hasSize(2);
+    }
+
+    @Test
+    void streamAllCustomers() {
+
+        //Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                20, Gender.MALE);
+
+        underTest.save(customer);
+
+        // When
+        // @DataJpaTest runs every test inside a transaction , which the stream needs to keep its cursor open
+        List<Customer> actual;
+        try (Stream<Customer> customers = underTest.streamAllCustomers()) {
+            actual = customers.toList();
+        }
+
+        // Then
+        assertThat(actual).usingRecursiveFieldByFieldElementComparator()
+                .contains(customer);
+    }
+
+    @Test
+    void findAllPlainLeavesPersistenceContextEmpty() {
+
+        //Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                20, Gender.MALE);
+        underTest.saveAndFlush(customer);
+        entityManager.clear();
+
+        // When
+        List<Customer> actual = underTest.findAllPlain();
+
+        // Then
+        // read like findAll , but none of them is managed , so nothing is dirty checked at flush
+        assertThat(actual).usingRecursiveFieldByFieldElementComparator()
+                .contains(customer);
+        assertThat(actual).noneMatch(entityManager::contains);
+    }
+
+    @Test
+    void insertsTakeIdsFromPooledBlocksOfCustomerIdSequence() {
+
+        //Given
+        long before = sequenceValue("last_value");
+
+        // When
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Customer customer = new Customer(
+                    FAKER.name().fullName(),
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                    20, Gender.MALE);
+            underTest.save(customer);
+            customers.add(customer);
+        }
+
+        // Then
+        // flyway made the increment of the sequence the allocation size of CustomerIdGenerator (customer.id.allocation-size)
+        assertThat(sequenceValue("increment_by")).isEqualTo(50);
+        // 10 inserts fit in one block , so the sequence was called once at most instead of 10 times
+        assertThat(sequenceValue("last_value") - before).isLessThanOrEqualTo(50);
+        assertThat(customers).extracting(Customer::getId).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void updateCustomerChangesOnlyGivenValues() {
+
+        //Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = underTest.saveAndFlush(new Customer("Ali", email, 20, Gender.MALE));
+
+        // When
+        int actual = underTest.updateCustomer(customer.getId(), "Alex", null, null, 0L);
+
+        // Then
+        assertThat(actual).isEqualTo(1);
+        // the persistence context was cleared , so this reads the row again
+        assertThat(underTest.findById(customer.getId())).hasValueSatisfying(updated -> {
+            assertThat(updated.getName()).isEqualTo("Alex");
+            assertThat(updated.getEmail()).isEqualTo(email);
+            assertThat(updated.getAge()).isEqualTo(20);
+            assertThat(updated.getVersion()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void updateCustomerChangesNothingForOtherVersionOrSameValues() {
+
+        //Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = underTest.saveAndFlush(new Customer("Ali", email, 20, Gender.MALE));
+        Integer id = customer.getId();
+
+        // When
+        // Then
+        assertThat(underTest.updateCustomer(id, "Alex", null, null, 7L)).isZero();
+        assertThat(underTest.updateCustomer(id, "Ali", email, 20, null)).isZero();
+        assertThat(underTest.updateCustomer(id, null, null, null, null)).isZero();
+        assertThat(underTest.updateCustomer(-1, "Alex", null, null, null)).isZero();
+        assertThat(underTest.findVersionById(id)).hasValue(0L);
+    }
+
+    @Test
+    void deleteCustomerByIdIsOneStatement() {
+
+        //Given
+        Customer customer = underTest.saveAndFlush(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20, Gender.MALE));
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // When
+        int deleted = underTest.deleteCustomerById(customer.getId());
+        int deletedAgain = underTest.deleteCustomerById(customer.getId());
+
+        // Then
+        // one DELETE each , no select of the customer before (deleteById reads it first)
+        assertThat(deleted).isEqualTo(1);
+        assertThat(deletedAgain).isZero();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(underTest.existsCustomerById(customer.getId())).isFalse();
+    }
+
+    @Test
+    void deleteCustomerByIdAndVersionDeletesOnlyThatVersion() {
+
+        //Given
+        Customer customer = underTest.saveAndFlush(
+                new Customer("George", "george-" + UUID.randomUUID() + "@gmail.com", 22, Gender.MALE));
+
+        // When
+        int deletedOtherVersion = underTest.deleteCustomerByIdAndVersion(customer.getId(), customer.getVersion() + 1);
+        int deleted = underTest.deleteCustomerByIdAndVersion(customer.getId(), customer.getVersion());
+
+        // Then
+        assertThat(deletedOtherVersion).isZero();
+        assertThat(deleted).isEqualTo(1);
+        assertThat(underTest.existsCustomerById(customer.getId())).isFalse();
+    }
+
+    // the triggers of V11 keep the counts , ages nobody else has so other customers of the database don't matter
+    @Test
+    void customerStatsAreKeptByTriggers() {
+
+        //Given
+        CustomerStats before = CustomerStats.of(countCustomerStats());
+        Customer george = new Customer("George", "george-" + UUID.randomUUID() + "@gmail.com", 131, Gender.MALE);
+        Customer mona = new Customer("Mona", "mona-" + UUID.randomUUID() + "@gmail.com", 135, Gender.FEMALE);
+
+        // When
+        underTest.saveAllAndFlush(List.of(george, mona));
+        CustomerStats inserted = CustomerStats.of(countCustomerStats());
+        underTest.updateCustomer(george.getId(), null, null, 145, null);
+        underTest.updateCustomer(mona.getId(), "Mona Lisa", null, null, null);
+        CustomerStats updated = CustomerStats.of(countCustomerStats());
+        underTest.deleteCustomerById(mona.getId());
+        CustomerStats deleted = CustomerStats.of(countCustomerStats());
+
+        // Then
+        assertThat(inserted.customers()).isEqualTo(before.customers() + 2);
+        assertThat(inserted.genders().get(Gender.FEMALE)).isEqualTo(before.genders().get(Gender.FEMALE) + 1);
+        assertThat(customersAged(inserted, 130) - customersAged(before, 130)).isEqualTo(2);
+        // george moved to the next range , the new name of mona changes nothing
+        assertThat(updated.customers()).isEqualTo(inserted.customers());
+        assertThat(customersAged(updated, 130) - customersAged(before, 130)).isEqualTo(1);
+        assertThat(customersAged(updated, 140) - customersAged(before, 140)).isEqualTo(1);
+        assertThat(deleted.customers()).isEqualTo(before.customers() + 1);
+        assertThat(deleted.genders()).isEqualTo(Map.of(
+                Gender.MALE, before.genders().get(Gender.MALE) + 1,
+                Gender.FEMALE, before.genders().get(Gender.FEMALE)));
+        assertThat(customersAged(deleted, 130)).isEqualTo(customersAged(before, 130));
+    }
+
+    // the triggers of V10 count every statement that changed customers , not the ones that changed nothing
+    @Test
+    void customerChangesAreCountedByStatement() {
+
+        //Given
+        long changes = underTest.countCustomerChanges();
+        Customer customer = underTest.saveAndFlush(
+                new Customer("George", "george-" + UUID.randomUUID() + "@gmail.com", 22, Gender.MALE));
+        long inserted = underTest.countCustomerChanges();
+
+        // When
+        underTest.updateCustomer(customer.getId(), "Georgy", null, null, null);
+        long updated = underTest.countCustomerChanges();
+        underTest.updateCustomer(customer.getId(), "Georgy", null, null, null);
+        long unchanged = underTest.countCustomerChanges();
+        underTest.deleteCustomerById(-1);
+        long nothingDeleted = underTest.countCustomerChanges();
+        underTest.deleteCustomerById(customer.getId());
+        long deleted = underTest.countCustomerChanges();
+
+        // Then
+        assertThat(inserted).isEqualTo(changes + 1);
+        assertThat(updated).isEqualTo(inserted + 1);
+        assertThat(unchanged).isEqualTo(updated);
+        assertThat(nothingDeleted).isEqualTo(unchanged);
+        assertThat(deleted).isEqualTo(nothingDeleted + 1);
+    }
+
+    @Test
+    void searchCustomers() {
+
+        //Given
+        String domain = UUID.randomUUID() + ".com";
+        Customer alice = underTest.save(new Customer("Alice", "alice@" + domain, 30, Gender.FEMALE));
+        Customer albert = underTest.save(new Customer("albert", "albert@" + domain.toUpperCase(), 40, Gender.MALE));
+        Customer bob = underTest.save(new Customer("Bob", "bob@" + domain, 35, Gender.MALE));
+        CustomerSearch byDomain = new CustomerSearch(null, domain, null, null, null);
+
+        // When
+        List<Customer> firstPage = underTest.searchCustomers(byDomain, CustomerSort.AGE, null, 2);
+        List<Customer> nextPage = underTest.searchCustomers(
+                byDomain, CustomerSort.AGE, CustomerCursor.after(CustomerSort.AGE, firstPage.get(1)), 2);
+        List<Customer> byName = underTest.searchCustomers(
+                new CustomerSearch("AL", domain, null, 35, null), CustomerSort.ID, null, 10);
+
+        // Then
+        assertThat(firstPage).containsExactly(alice, bob);
+        assertThat(nextPage).containsExactly(albert);
+        assertThat(byName).containsExactly(alice);
+    }
+
+    // every query shape of GET /api/v1/customers/search must be answered by its index of V8 (or V5) instead of reading the table
+    // the rows are inserted (and rolled back) by the test , so the planner has enough of them to prefer an index
+    @Test
+    void searchCustomersUsesIndexes() {
+
+        //Given
+        entityManager.createNativeQuery("""
+                INSERT INTO customer (id, name, email, age, gender)
+                SELECT -g , md5(CAST(g AS text)) , md5(CAST(g AS text)) || '@domain-' || (g % 500) || '.com' , 18 + g % 80 ,
+                       CASE WHEN g % 2 = 0 THEN 'MALE' ELSE 'FEMALE' END
+                FROM generate_series(1, 20000) g
+                """).executeUpdate();
+        entityManager.createNativeQuery("ANALYZE customer").executeUpdate();
+
+        // When
+        // Then
+        assertThat(explain(new CustomerSearch("ab", null, null, null, null), CustomerSort.NAME))
+                .contains("customer_lower_name_pattern_idx")
+                .doesNotContain("Seq Scan");
+        assertThat(explain(new CustomerSearch(null, "domain-7.com", null, null, null), CustomerSort.ID))
+                .contains("customer_lower_email_trgm_idx")
+                .doesNotContain("Seq Scan");
+        assertThat(explain(new CustomerSearch(null, null, 30, 31, Gender.FEMALE), CustomerSort.AGE))
+                .contains("customer_gender_age_id_idx")
+                .doesNotContain("Seq Scan");
+        assertThat(explain(new CustomerSearch(null, null, 30, 31, null), CustomerSort.AGE))
+                .contains("customer_age_id_idx")
+                .doesNotContain("Seq Scan");
+    }
+
+    @Test
+    void findDuplicateCandidates() {
+
+        //Given
+        String run = UUID.randomUUID().toString().substring(0, 8);
+        Customer george = underTest.save(new Customer("George Magdy " + run, "gmagdy" + run + "@gmail.com", 30, Gender.MALE));
+        Customer other = underTest.save(new Customer("Jamila " + run + " Ahmed", "jamila" + run + "@gmail.com", 25, Gender.FEMALE));
+
+        // When
+        List<Customer> byName = underTest.findDuplicateCandidates("Georg Magdi " + run, null, 0.5, 1);
+        List<Customer> byEmail = underTest.findDuplicateCandidates(null, "g.magdy" + run + "@yahoo.com", 0.5, 1);
+        List<Customer> byBoth = underTest.findDuplicateCandidates("Georg Magdi " + run, "jamila" + run + "@hotmail.com", 0.5, 1);
+
+        // Then
+        assertThat(byName).containsExactly(george);
+        assertThat(byEmail).containsExactly(george);
+        assertThat(byBoth).containsExactlyInAnyOrder(george, other);
+    }
+
+    // the candidates are found by the gin indexes of V9 , the table isn't read
+    @Test
+    @SuppressWarnings("unchecked")
+    void findDuplicateCandidatesUsesIndexes() {
+
+        //Given
+        entityManager.createNativeQuery("""
+                INSERT INTO customer (id, name, email, age, gender)
+                SELECT -g , md5(CAST(g AS text)) , md5(CAST(g AS text)) || '@domain-' || (g % 500) || '.com' , 18 + g % 80 ,
+                       CASE WHEN g % 2 = 0 THEN 'MALE' ELSE 'FEMALE' END
+                FROM generate_series(1, 20000) g
+                """).executeUpdate();
+        entityManager.createNativeQuery("ANALYZE customer").executeUpdate();
+
+        // When
+        entityManager.createNativeQuery("SELECT set_config('pg_trgm.similarity_threshold', '0.5', true)").getSingleResult();
+        List<String> plan = entityManager.createNativeQuery(
+                        "EXPLAIN " + CustomerSearchRepositoryImpl.duplicateCandidatesSql(true, true))
+                .setParameter("name", "George Magdy")
+                .setParameter("emailLocalPart", "gmagdy")
+                .setParameter("limit", 11)
+                .getResultList();
+
+        // Then
+        assertThat(String.join("\n", plan))
+                .contains("customer_name_trgm_idx")
+                .contains("customer_email_local_part_trgm_idx")
+                .doesNotContain("Seq Scan");
+    }
+
+    @SuppressWarnings("unchecked")
+    private String explain(CustomerSearch search, CustomerSort sort) {
+        CustomerSearchQuery query = CustomerSearchQuery.of(search, sort, null, 21);
+        List<String> plan = query.bind(entityManager.createNativeQuery("EXPLAIN " + query.sql())).getResultList();
+        return String.join("\n", plan);
+    }
+
+    private long sequenceValue(String column) {
+        Number value = (Number) entityManager.createNativeQuery(
+                "SELECT " + column + " FROM pg_sequences WHERE sequencename = 'customer_id_sequence'")
+                .getSingleResult();
+        return value.longValue();
+    }
+
+    private List<CustomerStats.Count> countCustomerStats() {
+        return underTest.countCustomerStats().stream()
+                .map(count -> new CustomerStats.Count(count.getGender(), count.getAgeFrom(), count.getCustomers()))
+                .toList();
+    }
+
+    private static long customersAged(CustomerStats stats, int from) {
+        return stats.ages().stream()
+                .filter(range -> range.from() == from)
+                .mapToLong(CustomerStats.AgeRange::customers)
+                .sum();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.customer;
+
+import com.example.AbstractTestContainersUnitTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// the seeder copies through its own connections , every chunk is committed , so the test isn't rolled back
+// and deletes the seeded customers itself
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CustomerSeederTest extends AbstractTestContainersUnitTest {
+
+    private static final String SEEDED = "email LIKE '%@seed.example.com'";
+    private static final String INDEXES = "SELECT indexdef FROM pg_indexes WHERE tablename = 'customer' ORDER BY indexname";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM customer WHERE " + SEEDED);
+    }
+
+    @Test
+    void seedsCustomersInParallelChunks() throws InterruptedException {
+        //Given
+        // the last chunk is smaller
+        CustomerSeeder underTest = new CustomerSeeder(dataSource, 2_050, 3, 500, false, 50, Duration.ofSeconds(1));
+
+        //When
+        CustomerSeeder.Result actual = underTest.seed();
+
+        //Then
+        assertThat(actual.rows()).isEqualTo(2_050);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM customer WHERE " + SEEDED, Long.class)).isEqualTo(2_050);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(DISTINCT email) FROM customer WHERE " + SEEDED, Long.class)).isEqualTo(2_050);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM customer WHERE " + SEEDED + " AND (age NOT BETWEEN 16 AND 98 OR version <> 0)",
+                Long.class)).isZero();
+        // the triggers counted them
+        assertThat(jdbcTemplate.queryForObject("SELECT sum(customers) FROM customer_stats", Long.class))
+                .isEqualTo(jdbcTemplate.queryForObject("SELECT count(*) FROM customer", Long.class));
+    }
+
+    @Test
+    void idsComeFromBlocksOfTheSequence() throws InterruptedException {
+        //Given
+        CustomerSeeder underTest = new CustomerSeeder(dataSource, 120, 1, 120, false, 50, Duration.ofSeconds(1));
+
+        //When
+        underTest.seed();
+
+        //Then
+        // 3 blocks of 50 for 120 customers , the next block the app gets starts after them
+        Long maxSeededId = jdbcTemplate.queryForObject("SELECT max(id) FROM customer WHERE " + SEEDED, Long.class);
+        Long minSeededId = jdbcTemplate.queryForObject("SELECT min(id) FROM customer WHERE " + SEEDED, Long.class);
+        assertThat(maxSeededId - minSeededId).isEqualTo(119);
+        assertThat(jdbcTemplate.queryForObject("SELECT nextval('customer_id_sequence')", Long.class))
+                .isEqualTo(minSeededId + 150);
+    }
+
+    @Test
+    void indexesAreCreatedAgainOnceCustomersAreIn() throws InterruptedException {
+        //Given
+        List<String> indexes = jdbcTemplate.queryForList(INDEXES, String.class);
+        CustomerSeeder underTest = new CustomerSeeder(dataSource, 1_000, 2, 250, true, 50, Duration.ofSeconds(1));
+
+        //When
+        CustomerSeeder.Result actual = underTest.seed();
+
+        //Then
+        assertThat(actual.rows()).isEqualTo(1_000);
+        assertThat(jdbcTemplate.queryForList(INDEXES, String.class)).containsExactlyElementsOf(indexes);
+        assertThat(String.join("\n", indexes)).contains("customer_pkey", "customer_email_unique", "customer_name_trgm_idx");
+    }
+}
@@ -1,8 +1,10 @@
 package com.example.customer;
 
 import com.example.exception.DuplicteResourceException;
+import com.example.exception.PreconditionFailedException;
 import com.example.exception.RequestValidationException;
 import com.example.exception.ResourceNotFoundException;
+import com.example.exception.StaleResourceException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -10,10 +12,20 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class) // this line instead of line 23 in order to avoid writing boilerplate code ( another way of initializing mock)
@@ -43,6 +55,121 @@ class CustomerServiceTest {
         verify(customerDao).selectAllCustomers();
     }
 
+    @Test
+    void canGetFirstCustomersPage() {
+        //Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE);
+        Customer jamila = new Customer(2, "Jamila", "jamila@gmail.com", 19, Gender.FEMALE);
+        Customer george = new Customer(3, "George", "george@gmail.com", 22, Gender.MALE);
+
+        // page size is 2 , so the service asks the DAO for one more customer to know if there is a next page
+        when(customerDao.selectCustomersPage(CustomerSort.ID, null, 3)).thenReturn(List.of(alex, jamila, george));
+
+        //When
+        CustomerPage actual = underTest.getCustomersPage(null, null, 2);
+
+        //Then
+        assertThat(actual.customers()).containsExactly(alex, jamila);
+        assertThat(CustomerCursor.decode(actual.nextCursor())).isEqualTo(new CustomerCursor(CustomerSort.ID, 2, ""));
+    }
+
+    @Test
+    void canGetNextCustomersPageUsingCursorSort() {
+        //Given
+        Customer george = new Customer(3, "George", "george@gmail.com", 22, Gender.MALE);
+        CustomerCursor cursor = new CustomerCursor(CustomerSort.NAME, 1, "Alex");
+
+        when(customerDao.selectCustomersPage(CustomerSort.NAME, cursor, CustomerService.DEFAULT_PAGE_SIZE + 1))
+                .thenReturn(List.of(george));
+
+        //When
+        // no sort is given , so the sort the cursor was issued for is used
+        CustomerPage actual = underTest.getCustomersPage(null, cursor.encode(), null);
+
+        //Then
+        // the last page has no next cursor
+        assertThat(actual.customers()).containsExactly(george);
+        assertThat(actual.nextCursor()).isNull();
+    }
+
+    @Test
+    void willCapCustomersPageSize() {
+        //When
+        underTest.getCustomersPage("age", null, 10_000);
+
+        //Then
+        verify(customerDao).selectCustomersPage(CustomerSort.AGE, null, CustomerService.MAX_PAGE_SIZE + 1);
+    }
+
+    @Test
+    void willThrowWhenCursorIsInvalid() {
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.getCustomersPage(null, "not-a-cursor", null))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("invalid cursor [not-a-cursor]");
+
+        verify(customerDao, never()).selectCustomersPage(any(), any(), anyInt());
+    }
+
+    @Test
+    void willThrowWhenCursorWasIssuedForAnotherSort() {
+        //Given
+        String cursor = new CustomerCursor(CustomerSort.NAME, 1, "Alex").encode();
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.getCustomersPage("age", cursor, null))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("cursor was issued for sort [NAME]");
+
+        verify(customerDao, never()).selectCustomersPage(any(), any(), anyInt());
+    }
+
+    @Test
+    void canSearchCustomers() {
+        //Given
+        CustomerSearch search = new CustomerSearch("al", "gmail.com", 18, 30, Gender.MALE);
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE);
+        Customer albert = new Customer(4, "Albert", "albert@gmail.com", 25, Gender.MALE);
+        when(customerDao.searchCustomers(search, CustomerSort.AGE, null, 2)).thenReturn(List.of(alex, albert));
+
+        //When
+        CustomerPage actual = underTest.searchCustomers(search, "age", null, 1);
+
+        //Then
+        // paged like getCustomersPage , the filters go to the DAO as they are
+        assertThat(actual.customers()).containsExactly(alex);
+        assertThat(CustomerCursor.decode(actual.nextCursor())).isEqualTo(new CustomerCursor(CustomerSort.AGE, 1, "21"));
+    }
+
+    @Test
+    void willThrowWhenSearchMinAgeIsGreaterThanMaxAge() {
+        //Given
+        CustomerSearch search = new CustomerSearch(null, null, 40, 30, null);
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.searchCustomers(search, null, null, null))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("minAge [40] is greater than maxAge [30]");
+
+        verify(customerDao, never()).searchCustomers(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void exportCustomers() {
+        //Given
+        Consumer<Customer> consumer = customer -> { };
+
+        //When
+        underTest.exportCustomers(consumer);
+
+        //Then
+        // we just want to verify that the consumer is passed to the DAO as it is
+        verify(customerDao).streamAllCustomers(consumer);
+    }
+
     @Test
     void canGetCustomer() {
         //Given
@@ -60,6 +187,46 @@ class CustomerServiceTest {
         assertThat(actual).isEqualTo(customer);
     }
 
+    @Test
+    void canGetCustomerVersion() {
+        //Given
+        when(customerDao.selectCustomerVersion(10)).thenReturn(Optional.of(3L));
+
+        //When
+        long actual = underTest.getCustomerVersion(10);
+
+        //Then
+        // only the version , the customer isn't read
+        assertThat(actual).isEqualTo(3L);
+        verify(customerDao , never()).selectCustomerById(any());
+    }
+
+    @Test
+    void canGetCustomerStats() {
+        //Given
+        CustomerStats stats = new CustomerStats(1, Map.of(Gender.MALE, 1L, Gender.FEMALE, 0L),
+                List.of(new CustomerStats.AgeRange(20, 29, 1)));
+        when(customerDao.selectCustomerStats()).thenReturn(stats);
+
+        //When
+        CustomerStats actual = underTest.getCustomerStats();
+
+        //Then
+        assertThat(actual).isEqualTo(stats);
+    }
+
+    @Test
+    void willThrowWhenGettingVersionOfCustomerThatDoesNotExist() {
+        //Given
+        when(customerDao.selectCustomerVersion(10)).thenReturn(Optional.empty());
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.getCustomerVersion(10))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [10] not found");
+    }
+
     @Test
     void willThrowGetCustomerReturnEmptyOptional() {
         //Given
@@ -82,9 +249,6 @@ class CustomerServiceTest {
         //Given
         String email = "george@gmail.com";
 
-        // tell the Mock customerDao what to do when calling isPersonExistWithEmail please return false when given email with value "george@gmail.com" as it doesn't know to how reply
-        when(customerDao.isPersonExistWithEmail(email)).thenReturn(false);
-
         CustomerRegistrationRequest request = new CustomerRegistrationRequest("george" ,email , 22, Gender.MALE);
 
         //When
@@ -107,16 +271,107 @@ class CustomerServiceTest {
         assertThat(captauredCustomer.getEmail()).isEqualTo(request.email());
         assertThat(captauredCustomer.getAge()).isEqualTo(request.age());
 
+        // the email is not checked with a separate query , the insert itself rejects a taken email
+        verify(customerDao, never()).isPersonExistWithEmail(any());
+    }
+
+
+    @Test
+    void addCustomerReturnsPossibleDuplicates() {
+        //Given
+        Customer george = new Customer(1, "George Magdy", "gmagdy@gmail.com", 30, Gender.MALE);
+        doAnswer(invocation -> {
+            invocation.<Customer>getArgument(0).setId(2);
+            return null;
+        }).when(customerDao).insertCustomer(any());
+        // the new customer is the nearest candidate of itself
+        when(customerDao.selectDuplicateCandidates(
+                "Georg Magdi", "g.magdy@yahoo.com", CustomerService.DUPLICATE_SIMILARITY, CustomerService.MAX_DUPLICATES + 1))
+                .thenReturn(List.of(new Customer(2, "Georg Magdi", "g.magdy@yahoo.com", 30, Gender.MALE), george));
+
+        //When
+        CustomerRegistrationResponse actual = underTest.addCustomer(
+                new CustomerRegistrationRequest("Georg Magdi", "g.magdy@yahoo.com", 30, Gender.MALE));
+
+        //Then
+        assertThat(actual.id()).isEqualTo(2);
+        assertThat(actual.possibleDuplicates()).extracting(CustomerDuplicate::customer).containsExactly(george);
+    }
+
+    @Test
+    void addCustomerWaitsForTheGroupCommit() {
+        //Given
+        CustomerRegistrationWriter registrationWriter = mock(CustomerRegistrationWriter.class);
+        underTest = new CustomerService(customerDao, Optional.of(registrationWriter));
+        when(registrationWriter.register(any())).thenAnswer(invocation -> {
+            Customer customer = invocation.getArgument(0);
+            customer.setId(7);
+            return CompletableFuture.completedFuture(customer);
+        });
+
+        //When
+        CustomerRegistrationResponse actual = underTest.addCustomer(
+                new CustomerRegistrationRequest("George", "george@gmail.com", 22, Gender.MALE));
+
+        //Then
+        // the writer inserts it , not this request
+        assertThat(actual.id()).isEqualTo(7);
+        verify(customerDao, never()).insertCustomer(any());
+    }
+
+    @Test
+    void willThrowWhenEmailIsTakenInTheGroupCommit() {
+        //Given
+        CustomerRegistrationWriter registrationWriter = mock(CustomerRegistrationWriter.class);
+        underTest = new CustomerService(customerDao, Optional.of(registrationWriter));
+        when(registrationWriter.register(any()))
+                .thenReturn(CompletableFuture.failedFuture(new DuplicteResourceException("email already taken")));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.addCustomer(
+                new CustomerRegistrationRequest("George", "george@gmail.com", 22, Gender.MALE)))
+                .isInstanceOf(DuplicteResourceException.class)
+                .hasMessage("email already taken");
+    }
+
+    @Test
+    void findDuplicatesScoresCandidatesMostSimilarFirst() {
+        //Given
+        Customer george = new Customer(1, "George Magdy", "george.m@gmail.com", 30, Gender.MALE);
+        Customer sameEmail = new Customer(2, "Someone Else", "gmagdy@hotmail.com", 40, Gender.MALE);
+        when(customerDao.selectDuplicateCandidates(
+                "Georg Magdi", "gmagdy@gmail.com", CustomerService.DUPLICATE_SIMILARITY, CustomerService.MAX_DUPLICATES + 1))
+                .thenReturn(List.of(george, sameEmail));
+
+        //When
+        List<CustomerDuplicate> actual = underTest.findDuplicates(
+                new CustomerRegistrationRequest("Georg Magdi", "gmagdy@gmail.com", null, null));
+
+        //Then
+        // the same email before the @ (1.0) comes before the similar name (0.56)
+        assertThat(actual).extracting(CustomerDuplicate::customer).containsExactly(sameEmail, george);
+        assertThat(actual.get(0).emailSimilarity()).isEqualTo(1.0);
+        assertThat(actual.get(1).nameSimilarity()).isCloseTo(0.5625, within(0.0001));
     }
 
+    @Test
+    void willThrowWhenFindingDuplicatesWithoutNameAndEmail() {
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.findDuplicates(new CustomerRegistrationRequest(null, null, 22, Gender.MALE)))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("name or email is required");
+        verifyNoInteractions(customerDao);
+    }
 
     @Test
     void willThrowWhenEmailExistWhileAddingCustomer() {
         //Given
         String email = "george@gmail.com";
 
-        // tell the Mock customerDao what to do when calling isPersonExistWithEmail please return true when given email with value "george@gmail.com" as it doesn't know to how reply
-        when(customerDao.isPersonExistWithEmail(email)).thenReturn(true);
+        // the DAO rejects the insert like customer_email_unique does
+        doThrow(new DuplicteResourceException("email already taken")).when(customerDao).insertCustomer(any());
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest("george" ,email , 22, Gender.MALE);
 
@@ -126,226 +381,412 @@ class CustomerServiceTest {
                 .hasMessage("email already taken");
 
         //Then
-        // we just want to verify that we will never insert a customer and insert customer is never invoked as the exception was thrown
-        verify(customerDao , never() ).insertCustomer(any());
+        // one call to the DAO , there is no separate email check
+        verify(customerDao).insertCustomer(any());
+        verify(customerDao, never()).isPersonExistWithEmail(any());
 
     }
 
 
 
     @Test
-    void deleteCustomerById() {
+    void addCustomersInsertsOnlyRowsThatCanBeRegistered() {
         //Given
-        int id = 10;
-
-        when(customerDao.isPersonExistWithId(id)).thenReturn(true);
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("George", "george@gmail.com", 22, Gender.MALE),
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 21, Gender.MALE),
+                new CustomerRegistrationRequest("Other George", "george@gmail.com", 30, Gender.MALE),
+                new CustomerRegistrationRequest("No Age", "noage@gmail.com", null, Gender.FEMALE),
+                new CustomerRegistrationRequest("Jamila", "jamila@gmail.com", 19, Gender.FEMALE)
+        );
+        // alex is already registered
+        when(customerDao.selectExistingEmails(any())).thenReturn(Set.of("alex@gmail.com"));
+        // the DAO sets the generated ids like the database does
+        doAnswer(invocation -> {
+            List<Customer> customers = invocation.getArgument(0);
+            for (int i = 0; i < customers.size(); i++) {
+                customers.get(i).setId(100 + i);
+            }
+            return null;
+        }).when(customerDao).insertCustomers(any());
 
         //When
-        underTest.deleteCustomerById(id);
+        CustomerBatchRegistrationResponse actual = underTest.addCustomers(requests);
 
         //Then
-        // we just want to verify that the method from the DAO is invoked
-        verify(customerDao).deleteCustomerById(id);
+        // all the emails were checked with one call , instead of one call per row
+        verify(customerDao).selectExistingEmails(Set.of("george@gmail.com", "alex@gmail.com", "noage@gmail.com", "jamila@gmail.com"));
+        verify(customerDao, never()).isPersonExistWithEmail(any());
+
+        ArgumentCaptor<List<Customer>> customersArgumentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(customerDao).insertCustomers(customersArgumentCaptor.capture());
+        assertThat(customersArgumentCaptor.getValue()).extracting(Customer::getEmail)
+                .containsExactly("george@gmail.com", "jamila@gmail.com");
+
+        assertThat(actual.created()).isEqualTo(2);
+        assertThat(actual.rejected()).isEqualTo(3);
+        assertThat(actual.results()).containsExactly(
+                new CustomerRegistrationResult(0, "george@gmail.com", CustomerRegistrationStatus.CREATED, 100, null),
+                new CustomerRegistrationResult(1, "alex@gmail.com", CustomerRegistrationStatus.EMAIL_TAKEN, null, "email already taken"),
+                // the first row with this email wins
+                new CustomerRegistrationResult(2, "george@gmail.com", CustomerRegistrationStatus.EMAIL_TAKEN, null, "email already taken"),
+                new CustomerRegistrationResult(3, "noage@gmail.com", CustomerRegistrationStatus.INVALID, null, "name , email , age and gender are required"),
+                new CustomerRegistrationResult(4, "jamila@gmail.com", CustomerRegistrationStatus.CREATED, 101, null)
+        );
     }
 
     @Test
-    void willThrowWhenDeleteCustomerByIdNotExist() {
+    void addCustomersInsertsNothingWhenEveryEmailIsTaken() {
         //Given
-        int id = 10;
-
-        when(customerDao.isPersonExistWithId(id)).thenReturn(false);
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 21, Gender.MALE)
+        );
+        when(customerDao.selectExistingEmails(any())).thenReturn(Set.of("alex@gmail.com"));
 
         //When
-        assertThatThrownBy(() -> underTest.deleteCustomerById(id))
-                .isInstanceOf(ResourceNotFoundException.class)
-                .hasMessage("customer with id [%s] not found".formatted(id));
+        CustomerBatchRegistrationResponse actual = underTest.addCustomers(requests);
 
         //Then
-        // we just want to verify that we will never delete a customer and delete customer is never invoked as the exception was thrown
-        verify(customerDao , never() ).deleteCustomerById(id);
+        assertThat(actual.created()).isZero();
+        assertThat(actual.rejected()).isEqualTo(1);
+        verify(customerDao, never()).insertCustomers(any());
     }
 
-
     @Test
-    void canUpdateAllCustomersProperties() {
+    void importCustomersStreamsValidRowsAndRejectsTheOthers() {
         //Given
-        int id = 10;
-        Customer customer = new Customer(id , "George" , "george@gmail.com" , 22, Gender.MALE);
+        // the columns in another order , an extra column , a quoted name with a comma , a blank line , bad rows
+        String csv = """
+                Email,Name,note,AGE,gender\r
+                george@gmail.com,"Magdy, George",x,22,male\r
+                alex@gmail.com,Alex,,21,MALE
+                jamila@gmail.com,Jamila,,,FEMALE
+
+                nour@gmail.com,Nour,,twenty,FEMALE
+                other.george@gmail.com,"Other ""G"" George",,30,other
+                omar@gmail.com,Omar,,40,MALE
+                """;
+        // the DAO reads the rows while it inserts them , alex is already registered
+        when(customerDao.importCustomers(any(), any())).thenAnswer(invocation -> {
+            Iterator<CustomerImportRow> rows = invocation.getArgument(0);
+            Consumer<CustomerImportRow> emailTaken = invocation.getArgument(1);
+            long inserted = 0;
+            while (rows.hasNext()) {
+                CustomerImportRow row = rows.next();
+                if (row.email().equals("alex@gmail.com")) {
+                    emailTaken.accept(row);
+                } else {
+                    inserted++;
+                }
+            }
+            return inserted;
+        });
+        ArgumentCaptor<Iterator<CustomerImportRow>> rowsArgumentCaptor = ArgumentCaptor.forClass(Iterator.class);
 
-        // tell the Mock customerDao what to do when calling selectCustomerById please return Optional customer whether it is empty or George as it doesn't know to how reply
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-
-        String newEmail = "daniel@gmail.com";
+        //When
+        CustomerImportResponse actual = underTest.importCustomers(new StringReader(csv));
 
-        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Daniel" , newEmail , 20);
+        //Then
+        verify(customerDao).importCustomers(rowsArgumentCaptor.capture(), any());
+        verify(customerDao, never()).insertCustomer(any());
+        assertThat(actual).isEqualTo(new CustomerImportResponse(6, 2, 4, List.of(
+                new CustomerRegistrationResult(3, "alex@gmail.com", CustomerRegistrationStatus.EMAIL_TAKEN, null, "email already taken"),
+                new CustomerRegistrationResult(4, "jamila@gmail.com", CustomerRegistrationStatus.INVALID, null, "name , email , age and gender are required"),
+                new CustomerRegistrationResult(6, "nour@gmail.com", CustomerRegistrationStatus.INVALID, null, "age [twenty] is not a number"),
+                new CustomerRegistrationResult(7, "other.george@gmail.com", CustomerRegistrationStatus.INVALID, null, "gender [other] is not one of [MALE, FEMALE]")
+        )));
+    }
 
-        // tell the Mock customerDao what to do when calling isPersonExistWithEmail please return false as it doesn't know to how reply
-        when(customerDao.isPersonExistWithEmail(newEmail)).thenReturn(false);
+    @Test
+    void importCustomersHandsTheDaoParsedRows() {
+        //Given
+        String csv = "name,email,age,gender\n\"Magdy, \"\"George\"\"\nMagdy\",george@gmail.com, 22 ,male";
+        List<CustomerImportRow> rows = new ArrayList<>();
+        when(customerDao.importCustomers(any(), any())).thenAnswer(invocation -> {
+            Iterator<CustomerImportRow> iterator = invocation.getArgument(0);
+            iterator.forEachRemaining(rows::add);
+            return (long) rows.size();
+        });
 
         //When
-        underTest.updateCustomer(id , updateRequest);
+        CustomerImportResponse actual = underTest.importCustomers(new StringReader(csv));
 
         //Then
-        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
+        // a quoted field may have quotes and line breaks
+        assertThat(rows).containsExactly(
+                new CustomerImportRow(2, "Magdy, \"George\"\nMagdy", "george@gmail.com", 22, Gender.MALE));
+        assertThat(actual).isEqualTo(new CustomerImportResponse(1, 1, 0, List.of()));
+    }
 
-        // we just want to verify that the method from the DAO is invoked , and we want to extract the value of the customer that is passed to perform assertions
-        verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+    @Test
+    void importCustomersKeepsOnlyTheFirstRejects() {
+        //Given
+        StringBuilder csv = new StringBuilder("name,email,age,gender\n");
+        for (int i = 0; i < CustomerService.MAX_IMPORT_REJECTS + 10; i++) {
+            csv.append("Customer,customer").append(i).append("@gmail.com,,MALE\n");
+        }
+        when(customerDao.importCustomers(any(), any())).thenAnswer(invocation -> {
+            Iterator<CustomerImportRow> rows = invocation.getArgument(0);
+            rows.forEachRemaining(row -> {});
+            return 0L;
+        });
 
-        // customer that is extracted
-        Customer captauredCustomer = customerArgumentCaptor.getValue();
+        //When
+        CustomerImportResponse actual = underTest.importCustomers(new StringReader(csv.toString()));
 
-        //to make sure that the customer that is created in CustomerService and sent to our DAO is the customer that will be sent with all it's value (Changes)
-        // we compare the values against what was sent
-        assertThat(captauredCustomer.getName()).isEqualTo(updateRequest.name());
-        assertThat(captauredCustomer.getEmail()).isEqualTo(updateRequest.email());
-        assertThat(captauredCustomer.getAge()).isEqualTo(updateRequest.age());
+        //Then
+        assertThat(actual.rows()).isEqualTo(CustomerService.MAX_IMPORT_REJECTS + 10);
+        assertThat(actual.rejected()).isEqualTo(CustomerService.MAX_IMPORT_REJECTS + 10);
+        assertThat(actual.rejects()).hasSize(CustomerService.MAX_IMPORT_REJECTS);
+        assertThat(actual.rejects().get(0).index()).isEqualTo(2);
     }
 
+    @Test
+    void willThrowWhenImportHasNoHeader() {
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.importCustomers(new StringReader("")))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("the csv is empty , its first line must name the columns");
+        assertThatThrownBy(() -> underTest.importCustomers(new StringReader("name,email,gender\nGeorge,george@gmail.com,MALE")))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("the header has no [age] column , it must have [name, email, age, gender]");
+        verifyNoInteractions(customerDao);
+    }
 
     @Test
-    void canUpdateOnlyCustomerName() {
+    void willThrowWhenImportHasAQuoteThatIsNeverClosed() {
         //Given
-        int id = 10;
-        Customer customer = new Customer(id , "George" , "george@gmail.com" , 22, Gender.MALE);
+        String csv = "name,email,age,gender\nGeorge,george@gmail.com,22,MALE\n\"Alex,alex@gmail.com,21,MALE\n";
+        when(customerDao.importCustomers(any(), any())).thenAnswer(invocation -> {
+            Iterator<CustomerImportRow> rows = invocation.getArgument(0);
+            rows.forEachRemaining(row -> {});
+            return 1L;
+        });
 
-        // tell the Mock customerDao what to do when calling selectCustomerById please return Optional customer whether it is empty or George as it doesn't know to how reply
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        //When
+        //Then
+        // the DAO rolls back what it imported
+        assertThatThrownBy(() -> underTest.importCustomers(new StringReader(csv)))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("line [3] has a quote that is never closed");
+    }
 
-        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Daniel" , null , null);
+    @Test
+    void willThrowWhenAddingTooManyCustomersAtOnce() {
+        //Given
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest("George", "george@gmail.com", 22, Gender.MALE);
+        List<CustomerRegistrationRequest> requests = new ArrayList<>(Collections.nCopies(CustomerService.MAX_BATCH_SIZE + 1, request));
 
         //When
-        underTest.updateCustomer(id , updateRequest);
+        //Then
+        assertThatThrownBy(() -> underTest.addCustomers(requests))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("at most [%s] customers can be registered at once".formatted(CustomerService.MAX_BATCH_SIZE));
+        verifyNoInteractions(customerDao);
+    }
 
+    @Test
+    void willThrowWhenAddingNoCustomers() {
+        //When
         //Then
-        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
+        assertThatThrownBy(() -> underTest.addCustomers(List.of()))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("no customers to register");
+    }
 
-        // we just want to verify that the method from the DAO is invoked , and we want to extract the value of the customer that is passed to perform assertions
-        verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+    @Test
+    void deleteCustomerById() {
+        //Given
+        int id = 10;
 
-        // customer that is extracted
-        Customer captauredCustomer = customerArgumentCaptor.getValue();
+        when(customerDao.deleteCustomerById(id)).thenReturn(1);
 
-        //to make sure that the customer that is created in CustomerService and sent to our DAO is the customer that will be sent with all it's value (Changes)
-        // we compare the values against what was sent
-        assertThat(captauredCustomer.getName()).isEqualTo(updateRequest.name());
-        assertThat(captauredCustomer.getEmail()).isEqualTo(customer.getEmail());
-        assertThat(captauredCustomer.getAge()).isEqualTo(customer.getAge());
+        //When
+        underTest.deleteCustomerById(id);
+
+        //Then
+        // we just want to verify that the method from the DAO is invoked , without checking whether the customer exists first
+        verify(customerDao).deleteCustomerById(id);
+        verify(customerDao , never()).isPersonExistWithId(id);
     }
 
     @Test
-    void canUpdateOnlyCustomerEmail() {
+    void willThrowWhenDeleteCustomerByIdNotExist() {
         //Given
         int id = 10;
-        Customer customer = new Customer(id , "George" , "george@gmail.com" , 22, Gender.MALE);
 
-        // tell the Mock customerDao what to do when calling selectCustomerById please return Optional customer whether it is empty or George as it doesn't know to how reply
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        // nothing was deleted
+        when(customerDao.deleteCustomerById(id)).thenReturn(0);
 
-        String newEmail = "daniel@gmail.com";
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.deleteCustomerById(id))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [%s] not found".formatted(id));
+    }
 
-        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(null , newEmail , null);
 
-        // tell the Mock customerDao what to do when calling isPersonExistWithEmail please return false as it doesn't know to how reply
-        when(customerDao.isPersonExistWithEmail(newEmail)).thenReturn(false);
+    @Test
+    void canUpdateCustomer() {
+        //Given
+        int id = 10;
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Daniel" , "daniel@gmail.com" , 20);
+
+        // tell the Mock customerDao what to do when calling updateCustomer please return UPDATED as it doesn't know to how reply
+        when(customerDao.updateCustomer(id , updateRequest)).thenReturn(CustomerUpdateStatus.UPDATED);
 
         //When
         underTest.updateCustomer(id , updateRequest);
 
         //Then
-        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
-
-        // we just want to verify that the method from the DAO is invoked , and we want to extract the value of the customer that is passed to perform assertions
-        verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        // the request goes to the DAO as it is , the DAO changes only the given values in one statement
+        verify(customerDao).updateCustomer(id , updateRequest);
+        // the customer isn't read and the email isn't checked before
+        verify(customerDao , never()).selectCustomerById(any());
+        verify(customerDao , never()).isPersonExistWithEmail(any());
+    }
 
-        // customer that is extracted
-        Customer captauredCustomer = customerArgumentCaptor.getValue();
+    @Test
+    void willThrowWhenUpdatingCustomerThatDoesNotExist() {
+        //Given
+        int id = 10;
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Daniel" , null , null);
+        when(customerDao.updateCustomer(id , updateRequest)).thenReturn(CustomerUpdateStatus.NOT_FOUND);
 
-        //to make sure that the customer that is created in CustomerService and sent to our DAO is the customer that will be sent with all it's value (Changes)
-        // we compare the values against what was sent
-        assertThat(captauredCustomer.getName()).isEqualTo(customer.getName());
-        assertThat(captauredCustomer.getEmail()).isEqualTo(newEmail);
-        assertThat(captauredCustomer.getAge()).isEqualTo(customer.getAge());
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(id , updateRequest))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [%s] not found".formatted(id));
     }
 
     @Test
-    void canUpdateOnlyCustomerAge() {
+    void willThrowWhenTryingToUpdateCustomerEmailWhenAlreadyTaken() {
         //Given
         int id = 10;
-        Customer customer = new Customer(id , "George" , "george@gmail.com" , 22, Gender.MALE);
-
-        // tell the Mock customerDao what to do when calling selectCustomerById please return Optional customer whether it is empty or George as it doesn't know to how reply
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(null , "daniel@gmail.com" , null);
 
-        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest( null , null , 40);
+        // customer_email_unique refused the new email
+        when(customerDao.updateCustomer(id , updateRequest)).thenThrow(new DuplicteResourceException("email already taken"));
 
         //When
-        underTest.updateCustomer(id , updateRequest);
-
         //Then
-        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
+        assertThatThrownBy(() -> underTest.updateCustomer(id , updateRequest))
+                .isInstanceOf(DuplicteResourceException.class)
+                .hasMessage("email already taken");
+    }
 
-        // we just want to verify that the method from the DAO is invoked , and we want to extract the value of the customer that is passed to perform assertions
-        verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+    @Test
+    void willThrowWhenCustomerHasNoChanges() {
+        //Given
+        int id = 10;
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("George" , "george@gmail.com" , 22);
 
-        // customer that is extracted
-        Customer captauredCustomer = customerArgumentCaptor.getValue();
+        // the customer already has all of these values
+        when(customerDao.updateCustomer(id , updateRequest)).thenReturn(CustomerUpdateStatus.UNCHANGED);
 
-        //to make sure that the customer that is created in CustomerService and sent to our DAO is the customer that will be sent with all it's value (Changes)
-        // we compare the values against what was sent
-        assertThat(captauredCustomer.getName()).isEqualTo(customer.getName());
-        assertThat(captauredCustomer.getEmail()).isEqualTo(customer.getEmail());
-        assertThat(captauredCustomer.getAge()).isEqualTo(updateRequest.age());
+        //When
+        //Then
+        assertThatThrownBy(() ->  underTest.updateCustomer(id , updateRequest))
+                     .isInstanceOf(RequestValidationException.class)
+                     .hasMessage("no data changes , as it remains the same");
     }
 
     @Test
-    void willThrowWhenTryingToUpdateCustomerEmailWhenAlreadyTaken() {
+    void willThrowWhenCustomerChangedSinceVersion() {
         //Given
         int id = 10;
-        Customer customer = new Customer(id , "George" , "george@gmail.com" , 22, Gender.MALE);
-
-        // tell the Mock customerDao what to do when calling selectCustomerById please return Optional customer whether it is empty or George as it doesn't know to how reply
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Daniel" , null , null , 3L);
 
-        String newEmail = "daniel@gmail.com";
+        // someone else updated the customer after the client read version 3
+        when(customerDao.updateCustomer(id , updateRequest)).thenReturn(CustomerUpdateStatus.STALE);
 
-        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(null , newEmail , null);
+        //When
+        //Then
+        assertThatThrownBy(() ->  underTest.updateCustomer(id , updateRequest))
+                .isInstanceOf(StaleResourceException.class)
+                .hasMessage("customer with id [10] was changed since version [3]");
+    }
 
-        // tell the Mock customerDao what to do when calling isPersonExistWithEmail please return false as it doesn't know to how reply
-        when(customerDao.isPersonExistWithEmail(newEmail)).thenReturn(true);
+    @Test
+    void canUpdateCustomerIfMatch() {
+        //Given
+        int id = 10;
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Daniel" , null , null);
+        CustomerUpdateRequest conditional = new CustomerUpdateRequest("Daniel" , null , null , 3L);
+        when(customerDao.updateCustomer(id , conditional)).thenReturn(CustomerUpdateStatus.UPDATED);
 
         //When
-        assertThatThrownBy(() -> underTest.updateCustomer(id , updateRequest))
-                .isInstanceOf(DuplicteResourceException.class)
-                .hasMessage("email already taken");
+        underTest.updateCustomer(id , updateRequest , 3L);
 
         //Then
-        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
-
-        // we just want to verify that we will never update customer and update customer is never invoked as the exception was thrown
-        verify(customerDao , never() ).updateCustomer(any());
+        // the version of If-Match is checked by the update itself
+        verify(customerDao).updateCustomer(id , conditional);
     }
 
     @Test
-    void willThrowWhenCustomerHasNoChanges() {
+    void willThrowWhenCustomerDoesNotHaveIfMatchVersion() {
         //Given
         int id = 10;
-        Customer customer = new Customer(id , "George" , "george@gmail.com" , 22, Gender.MALE);
+        CustomerUpdateRequest conditional = new CustomerUpdateRequest("Daniel" , null , null , 3L);
+        when(customerDao.updateCustomer(id , conditional)).thenReturn(CustomerUpdateStatus.STALE);
 
-        // tell the Mock customerDao what to do when calling selectCustomerById please return Optional customer whether it is empty or George as it doesn't know to how reply
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        //When
+        //Then
+        // 412 (precondition failed) instead of 409 , it was the header that didn't match
+        assertThatThrownBy(() ->  underTest.updateCustomer(id , new CustomerUpdateRequest("Daniel" , null , null) , 3L))
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessage("customer with id [10] doesn't have version [3]");
+    }
 
-        String newEmail = "daniel@gmail.com";
+    @Test
+    void willThrowWhenVersionOfBodyIsNotIfMatch() {
+        //When
+        //Then
+        assertThatThrownBy(() ->  underTest.updateCustomer(10 , new CustomerUpdateRequest("Daniel" , null , null , 2L) , 3L))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("version [2] doesn't match If-Match [3]");
+        verifyNoInteractions(customerDao);
+    }
 
-        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(customer.getName() , customer.getEmail() , customer.getAge());
+    @Test
+    void deleteCustomerByIdIfMatch() {
+        //Given
+        when(customerDao.deleteCustomerByIdAndVersion(10 , 3L)).thenReturn(1);
 
         //When
-        assertThatThrownBy(() ->  underTest.updateCustomer(id , updateRequest))
-                     .isInstanceOf(RequestValidationException.class)
-                     .hasMessage("no data changes , as it remains the same");
+        underTest.deleteCustomerById(10 , 3L);
+
+        //Then
+        verify(customerDao).deleteCustomerByIdAndVersion(10 , 3L);
+        verify(customerDao , never()).selectCustomerVersion(any());
+    }
+
+    @Test
+    void willThrowWhenDeletingCustomerThatDoesNotHaveIfMatchVersion() {
+        //Given
+        when(customerDao.deleteCustomerByIdAndVersion(10 , 3L)).thenReturn(0);
+        when(customerDao.selectCustomerVersion(10)).thenReturn(Optional.of(4L));
 
+        //When
         //Then
-        // we just want to verify that we will never update customer and update customer is never invoked as the exception was thrown
-        verify(customerDao , never() ).updateCustomer(any());
+        assertThatThrownBy(() -> underTest.deleteCustomerById(10 , 3L))
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessage("customer with id [10] doesn't have version [3]");
+    }
+
+    @Test
+    void willThrowWhenDeletingCustomerIfMatchThatDoesNotExist() {
+        //Given
+        when(customerDao.deleteCustomerByIdAndVersion(10 , 3L)).thenReturn(0);
+        when(customerDao.selectCustomerVersion(10)).thenReturn(Optional.empty());
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.deleteCustomerById(10 , 3L))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [10] not found");
     }
 
 
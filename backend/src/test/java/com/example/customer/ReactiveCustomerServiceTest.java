@@ -0,0 +1,222 @@
+package com.example.customer;
+
+import com.example.exception.DuplicteResourceException;
+import com.example.exception.PreconditionFailedException;
+import com.example.exception.RequestValidationException;
+import com.example.exception.ResourceNotFoundException;
+import com.example.exception.StaleResourceException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+// the answers of CustomerService , through the reactive DAO , the results are blocked on to check them
+@ExtendWith(MockitoExtension.class)
+class ReactiveCustomerServiceTest {
+
+    private ReactiveCustomerService underTest;
+
+    @Mock
+    private ReactiveCustomerDao customerDao;
+    @Mock
+    private CustomerService customerService;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ReactiveCustomerService(customerDao, customerService);
+    }
+
+    @Test
+    void canGetFirstCustomersPage() {
+        //Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE);
+        Customer jamila = new Customer(2, "Jamila", "jamila@gmail.com", 19, Gender.FEMALE);
+        Customer george = new Customer(3, "George", "george@gmail.com", 22, Gender.MALE);
+
+        // one more than the page size tells there is a next page
+        when(customerDao.selectCustomersPage(CustomerSort.ID, null, 3)).thenReturn(Flux.just(alex, jamila, george));
+
+        //When
+        CustomerPage actual = underTest.getCustomersPage(null, null, 2).block();
+
+        //Then
+        assertThat(actual.customers()).containsExactly(alex, jamila);
+        assertThat(CustomerCursor.decode(actual.nextCursor())).isEqualTo(new CustomerCursor(CustomerSort.ID, 2, ""));
+    }
+
+    @Test
+    void willThrowWhenSearchAgesAreReversed() {
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.searchCustomers(new CustomerSearch(null, null, 30, 20, null), null, null, null))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("minAge [30] is greater than maxAge [20]");
+        verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void willThrowWhenCustomerNotFound() {
+        //Given
+        when(customerDao.selectCustomerById(7)).thenReturn(Mono.empty());
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.getCustomer(7).block())
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [7] not found");
+    }
+
+    @Test
+    void addCustomerReturnsIdAndLikelyDuplicates() {
+        //Given
+        Customer georg = new Customer(5, "Georg Magdi", "georg@gmail.com", 23, Gender.MALE);
+        when(customerDao.insertCustomer(any())).thenAnswer(invocation -> {
+            Customer customer = invocation.getArgument(0);
+            customer.setId(7);
+            return Mono.just(customer);
+        });
+        Customer registered = new Customer(7, "George Magdy", "george@gmail.com", 22, Gender.MALE);
+        // the registered customer finds itself , it isn't its own duplicate
+        when(customerDao.selectDuplicateCandidates("George Magdy", "george@gmail.com",
+                CustomerService.DUPLICATE_SIMILARITY, CustomerService.MAX_DUPLICATES + 1))
+                .thenReturn(Flux.just(registered, georg));
+
+        //When
+        CustomerRegistrationResponse actual = underTest.addCustomer(
+                new CustomerRegistrationRequest("George Magdy", "george@gmail.com", 22, Gender.MALE)).block();
+
+        //Then
+        assertThat(actual.id()).isEqualTo(7);
+        assertThat(actual.possibleDuplicates()).extracting(CustomerDuplicate::customer).containsExactly(georg);
+    }
+
+    @Test
+    void willThrowWhenEmailIsTakenWhileAddingCustomer() {
+        //Given
+        when(customerDao.insertCustomer(any())).thenReturn(Mono.error(new DuplicteResourceException("email already taken")));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.addCustomer(
+                new CustomerRegistrationRequest("George", "george@gmail.com", 22, Gender.MALE)).block())
+                .isInstanceOf(DuplicteResourceException.class)
+                .hasMessage("email already taken");
+        verify(customerDao, never()).selectDuplicateCandidates(any(), any(), anyDouble(), anyInt());
+    }
+
+    @Test
+    void addCustomersRegistersOnlyTheRowsThatCanBe() {
+        //Given
+        when(customerDao.selectExistingEmails(Set.of("alex@gmail.com", "jamila@gmail.com")))
+                .thenReturn(Mono.just(Set.of("alex@gmail.com")));
+        when(customerDao.insertCustomers(anyList())).thenAnswer(invocation -> {
+            List<Customer> customers = invocation.getArgument(0);
+            customers.forEach(customer -> customer.setId(10));
+            return Mono.empty();
+        });
+
+        //When
+        CustomerBatchRegistrationResponse actual = underTest.addCustomers(List.of(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 21, Gender.MALE),
+                new CustomerRegistrationRequest("Jamila", "jamila@gmail.com", 19, Gender.FEMALE),
+                new CustomerRegistrationRequest("Jamila", "jamila@gmail.com", 19, Gender.FEMALE))).block();
+
+        //Then
+        // the second jamila finds her email taken by the first one
+        assertThat(actual.created()).isEqualTo(1);
+        assertThat(actual.results()).extracting(CustomerRegistrationResult::status).containsExactly(
+                CustomerRegistrationStatus.EMAIL_TAKEN, CustomerRegistrationStatus.CREATED, CustomerRegistrationStatus.EMAIL_TAKEN);
+        assertThat(actual.results().get(1).id()).isEqualTo(10);
+        ArgumentCaptor<List<Customer>> customersArgumentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(customerDao).insertCustomers(customersArgumentCaptor.capture());
+        assertThat(customersArgumentCaptor.getValue()).extracting(Customer::getName).containsExactly("Jamila");
+    }
+
+    @Test
+    void willThrowWhenDeletedCustomerNotFound() {
+        //Given
+        when(customerDao.deleteCustomerById(7)).thenReturn(Mono.just(0L));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.deleteCustomerById(7).block())
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [7] not found");
+    }
+
+    @Test
+    void willThrowWhenDeletedCustomerHasAnotherVersion() {
+        //Given
+        when(customerDao.deleteCustomerByIdAndVersion(7, 1L)).thenReturn(Mono.just(0L));
+        when(customerDao.selectCustomerVersion(7)).thenReturn(Mono.just(2L));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.deleteCustomerById(7, 1L).block())
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessage("customer with id [7] doesn't have version [1]");
+    }
+
+    @Test
+    void canDeleteCustomerOfVersion() {
+        //Given
+        when(customerDao.deleteCustomerByIdAndVersion(7, 1L)).thenReturn(Mono.just(1L));
+
+        //When
+        underTest.deleteCustomerById(7, 1L).block();
+
+        //Then
+        // it existed , nothing else is read
+        verify(customerDao, never()).selectCustomerVersion(any());
+    }
+
+    @Test
+    void willThrowWhenUpdatedCustomerIsStale() {
+        //Given
+        CustomerUpdateRequest update = new CustomerUpdateRequest("George", null, null, 1L);
+        when(customerDao.updateCustomer(7, update)).thenReturn(Mono.just(CustomerUpdateStatus.STALE));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(7, update).block())
+                .isInstanceOf(StaleResourceException.class)
+                .hasMessage("customer with id [7] was changed since version [1]");
+    }
+
+    @Test
+    void willThrowWhenUpdateChangesNothing() {
+        //Given
+        CustomerUpdateRequest update = new CustomerUpdateRequest("George", null, null);
+        when(customerDao.updateCustomer(7, update)).thenReturn(Mono.just(CustomerUpdateStatus.UNCHANGED));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(7, update).block())
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("no data changes , as it remains the same");
+    }
+
+    @Test
+    void updateWithIfMatchIsConditionalOnItsVersion() {
+        //Given
+        CustomerUpdateRequest conditional = new CustomerUpdateRequest("George", null, null, 3L);
+        when(customerDao.updateCustomer(7, conditional)).thenReturn(Mono.just(CustomerUpdateStatus.STALE));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(7, new CustomerUpdateRequest("George", null, null), 3L).block())
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessage("customer with id [7] doesn't have version [3]");
+    }
+}
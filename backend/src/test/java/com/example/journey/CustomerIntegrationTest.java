@@ -2,24 +2,53 @@ package com.example.journey;
 
 
 import com.example.customer.Customer;
+import com.example.customer.CustomerBatchRegistrationResponse;
+import com.example.customer.CustomerDuplicate;
+import com.example.customer.CustomerImportResponse;
+import com.example.customer.CustomerPage;
 import com.example.customer.CustomerRegistrationRequest;
+import com.example.customer.CustomerRegistrationResponse;
+import com.example.customer.CustomerRegistrationResult;
+import com.example.customer.CustomerRegistrationStatus;
+import com.example.customer.CustomerStats;
 import com.example.customer.CustomerUpdateRequest;
 import com.example.customer.Gender;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import com.github.javafaker.Faker;
 import com.github.javafaker.Name;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 
 
@@ -27,11 +56,15 @@ import static org.springframework.boot.test.context.SpringBootTest.WebEnvironmen
 
 @SpringBootTest(webEnvironment = RANDOM_PORT) // This annotation is needed for integration test , we want to make sure that this is as close to production as we can
                                              // (Deploy Backend API to real users)
+@AutoConfigureObservability(tracing = false) // spring boot tests don't export metrics otherwise , /actuator/prometheus would be 404
 public class CustomerIntegrationTest {
 
     @Autowired
     private WebTestClient webTestClient; /// this will be our postman (Web Client) to send Http requests to our server , so no need to use postman anymore
 
+    @LocalServerPort
+    private int port;
+
 
     private static final Random RANDOM = new Random();
 
@@ -83,6 +116,7 @@ public class CustomerIntegrationTest {
 
         // make sure that customer is present
         Customer expectedCustomer = new Customer(name , email , age, gender);
+        expectedCustomer.setVersion(0L); // not updated yet
 
         assertThat(allCustomers).usingRecursiveFieldByFieldElementComparatorIgnoringFields("id")
                 .contains(expectedCustomer);
@@ -253,6 +287,687 @@ public class CustomerIntegrationTest {
         );
 
         assertThat(updatedCustomer).isEqualTo(expectedCustomer);
+        assertThat(updatedCustomer.getVersion()).isEqualTo(1);
+
+        // an update made for the version before is refused , the customer was changed since
+        CustomerUpdateRequest staleRequest = new CustomerUpdateRequest(
+                null, null, age + 1, 0L
+        );
+
+        webTestClient.put()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(staleRequest), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    void canExportCustomers() {
+        // create registration request
+        Faker faker = new Faker();
+        Name fakerName = faker.name();
+
+        String name = fakerName.fullName();
+        String email = fakerName.lastName() + "-" + UUID.randomUUID() + "@george.com";
+        int age = RANDOM.nextInt(1, 100);
+
+        Gender gender = age % 2 == 0 ? Gender.MALE : Gender.FEMALE;
+
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                name, email, age, gender
+        );
+
+        // send a post request
+        webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON) // that was the server accepts
+                .contentType(MediaType.APPLICATION_JSON) // that was the client sends
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // export all customers , one JSON object per line
+        List<Customer> exportedCustomers = webTestClient.get()
+                .uri(CUSTOMER_URI + "/export")
+                .accept(MediaType.APPLICATION_NDJSON) // that was the server accepts
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Customer.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        // make sure that customer is exported
+        Customer expectedCustomer = new Customer(name , email , age, gender);
+        expectedCustomer.setVersion(0L); // not updated yet
+
+        assertThat(exportedCustomers).usingRecursiveFieldByFieldElementComparatorIgnoringFields("id")
+                .contains(expectedCustomer);
+    }
+
+    @Test
+    void canRegisterCustomersInBatch() {
+        // create registration requests , the last one repeats the email of the first
+        Faker faker = new Faker();
+        List<CustomerRegistrationRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Name fakerName = faker.name();
+            String email = fakerName.lastName() + "-" + UUID.randomUUID() + "@george.com";
+            int age = RANDOM.nextInt(1, 100);
+            Gender gender = age % 2 == 0 ? Gender.MALE : Gender.FEMALE;
+            requests.add(new CustomerRegistrationRequest(fakerName.fullName(), email, age, gender));
+        }
+        requests.add(new CustomerRegistrationRequest("Duplicate", requests.get(0).email(), 30, Gender.MALE));
+
+        // send one post request for all of them
+        CustomerBatchRegistrationResponse response = webTestClient.post()
+                .uri(CUSTOMER_URI + "/batch")
+                .accept(MediaType.APPLICATION_JSON) // that was the server accepts
+                .contentType(MediaType.APPLICATION_JSON) // that was the client sends
+                .body(Mono.just(requests), new ParameterizedTypeReference<List<CustomerRegistrationRequest>>() {
+                })
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerBatchRegistrationResponse.class)
+                .returnResult()
+                .getResponseBody();
+
+        // the first three were created and the duplicate was rejected
+        assert response != null;
+        assertThat(response.created()).isEqualTo(3);
+        assertThat(response.rejected()).isEqualTo(1);
+        assertThat(response.results()).extracting(CustomerRegistrationResult::status).containsExactly(
+                CustomerRegistrationStatus.CREATED,
+                CustomerRegistrationStatus.CREATED,
+                CustomerRegistrationStatus.CREATED,
+                CustomerRegistrationStatus.EMAIL_TAKEN);
+
+        // get every created customer by the id from the result
+        for (int i = 0; i < 3; i++) {
+            CustomerRegistrationRequest request = requests.get(i);
+            Customer expectedCustomer = new Customer(
+                    response.results().get(i).id(), request.name(), request.email(), request.age(), request.gender());
+
+            webTestClient.get()
+                    .uri(CUSTOMER_URI + "/{id}", expectedCustomer.getId())
+                    .accept(MediaType.APPLICATION_JSON) // that was the server accepts
+                    .exchange()
+                    .expectStatus()
+                    .isOk()
+                    .expectBody(Customer.class)
+                    .isEqualTo(expectedCustomer);
+        }
+    }
+
+    @Test
+    void canImportCustomersFromCsv() {
+        // a csv with a row that isn't valid and one that repeats the email of the first
+        String domain = UUID.randomUUID() + ".george.com";
+        String csv = """
+                name,email,age,gender
+                "Magdy, George",george@%1$s,22,MALE
+                Alex,alex@%1$s,,MALE
+                Jamila,jamila@%1$s,19,female
+                Other George,george@%1$s,30,MALE
+                """.formatted(domain);
+
+        // post it as it is
+        CustomerImportResponse response = webTestClient.post()
+                .uri(CUSTOMER_URI + "/import")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .bodyValue(csv)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerImportResponse.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(response).isNotNull();
+        assertThat(response.rows()).isEqualTo(4);
+        assertThat(response.created()).isEqualTo(2);
+        assertThat(response.rejected()).isEqualTo(2);
+        assertThat(response.rejects()).extracting(CustomerRegistrationResult::index, CustomerRegistrationResult::status)
+                .containsExactly(
+                        tuple(3, CustomerRegistrationStatus.INVALID),
+                        tuple(5, CustomerRegistrationStatus.EMAIL_TAKEN));
+
+        // the imported customers can be searched for
+        CustomerPage page = webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(CUSTOMER_URI + "/search")
+                        .queryParam("emailDomain", domain)
+                        .queryParam("sort", "age")
+                        .build())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerPage.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(page).isNotNull();
+        assertThat(page.customers()).extracting(Customer::getName, Customer::getGender).containsExactly(
+                tuple("Jamila", Gender.FEMALE),
+                tuple("Magdy, George", Gender.MALE));
+
+        // a csv without the columns is refused
+        webTestClient.post()
+                .uri(CUSTOMER_URI + "/import")
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .bodyValue("name,email\nGeorge,george@" + domain)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void concurrentRegistrationsOfSameEmailHaveOneWinner() throws Exception {
+        // create registration requests that all use the same email
+        Faker faker = new Faker();
+        String email = faker.name().lastName() + "-" + UUID.randomUUID() + "@george.com";
+        int registrations = 8;
+
+        // send them all at once , customer_email_unique decides which one wins
+        ExecutorService executor = Executors.newFixedThreadPool(registrations);
+        List<HttpStatusCode> statuses = new ArrayList<>();
+        try {
+            List<Callable<HttpStatusCode>> calls = new ArrayList<>();
+            for (int i = 0; i < registrations; i++) {
+                CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                        faker.name().fullName(), email, RANDOM.nextInt(1, 100), Gender.FEMALE
+                );
+                calls.add(() -> webTestClient.post()
+                        .uri(CUSTOMER_URI)
+                        .accept(MediaType.APPLICATION_JSON) // that was the server accepts
+                        .contentType(MediaType.APPLICATION_JSON) // that was the client sends
+                        .body(Mono.just(request), CustomerRegistrationRequest.class)
+                        .exchange()
+                        .returnResult(Void.class)
+                        .getStatus());
+            }
+            for (Future<HttpStatusCode> future : executor.invokeAll(calls)) {
+                statuses.add(future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // exactly one was registered and every other one got 409 (conflict) instead of 500
+        assertThat(statuses).filteredOn(status -> status.equals(HttpStatus.OK)).hasSize(1);
+        assertThat(statuses).filteredOn(status -> status.equals(HttpStatus.CONFLICT)).hasSize(registrations - 1);
+    }
+
+    @Test
+    void canSearchCustomers() {
+        // two customers of a domain nobody else has , only one of them female
+        Faker faker = new Faker();
+        String domain = UUID.randomUUID() + ".com";
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest(faker.name().fullName(), "first@" + domain, 30, Gender.FEMALE),
+                new CustomerRegistrationRequest(faker.name().fullName(), "second@" + domain, 31, Gender.MALE));
+
+        webTestClient.post()
+                .uri(CUSTOMER_URI + "/batch")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(requests)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // search by the domain and the gender
+        CustomerPage page = webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(CUSTOMER_URI + "/search")
+                        .queryParam("emailDomain", domain)
+                        .queryParam("gender", "FEMALE")
+                        .queryParam("sort", "age")
+                        .build())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerPage.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(page).isNotNull();
+        assertThat(page.customers()).extracting(Customer::getEmail).containsExactly("first@" + domain);
+        assertThat(page.nextCursor()).isNull();
+    }
+
+    @Test
+    void canFindPossibleDuplicates() {
+        // a name and an email nobody else has
+        String run = UUID.randomUUID().toString().substring(0, 8);
+        CustomerRegistrationRequest george = new CustomerRegistrationRequest(
+                "George " + run + " Magdy", "gmagdy." + run + "@gmail.com", 30, Gender.MALE);
+        Integer georgeId = webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(george)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerRegistrationResponse.class)
+                .returnResult()
+                .getResponseBody()
+                .id();
+
+        // the same person again , with a typo in the name and another domain
+        CustomerRegistrationRequest again = new CustomerRegistrationRequest(
+                "Georg " + run + " Magdi", "gmagdy." + run + "@yahoo.com", 30, Gender.MALE);
+        List<CustomerDuplicate> beforeRegistering = webTestClient.post()
+                .uri(CUSTOMER_URI + "/duplicates")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(again)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(CustomerDuplicate.class)
+                .returnResult()
+                .getResponseBody();
+
+        CustomerRegistrationResponse registered = webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(again)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerRegistrationResponse.class)
+                .returnResult()
+                .getResponseBody();
+
+        // it is registered anyway , the duplicate is only pointed out
+        assertThat(beforeRegistering).extracting(d -> d.customer().getId()).first().isEqualTo(georgeId);
+        assertThat(beforeRegistering.get(0).emailSimilarity()).isEqualTo(1.0);
+        assertThat(registered.id()).isNotEqualTo(georgeId);
+        assertThat(registered.possibleDuplicates()).extracting(d -> d.customer().getId()).first().isEqualTo(georgeId);
     }
 
+    @Test
+    void conditionalRequestsUseETags() {
+        String email = "etag-" + UUID.randomUUID() + "@george.com";
+        Integer id = webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new CustomerRegistrationRequest("George", email, 22, Gender.MALE))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerRegistrationResponse.class)
+                .returnResult()
+                .getResponseBody()
+                .id();
+
+        // the ETag of a customer is its version
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"0\"");
+
+        // nothing changed , no body
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectBody()
+                .isEmpty();
+
+        // the list has its own version , a change of any customer changes it
+        String listETag = webTestClient.mutate()
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+                .build()
+                .get()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(String.class)
+                .getResponseHeaders()
+                .getETag();
+        webTestClient.get()
+                .uri(CUSTOMER_URI)
+                .header(HttpHeaders.IF_NONE_MATCH, listETag)
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+
+        // If-Match of an old version is 412 (precondition failed) , of the current one the update goes through
+        webTestClient.put()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .header(HttpHeaders.IF_MATCH, "\"1\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new CustomerUpdateRequest("Georgy", null, null))
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        webTestClient.put()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new CustomerUpdateRequest("Georgy", null, null))
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"1\"");
+        webTestClient.get()
+                .uri(CUSTOMER_URI)
+                .header(HttpHeaders.IF_NONE_MATCH, listETag)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        webTestClient.delete()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        webTestClient.delete()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .header(HttpHeaders.IF_MATCH, "\"1\"")
+                .exchange()
+                .expectStatus()
+                .isOk();
+    }
+
+    @Test
+    void eTagsAreOfTheRepresentationAskedFor() {
+        String email = "etag-cbor-" + UUID.randomUUID() + "@george.com";
+        Integer id = webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new CustomerRegistrationRequest("George", email, 22, Gender.MALE))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerRegistrationResponse.class)
+                .returnResult()
+                .getResponseBody()
+                .id();
+
+        // the ETag of the json body , caches are told the body depends on Accept
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"0\"")
+                .expectHeader()
+                .values(HttpHeaders.VARY, vary -> assertThat(vary).contains(HttpHeaders.ACCEPT));
+
+        // the json ETag doesn't match the cbor body of the same version , the cbor body is sent with its own ETag
+        byte[] cbor = webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .accept(MediaType.APPLICATION_CBOR)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentType(MediaType.APPLICATION_CBOR)
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"0-cbor\"")
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+        assertThat(cbor).isNotEmpty();
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0-cbor\"")
+                .accept(MediaType.APPLICATION_CBOR)
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+
+        // the list too
+        String listETag = webTestClient.mutate()
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+                .build()
+                .get()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(String.class)
+                .getResponseHeaders()
+                .getETag();
+        webTestClient.mutate()
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+                .build()
+                .get()
+                .uri(CUSTOMER_URI)
+                .header(HttpHeaders.IF_NONE_MATCH, listETag)
+                .accept(MediaType.APPLICATION_CBOR)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // If-Match takes the ETag of any representation , they carry the same version
+        webTestClient.delete()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .header(HttpHeaders.IF_MATCH, "\"0-cbor\"")
+                .exchange()
+                .expectStatus()
+                .isOk();
+    }
+
+    @Test
+    void canReadCustomersGzippedOrInBinaryEncodings() throws IOException, InterruptedException {
+        // a page of 50 customers is about 5KB of json , more than the 2KB that are worth compressing
+        String domain = "encodings-" + UUID.randomUUID() + ".com";
+        List<CustomerRegistrationRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            requests.add(new CustomerRegistrationRequest("Customer " + i, "customer" + i + "@" + domain, 20 + i, Gender.MALE));
+        }
+        webTestClient.post()
+                .uri(CUSTOMER_URI + "/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(requests)
+                .exchange()
+                .expectStatus()
+                .isOk();
+        String pageUri = CUSTOMER_URI + "/search?emailDomain=" + domain + "&size=50";
+
+        // without Accept the customers are json , like before
+        CustomerPage json = webTestClient.get()
+                .uri(pageUri)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentType(MediaType.APPLICATION_JSON)
+                .expectBody(CustomerPage.class)
+                .returnResult()
+                .getResponseBody();
+        assertThat(json).isNotNull();
+        assertThat(json.customers()).hasSize(50);
+
+        // the same json gzipped , for the clients that accept it
+        // (read with the http client of the jdk , the one of WebTestClient unzips it and drops Content-Encoding)
+        HttpResponse<byte[]> gzipped = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + pageUri))
+                        .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                        .build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertThat(gzipped.statusCode()).isEqualTo(200);
+        assertThat(gzipped.headers().firstValue(HttpHeaders.CONTENT_ENCODING)).hasValue("gzip");
+        try (GZIPInputStream body = new GZIPInputStream(new ByteArrayInputStream(gzipped.body()))) {
+            assertThat(new ObjectMapper().readValue(body, CustomerPage.class)).isEqualTo(json);
+        }
+
+        // cbor and smile , decoded they are the same page
+        byte[] cbor = webTestClient.get()
+                .uri(pageUri)
+                .accept(MediaType.APPLICATION_CBOR)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentType(MediaType.APPLICATION_CBOR)
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+        assertThat(new CBORMapper().readValue(cbor, CustomerPage.class)).isEqualTo(json);
+
+        byte[] smile = webTestClient.get()
+                .uri(pageUri)
+                .accept(MediaType.valueOf("application/x-jackson-smile"))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+        assertThat(new SmileMapper().readValue(smile, CustomerPage.class)).isEqualTo(json);
+
+        // one customer is too small to be compressed
+        HttpResponse<byte[]> customer = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + CUSTOMER_URI + "/" + json.customers().get(0).getId()))
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                        .build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertThat(customer.statusCode()).isEqualTo(200);
+        assertThat(customer.headers().firstValue(HttpHeaders.CONTENT_ENCODING)).isEmpty();
+    }
+
+    @Test
+    void canReadCustomerStats() {
+        CustomerStats before = webTestClient.get()
+                .uri(CUSTOMER_URI + "/stats")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerStats.class)
+                .returnResult()
+                .getResponseBody();
+
+        webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new CustomerRegistrationRequest("George", "stats-" + UUID.randomUUID() + "@george.com", 27, Gender.FEMALE))
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        CustomerStats after = webTestClient.get()
+                .uri(CUSTOMER_URI + "/stats")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerStats.class)
+                .returnResult()
+                .getResponseBody();
+
+        // the new customer is counted right away , in its gender and in the range of 20 to 29
+        assertThat(before).isNotNull();
+        assertThat(after).isNotNull();
+        assertThat(after.customers()).isEqualTo(before.customers() + 1);
+        assertThat(after.genders().get(Gender.FEMALE)).isEqualTo(before.genders().get(Gender.FEMALE) + 1);
+        assertThat(after.ages()).contains(new CustomerStats.AgeRange(20, 29, before.ages().stream()
+                .filter(range -> range.from() == 20)
+                .mapToLong(CustomerStats.AgeRange::customers)
+                .sum() + 1));
+    }
+
+    @Test
+    void metricsOfEveryLayerArePublishedForPrometheus() {
+        // a customer that doesn't exist , so there is an error to count
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", -1)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+
+        // scrape the metrics like prometheus does , the histograms make it more than the 256KB the client buffers by default
+        String metrics = webTestClient.mutate()
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+                .build()
+                .get()
+                .uri("/actuator/prometheus")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+
+        // the request , the controller , the service and both DAOs of the cache miss , with their percentiles
+        assertThat(metrics)
+                .contains("http_server_requests_seconds_bucket{")
+                .contains("customer_controller_seconds{method=\"getCustomer\",quantile=\"0.99\"")
+                .contains("customer_service_seconds_bucket{method=\"getCustomer\"")
+                .contains("customer_dao_seconds_count{dao=\"cached\",method=\"selectCustomerById\"")
+                .contains("customer_dao_seconds_count{dao=\"jpa\",method=\"selectCustomerById\"")
+                .contains("customer_service_errors_total{exception=\"ResourceNotFoundException\",method=\"getCustomer\"");
+    }
+
+    @Test
+    void pingTellsHowTheNodeIsDoing() {
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", -1)
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+
+        // the pings of the load balancer are counted but not timed , the customer request is both
+        webTestClient.get()
+                .uri("/ping?db=true")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.result").value(result -> assertThat((String) result).startsWith("Pong: "))
+                .jsonPath("$.requests['GET /api/v1/customers/{customerId}']").isNumber()
+                .jsonPath("$.latency.windowSeconds").isEqualTo(60)
+                .jsonPath("$.latency.requests").value(requests -> assertThat((Integer) requests).isPositive())
+                .jsonPath("$.database.up").isEqualTo(true);
+
+        // without ?db=true the database isn't asked
+        webTestClient.get()
+                .uri("/ping")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.requests['GET /ping']").isNumber()
+                .jsonPath("$.database").doesNotExist();
+    }
 }
@@ -0,0 +1,202 @@
+package com.example.journey;
+
+import com.example.customer.Customer;
+import com.example.customer.CustomerPage;
+import com.example.customer.CustomerRegistrationRequest;
+import com.example.customer.CustomerRegistrationResponse;
+import com.example.customer.CustomerUpdateRequest;
+import com.example.customer.Gender;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+// the journey of CustomerIntegrationTest against the reactive profile (webflux + r2dbc) , the same requests get the same
+// statuses , bodies and ETags , the api is the same whichever stack serves it
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = "spring.main.web-application-type=reactive")
+@ActiveProfiles("reactive")
+public class ReactiveCustomerIntegrationTest {
+
+    private static final String CUSTOMER_URI = "/api/v1/customers";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    void canRegisterUpdateAndDeleteCustomer() {
+        String email = "reactive-" + UUID.randomUUID() + "@george.com";
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest("George", email, 22, Gender.MALE);
+
+        Integer id = webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerRegistrationResponse.class)
+                .returnResult()
+                .getResponseBody()
+                .id();
+
+        // the same email again is 409 (conflict)
+        webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.CONFLICT);
+
+        Customer expectedCustomer = new Customer(id, "George", email, 22, Gender.MALE);
+        expectedCustomer.setVersion(0L);
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"0\"")
+                .expectBody(Customer.class)
+                .isEqualTo(expectedCustomer);
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectBody()
+                .isEmpty();
+
+        // an old version is 412 (precondition failed) , the same data is 400 (bad request)
+        webTestClient.put()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .header(HttpHeaders.IF_MATCH, "\"1\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new CustomerUpdateRequest("Georgy", null, null))
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        webTestClient.put()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new CustomerUpdateRequest("George", null, null))
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+        webTestClient.put()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new CustomerUpdateRequest("Georgy", null, null))
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        webTestClient.delete()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        webTestClient.delete()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .header(HttpHeaders.IF_MATCH, "\"1\"")
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+
+    @Test
+    void canReadPagesAndTheListWithItsETag() {
+        String name = "Reactive " + UUID.randomUUID();
+        for (int i = 0; i < 3; i++) {
+            webTestClient.post()
+                    .uri(CUSTOMER_URI)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(new CustomerRegistrationRequest(name, i + "-" + UUID.randomUUID() + "@george.com", 30 + i, Gender.FEMALE))
+                    .exchange()
+                    .expectStatus()
+                    .isOk();
+        }
+
+        CustomerPage firstPage = webTestClient.get()
+                .uri(uri -> uri.path(CUSTOMER_URI + "/search").queryParam("name", name).queryParam("size", 2).build())
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerPage.class)
+                .returnResult()
+                .getResponseBody();
+        assertThat(firstPage.customers()).hasSize(2);
+        CustomerPage nextPage = webTestClient.get()
+                .uri(uri -> uri.path(CUSTOMER_URI + "/search")
+                        .queryParam("name", name)
+                        .queryParam("cursor", firstPage.nextCursor())
+                        .build())
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerPage.class)
+                .returnResult()
+                .getResponseBody();
+        assertThat(nextPage.customers()).extracting(Customer::getAge).containsExactly(32);
+        assertThat(nextPage.nextCursor()).isNull();
+
+        String listETag = webTestClient.mutate()
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+                .build()
+                .get()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(String.class)
+                .getResponseHeaders()
+                .getETag();
+        assertThat(listETag).startsWith("W/");
+        webTestClient.get()
+                .uri(CUSTOMER_URI)
+                .header(HttpHeaders.IF_NONE_MATCH, listETag)
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+    }
+
+    @Test
+    void pingCountsTheRequestsAndReachesTheDatabase() {
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/stats")
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // the database is pinged off the event loop , the requests are counted by ReactiveRequestStatsFilter
+        webTestClient.get()
+                .uri("/ping?db=true")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.database.up").isEqualTo(true)
+                .jsonPath("$.requests['GET /api/v1/customers/stats']").isNumber();
+    }
+}
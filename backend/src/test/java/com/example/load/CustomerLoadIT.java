@@ -0,0 +1,276 @@
+package com.example.load;
+
+import com.example.AbstractTestContainersUnitTest;
+import com.example.customer.CustomerBatchRegistrationResponse;
+import com.example.customer.CustomerRegistrationRequest;
+import com.example.customer.CustomerRegistrationResponse;
+import com.example.customer.CustomerRegistrationResult;
+import com.example.customer.CustomerUpdateRequest;
+import com.example.customer.Gender;
+import com.example.load.LoadScenario.Operation;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+// the latency gates of the build , every scenario of LoadScenario runs against the app on the database of test containers
+// and fails (failsafe) when its throughput fell or its p50 , p99 or p999 grew by more than the threshold compared with
+// the baseline of src/test/resources/load/baseline.json , a scenario without a baseline fails too
+// only with -Pload-gates , the verify of CI and CD doesn't run it
+// mvn -Pload-gates verify                                     the gates with the defaults below
+// mvn -Pload-gates verify -Dload.clients=200 -Dload.duration=30s -Dload.scenarios=MIXED -Dload.threshold=0.1
+// mvn -Pload-gates verify -Dit.test=CustomerLoadIT -Dload.baseline.update=true     records the baseline instead of
+//                                                             comparing with it , on the runner the gates run on (the
+//                                                             numbers depend on it) , the "Load - Record Backend
+//                                                             Baseline" workflow does it on CI
+// shared runners are noisy , every scenario runs load.runs times and its medians are compared , a latency only regressed
+// when it also grew by more than LATENCY_FLOOR_MILLIS , the results of every run are written to target/load/load-gates.json
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = "spring.jpa.show-sql=false")
+class CustomerLoadIT extends AbstractTestContainersUnitTest {
+
+    private static final int CLIENTS = Integer.getInteger("load.clients", 50);
+    private static final Duration DURATION = Duration.parse("PT" + System.getProperty("load.duration", "10s"));
+    private static final Duration WARMUP = Duration.ofSeconds(3);
+    private static final int RUNS = Integer.getInteger("load.runs", 3);
+    private static final double THRESHOLD = Double.parseDouble(System.getProperty("load.threshold", "0.25"));
+    private static final boolean UPDATE_BASELINE = Boolean.getBoolean("load.baseline.update");
+    // the p99 and p999 of a few thousand requests on a shared runner move by a few milliseconds from one run to the next
+    // (a GC pause , a neighbour) , even as medians , below this a latency that grew by more than the threshold still passes
+    private static final double LATENCY_FLOOR_MILLIS = 5.0;
+    private static final List<String> GATED = List.of("requestsPerSecond", "p50Millis", "p99Millis", "p999Millis");
+    private static final int CUSTOMERS = 1000;
+
+    // failsafe passes project.basedir , so the baseline is the one of the module whatever directory maven runs in
+    private static final Path BASEDIR = Path.of(System.getProperty("project.basedir", ""));
+    private static final Path BASELINE = BASEDIR.resolve(Path.of("src", "test", "resources", "load", "baseline.json"));
+    private static final Path RESULTS_FILE = BASEDIR.resolve(Path.of("target", "load", "load-gates.json"));
+    private static final Map<String, Object> RESULTS = new LinkedHashMap<>();
+
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    @LocalServerPort
+    private int port;
+
+    static Stream<LoadScenario> scenarios() {
+        return Arrays.stream(System.getProperty("load.scenarios", "READ_HEAVY,WRITE_HEAVY,MIXED").split(","))
+                .map(String::trim)
+                .map(LoadScenario::valueOf);
+    }
+
+    @ParameterizedTest
+    @MethodSource("scenarios")
+    @Timeout(value = 15, unit = TimeUnit.MINUTES)
+    void scenarioStaysWithinItsBaseline(LoadScenario scenario) throws Exception {
+        String baseUri = "http://localhost:" + port + "/api/v1/customers";
+        List<Integer> ids = registerCustomers(baseUri);
+
+        load(scenario, baseUri, ids, WARMUP);
+        List<Map<String, Object>> runs = new ArrayList<>();
+        for (int run = 0; run < RUNS; run++) {
+            Map<Operation, LoadStats> stats = load(scenario, baseUri, ids, DURATION);
+            LoadStats total = new LoadStats();
+            Map<String, Object> operations = new LinkedHashMap<>();
+            stats.forEach((operation, operationStats) -> {
+                total.add(operationStats);
+                operations.put(operation.name(), operationStats.summary(DURATION));
+            });
+            // every request of a client is for its own customers or the ones registered above , none of them may fail
+            assertThat(total.otherErrors()).as("unexpected errors of %s", scenario).isZero();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("total", total.summary(DURATION));
+            result.put("operations", operations);
+            runs.add(result);
+        }
+        Map<String, Double> measured = medians(runs);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("clients", CLIENTS);
+        result.put("durationSeconds", DURATION.toSeconds());
+        result.put("medians", measured);
+        result.put("runs", runs);
+        RESULTS.put(scenario.name(), result);
+
+        if (UPDATE_BASELINE) {
+            updateBaseline(scenario, measured);
+        } else {
+            assertThat(regressions(scenario, measured)).as("regressions of %s against %s", scenario, BASELINE).isEmpty();
+        }
+    }
+
+    @AfterAll
+    static void writeResults() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        Files.createDirectories(RESULTS_FILE.getParent());
+        objectMapper.writeValue(RESULTS_FILE.toFile(), RESULTS);
+        System.out.println(objectMapper.writeValueAsString(RESULTS));
+    }
+
+    // the median of every gated number over the runs , one slow run doesn't fail the build
+    @SuppressWarnings("unchecked")
+    private static Map<String, Double> medians(List<Map<String, Object>> runs) {
+        Map<String, Double> medians = new LinkedHashMap<>();
+        for (String metric : GATED) {
+            double[] values = runs.stream()
+                    .mapToDouble(run -> ((Number) ((Map<String, Object>) run.get("total")).get(metric)).doubleValue())
+                    .sorted()
+                    .toArray();
+            medians.put(metric, values.length % 2 == 1
+                    ? values[values.length / 2]
+                    : (values[values.length / 2 - 1] + values[values.length / 2]) / 2);
+        }
+        return medians;
+    }
+
+    private List<String> regressions(LoadScenario scenario, Map<String, Double> measured) throws IOException {
+        Map<String, Double> baseline = readBaseline().get(scenario.name());
+        assertThat(baseline)
+                .as("no baseline for %s in %s , record it with -Dload.baseline.update=true", scenario, BASELINE)
+                .isNotNull();
+        List<String> regressions = new ArrayList<>();
+        for (String metric : GATED) {
+            Double expected = baseline.get(metric);
+            assertThat(expected).as("no %s in the baseline of %s", metric, scenario).isNotNull();
+            double actual = measured.get(metric);
+            boolean regressed = metric.equals("requestsPerSecond")
+                    ? actual < expected * (1 - THRESHOLD)
+                    : actual > expected * (1 + THRESHOLD) && actual - expected > LATENCY_FLOOR_MILLIS;
+            if (regressed) {
+                regressions.add("%s was %s , the baseline is %s".formatted(metric, actual, expected));
+            }
+        }
+        return regressions;
+    }
+
+    private Map<String, Map<String, Double>> readBaseline() throws IOException {
+        if (!Files.exists(BASELINE)) {
+            return Map.of();
+        }
+        return objectMapper.readValue(BASELINE.toFile(), new TypeReference<>() {
+        });
+    }
+
+    // only the scenario is replaced , the others keep their numbers
+    private void updateBaseline(LoadScenario scenario, Map<String, Double> measured) throws IOException {
+        Map<String, Map<String, Double>> baseline = new LinkedHashMap<>(readBaseline());
+        baseline.put(scenario.name(), measured);
+        Files.createDirectories(BASELINE.getParent());
+        objectMapper.writeValue(BASELINE.toFile(), baseline);
+    }
+
+    private List<Integer> registerCustomers(String baseUri) throws IOException, InterruptedException {
+        List<CustomerRegistrationRequest> requests = new ArrayList<>();
+        String run = UUID.randomUUID().toString();
+        for (int i = 0; i < CUSTOMERS; i++) {
+            requests.add(new CustomerRegistrationRequest(
+                    "Customer " + i, "customer-" + i + "-" + run + "@gmail.com", 20 + i % 60, Gender.FEMALE));
+        }
+        HttpResponse<String> response = httpClient.send(
+                HttpRequest.newBuilder(URI.create(baseUri + "/batch"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(requests)))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(200);
+        return objectMapper.readValue(response.body(), CustomerBatchRegistrationResponse.class)
+                .results().stream()
+                .map(CustomerRegistrationResult::id)
+                .toList();
+    }
+
+    // CLIENTS clients sending requests one after the other until the time is over
+    private Map<Operation, LoadStats> load(LoadScenario scenario, String baseUri, List<Integer> ids, Duration duration)
+            throws Exception {
+        long end = System.nanoTime() + duration.toNanos();
+        List<Future<Map<Operation, LoadStats>>> clients = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.add(executor.submit(() -> client(scenario, baseUri, ids, end)));
+            }
+        }
+        Map<Operation, LoadStats> total = new EnumMap<>(Operation.class);
+        for (Future<Map<Operation, LoadStats>> client : clients) {
+            client.get().forEach((operation, stats) -> total.computeIfAbsent(operation, key -> new LoadStats()).add(stats));
+        }
+        return total;
+    }
+
+    private Map<Operation, LoadStats> client(LoadScenario scenario, String baseUri, List<Integer> ids, long end)
+            throws IOException, InterruptedException {
+        Map<Operation, LoadStats> stats = new EnumMap<>(Operation.class);
+        // the customers this client registered and didn't delete yet
+        Deque<Integer> registered = new ArrayDeque<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int updates = 0;
+        while (System.nanoTime() < end) {
+            Operation operation = scenario.next(random);
+            if ((operation == Operation.UPDATE || operation == Operation.DELETE) && registered.isEmpty()) {
+                operation = Operation.REGISTER;
+            }
+            HttpRequest.Builder request = switch (operation) {
+                case GET -> HttpRequest.newBuilder(URI.create(baseUri + "/" + ids.get(random.nextInt(ids.size()))));
+                case PAGE -> HttpRequest.newBuilder(URI.create(baseUri + "/page?sort=name&size=20"));
+                case REGISTER -> json(HttpRequest.newBuilder(URI.create(baseUri)), "POST", new CustomerRegistrationRequest(
+                        "Load Customer", "load-" + UUID.randomUUID() + "@gmail.com", random.nextInt(18, 90), Gender.MALE));
+                // a new name every time , an update changing nothing is 400 (bad request)
+                case UPDATE -> json(HttpRequest.newBuilder(URI.create(baseUri + "/" + registered.peek())), "PUT",
+                        new CustomerUpdateRequest("Load Customer " + ++updates, null, null));
+                case DELETE -> HttpRequest.newBuilder(URI.create(baseUri + "/" + registered.pop())).DELETE();
+            };
+            long start = System.nanoTime();
+            int status;
+            String body = null;
+            try {
+                HttpResponse<String> response = httpClient.send(
+                        request.timeout(Duration.ofSeconds(30)).build(), HttpResponse.BodyHandlers.ofString());
+                status = response.statusCode();
+                body = response.body();
+            } catch (IOException e) {
+                status = -1;
+            }
+            stats.computeIfAbsent(operation, key -> new LoadStats()).record(status, System.nanoTime() - start);
+            if (operation == Operation.REGISTER && status == 200) {
+                registered.push(objectMapper.readValue(body, CustomerRegistrationResponse.class).id());
+            }
+        }
+        return stats;
+    }
+
+    private HttpRequest.Builder json(HttpRequest.Builder request, String method, Object body) throws IOException {
+        return request.header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)));
+    }
+}
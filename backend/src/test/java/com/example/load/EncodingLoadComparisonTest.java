@@ -0,0 +1,181 @@
+package com.example.load;
+
+import com.example.SpringBootExampleApplication;
+import com.example.customer.CustomerPage;
+import com.example.customer.CustomerRegistrationRequest;
+import com.example.customer.Gender;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// the response time of a page of customers in every encoding , from sending the request until the page is decoded by
+// the client (CustomerEncodingBenchmark only has the CPU time and the size of the bodies)
+// every client reads the same page (100 customers) , so the database answers all of them alike and the encodings differ
+// mvn -Pload test -Dtest=EncodingLoadComparisonTest                                   runs it with the defaults below
+// mvn -Pload test -Dtest=EncodingLoadComparisonTest -Dload.concurrency=200 -Dload.duration=30s
+// the results (throughput , latency percentiles and the body size of every encoding) are written to
+// target/load/encoding-comparison.json , over localhost , a slower link adds the time of the bytes on top
+// the database is the one of application.properties , like the integration tests
+class EncodingLoadComparisonTest {
+
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 50);
+    private static final Duration DURATION = Duration.parse("PT" + System.getProperty("load.duration", "15s"));
+    private static final Duration WARMUP = Duration.ofSeconds(5);
+    private static final int CUSTOMERS = 100;
+    private static final List<String> ENCODINGS = List.of("json", "json-gzip", "cbor", "cbor-gzip", "smile", "smile-gzip");
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final ObjectMapper CBOR_MAPPER = new CBORMapper();
+    private static final ObjectMapper SMILE_MAPPER = new SmileMapper();
+
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.MINUTES)
+    void compareEncodings() throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SpringBootExampleApplication.class)
+                .run("--server.port=0", "--spring.jpa.show-sql=false");
+        try {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            String baseUri = "http://localhost:" + port + "/api/v1/customers";
+            URI pageUri = URI.create(baseUri + "/search?emailDomain=" + registerCustomers(baseUri) + "&size=" + CUSTOMERS);
+
+            Map<String, Object> results = new LinkedHashMap<>();
+            results.put("concurrency", CONCURRENCY);
+            results.put("durationSeconds", DURATION.toSeconds());
+            results.put("customersPerPage", CUSTOMERS);
+            for (String encoding : ENCODINGS) {
+                load(pageUri, encoding, WARMUP);
+                LoadStats stats = load(pageUri, encoding, DURATION);
+                Map<String, Object> summary = stats.summary(DURATION);
+                summary.put("bodyBytes", read(pageUri, encoding).bodyBytes());
+                assertThat(stats.otherErrors()).as("unexpected errors of %s", encoding).isZero();
+                results.put(encoding, summary);
+            }
+
+            Path file = Path.of("target", "load", "encoding-comparison.json");
+            Files.createDirectories(file.getParent());
+            objectMapper.writeValue(file.toFile(), results);
+            System.out.println(objectMapper.writeValueAsString(results));
+        } finally {
+            context.close();
+        }
+    }
+
+    // the customers of one domain , the page searched for
+    private String registerCustomers(String baseUri) throws IOException, InterruptedException {
+        String domain = "encodings-" + UUID.randomUUID() + ".com";
+        List<CustomerRegistrationRequest> requests = new ArrayList<>();
+        for (int i = 0; i < CUSTOMERS; i++) {
+            requests.add(new CustomerRegistrationRequest(
+                    "Customer " + i, "customer-" + i + "@" + domain, 20 + i % 60, Gender.FEMALE));
+        }
+        HttpResponse<String> response = httpClient.send(
+                HttpRequest.newBuilder(URI.create(baseUri + "/batch"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(requests)))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(200);
+        return domain;
+    }
+
+    // CONCURRENCY clients reading the page one after the other until the time is over
+    private LoadStats load(URI pageUri, String encoding, Duration duration) throws Exception {
+        long end = System.nanoTime() + duration.toNanos();
+        List<Future<LoadStats>> clients = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CONCURRENCY; i++) {
+                clients.add(executor.submit(() -> {
+                    LoadStats stats = new LoadStats();
+                    while (System.nanoTime() < end) {
+                        long start = System.nanoTime();
+                        int status;
+                        try {
+                            status = read(pageUri, encoding).status();
+                        } catch (IOException e) {
+                            status = -1;
+                        }
+                        stats.record(status, System.nanoTime() - start);
+                    }
+                    return stats;
+                }));
+            }
+        }
+        LoadStats total = new LoadStats();
+        for (Future<LoadStats> client : clients) {
+            total.add(client.get());
+        }
+        return total;
+    }
+
+    private record Read(int status, int bodyBytes) {
+    }
+
+    // the page is unzipped and decoded like a client would , it is part of the time
+    private Read read(URI pageUri, String encoding) throws IOException, InterruptedException {
+        String format = encoding.replace("-gzip", "");
+        boolean gzip = encoding.endsWith("-gzip");
+        HttpRequest.Builder request = HttpRequest.newBuilder(pageUri)
+                .timeout(Duration.ofSeconds(30))
+                .header("Accept", switch (format) {
+                    case "json" -> "application/json";
+                    case "cbor" -> "application/cbor";
+                    case "smile" -> "application/x-jackson-smile";
+                    default -> throw new IllegalArgumentException("unknown encoding " + encoding);
+                });
+        if (gzip) {
+            request.header("Accept-Encoding", "gzip");
+        }
+        HttpResponse<byte[]> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            return new Read(response.statusCode(), 0);
+        }
+        if (gzip) {
+            assertThat(response.headers().firstValue("Content-Encoding")).as("gzip of %s", format).hasValue("gzip");
+        }
+        InputStream body = new ByteArrayInputStream(response.body());
+        if (gzip) {
+            body = new GZIPInputStream(body);
+        }
+        ObjectMapper mapper = switch (format) {
+            case "cbor" -> CBOR_MAPPER;
+            case "smile" -> SMILE_MAPPER;
+            default -> JSON_MAPPER;
+        };
+        CustomerPage page = mapper.readValue(body, CustomerPage.class);
+        assertThat(page.customers()).hasSize(CUSTOMERS);
+        return new Read(200, response.body().length);
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.load;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// what the clients of CustomerLoadIT do , every request is drawn from the percentages of its scenario
+// an update or delete is of a customer the client registered itself , so the clients never get in each other's way
+enum LoadScenario {
+
+    //        GET  PAGE  REGISTER  UPDATE  DELETE
+    READ_HEAVY(90,  10,    0,        0,      0),
+    WRITE_HEAVY(10,  0,   70,       20,      0),
+    MIXED(     20,   0,   30,       30,     20);
+
+    enum Operation {
+        GET, PAGE, REGISTER, UPDATE, DELETE
+    }
+
+    // in percent , one per operation
+    private final int[] weights;
+
+    LoadScenario(int... weights) {
+        this.weights = weights;
+    }
+
+    Operation next(ThreadLocalRandom random) {
+        int draw = random.nextInt(100);
+        for (Operation operation : Operation.values()) {
+            draw -= weights[operation.ordinal()];
+            if (draw < 0) {
+                return operation;
+            }
+        }
+        throw new IllegalStateException("the weights of %s don't add up to 100".formatted(this));
+    }
+}
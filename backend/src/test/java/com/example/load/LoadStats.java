@@ -0,0 +1,62 @@
+package com.example.load;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// the latencies and errors of the requests of one kind , every client keeps its own and they are added up at the end
+class LoadStats {
+    private long[] latencies = new long[1024];
+    private int count;
+    private long unavailable;
+    private long otherErrors;
+
+    void record(int status, long latencyNanos) {
+        if (status == 200) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+        } else if (status == 503) {
+            unavailable++;
+        } else {
+            otherErrors++;
+        }
+    }
+
+    void add(LoadStats other) {
+        for (int i = 0; i < other.count; i++) {
+            record(200, other.latencies[i]);
+        }
+        unavailable += other.unavailable;
+        otherErrors += other.otherErrors;
+    }
+
+    long otherErrors() {
+        return otherErrors;
+    }
+
+    Map<String, Object> summary(Duration duration) {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", count);
+        summary.put("requestsPerSecond", count / duration.toSeconds());
+        summary.put("p50Millis", percentile(sorted, 0.50));
+        summary.put("p99Millis", percentile(sorted, 0.99));
+        summary.put("p999Millis", percentile(sorted, 0.999));
+        summary.put("maxMillis", percentile(sorted, 1.0));
+        summary.put("serviceUnavailable", unavailable);
+        summary.put("otherErrors", otherErrors);
+        return summary;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.load;
+
+import com.example.SpringBootExampleApplication;
+import com.example.customer.CustomerBatchRegistrationResponse;
+import com.example.customer.CustomerRegistrationRequest;
+import com.example.customer.CustomerRegistrationResult;
+import com.example.customer.Gender;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// the same load against the application running requests on the 200 platform threads of tomcat and on virtual threads
+// most requests are GET /api/v1/customers/{id} (answered from the cache) , the others read a page from the database ,
+// so the platform threads fill up with requests waiting for a database connection while the cheap ones queue behind them
+// mvn -Pload test                                       runs it with the defaults below
+// mvn -Pload test -Dload.concurrency=2000 -Dload.duration=60s   more clients for longer
+// the results (throughput , latency percentiles and errors of every mode) are written to target/load/threading-comparison.json
+// the database is the one of application.properties , like the integration tests
+class ThreadingLoadComparisonTest {
+
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 1000);
+    private static final Duration DURATION = Duration.parse("PT" + System.getProperty("load.duration", "20s"));
+    private static final Duration WARMUP = Duration.ofSeconds(5);
+    private static final int CUSTOMERS = 1000;
+    // one request in ten reads a page from the database
+    private static final int PAGE_REQUESTS_PER_TEN = 1;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.MINUTES)
+    void compareVirtualAndPlatformThreads() throws Exception {
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("concurrency", CONCURRENCY);
+        results.put("durationSeconds", DURATION.toSeconds());
+        results.put("platform", run(false));
+        results.put("virtual", run(true));
+
+        Path file = Path.of("target", "load", "threading-comparison.json");
+        Files.createDirectories(file.getParent());
+        objectMapper.writeValue(file.toFile(), results);
+        System.out.println(objectMapper.writeValueAsString(results));
+    }
+
+    private Map<String, Object> run(boolean virtualThreads) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SpringBootExampleApplication.class)
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--spring.jpa.show-sql=false");
+        try {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            String baseUri = "http://localhost:" + port + "/api/v1/customers";
+            List<Integer> ids = registerCustomers(baseUri);
+
+            load(baseUri, ids, WARMUP);
+            LoadStats[] stats = load(baseUri, ids, DURATION);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("getCustomer", stats[0].summary(DURATION));
+            result.put("getCustomersPage", stats[1].summary(DURATION));
+            // only 503 (waited too long for the database) is an expected error
+            assertThat(stats[0].otherErrors() + stats[1].otherErrors()).as("unexpected errors").isZero();
+            return result;
+        } finally {
+            context.close();
+        }
+    }
+
+    private List<Integer> registerCustomers(String baseUri) throws IOException, InterruptedException {
+        List<CustomerRegistrationRequest> requests = new ArrayList<>();
+        String run = UUID.randomUUID().toString();
+        for (int i = 0; i < CUSTOMERS; i++) {
+            requests.add(new CustomerRegistrationRequest(
+                    "Customer " + i, "customer-" + i + "-" + run + "@gmail.com", 20 + i % 60, Gender.FEMALE));
+        }
+        HttpResponse<String> response = httpClient.send(
+                HttpRequest.newBuilder(URI.create(baseUri + "/batch"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(requests)))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(200);
+        return objectMapper.readValue(response.body(), CustomerBatchRegistrationResponse.class)
+                .results().stream()
+                .map(CustomerRegistrationResult::id)
+                .toList();
+    }
+
+    // CONCURRENCY clients sending requests one after the other until the time is over
+    private LoadStats[] load(String baseUri, List<Integer> ids, Duration duration) throws Exception {
+        long end = System.nanoTime() + duration.toNanos();
+        List<Future<LoadStats[]>> clients = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CONCURRENCY; i++) {
+                clients.add(executor.submit(() -> {
+                    LoadStats[] stats = {new LoadStats(), new LoadStats()};
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < end) {
+                        boolean page = random.nextInt(10) < PAGE_REQUESTS_PER_TEN;
+                        URI uri = page
+                                ? URI.create(baseUri + "/page?sort=name&size=20")
+                                : URI.create(baseUri + "/" + ids.get(random.nextInt(ids.size())));
+                        long start = System.nanoTime();
+                        int status;
+                        try {
+                            status = httpClient.send(HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).build(),
+                                    HttpResponse.BodyHandlers.discarding()).statusCode();
+                        } catch (IOException e) {
+                            status = -1;
+                        }
+                        stats[page ? 1 : 0].record(status, System.nanoTime() - start);
+                    }
+                    return stats;
+                }));
+            }
+        }
+        LoadStats[] total = {new LoadStats(), new LoadStats()};
+        for (Future<LoadStats[]> client : clients) {
+            LoadStats[] stats = client.get();
+            total[0].add(stats[0]);
+            total[1].add(stats[1]);
+        }
+        return total;
+    }
+}
@@ -21,7 +21,7 @@ import {errorNotification, successNotification} from "../services/notification.j
 
 import UpdateCustomerDrawer from "./UpdateCustomerDrawer.jsx";
 
-export default function CardWithImage({id, name, email, age, gender, imageNumber, fetchCustomers}) {
+export default function CardWithImage({id, name, email, age, gender, version, imageNumber, fetchCustomers}) {
     const randomUserGender = gender === "MALE" ? "men" : "women";
 
     const { isOpen, onOpen, onClose } = useDisclosure()
@@ -72,6 +72,7 @@ export default function CardWithImage({id, name, email, age, gender, imageNumber
                         <UpdateCustomerDrawer
                             initialValues={{ name, email, age }}
                             customerId={id}
+                            version={version}
                             fetchCustomers={fetchCustomers}
                         />
                     </Stack>
@@ -111,7 +112,7 @@ export default function CardWithImage({id, name, email, age, gender, imageNumber
                                             Cancel
                                         </Button>
                                         <Button colorScheme='red' onClick={() => {
-                                            deleteCustomer(id).then(res => {
+                                            deleteCustomer(id, version).then(res => {
                                                 console.log(res)
                                                 successNotification(
                                                     'Customer deleted',
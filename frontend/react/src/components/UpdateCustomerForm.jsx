@@ -25,7 +25,7 @@ const MyTextInput = ({label, ...props}) => {
 };
 
 // And now we can use these
-const UpdateCustomerForm = ({ fetchCustomers, initialValues, customerId }) => {
+const UpdateCustomerForm = ({ fetchCustomers, initialValues, customerId, version }) => {
     return (
         <>
             <Formik
@@ -44,7 +44,7 @@ const UpdateCustomerForm = ({ fetchCustomers, initialValues, customerId }) => {
                 })}
                 onSubmit={(updatedCustomer, {setSubmitting}) => {
                     setSubmitting(true);
-                    updateCustomer(customerId, updatedCustomer)
+                    updateCustomer(customerId, updatedCustomer, version)
                         .then(res => {
                             console.log(res);
                             successNotification(
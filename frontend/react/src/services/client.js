@@ -1,8 +1,23 @@
 import axios from "axios";
 
+// the last list of customers and its ETag , the next request sends it in If-None-Match
+// and the server answers 304 (not modified) without a body while nothing changed
+let customers = null;
+
+// the ETag of a customer is its version in quotes
+const eTag = (version) => `"${version}"`;
+
 export const getCustomers = async () => {
     try{
-        return await axios.get(`${import.meta.env.VITE_API_BASE_URL}/api/v1/customers`)
+        const res = await axios.get(`${import.meta.env.VITE_API_BASE_URL}/api/v1/customers`, {
+            headers: customers ? {"If-None-Match": customers.headers.etag} : {},
+            validateStatus: status => (status >= 200 && status < 300) || status === 304
+        })
+        if (res.status === 304) {
+            return customers;
+        }
+        customers = res.headers.etag ? res : null;
+        return res;
     }catch(e) {
         throw(e);
     }
@@ -16,18 +31,23 @@ export const saveCustomer = async (customer) => {
     }
 }
 
-export const deleteCustomer = async (id) => {
+// with the version the customer was shown with , it isn't deleted when somebody changed it in the meantime (412)
+export const deleteCustomer = async (id , version) => {
     try{
-        return await axios.delete(`${import.meta.env.VITE_API_BASE_URL}/api/v1/customers/${id}`)
+        return await axios.delete(`${import.meta.env.VITE_API_BASE_URL}/api/v1/customers/${id}`, {
+            headers: version != null ? {"If-Match": eTag(version)} : {}
+        })
     }catch(e) {
         throw(e);
     }
 }
 
-export const updateCustomer = async (id , update) => {
+export const updateCustomer = async (id , update , version) => {
     try{
-        return await axios.put(`${import.meta.env.VITE_API_BASE_URL}/api/v1/customers/${id}` , update)
+        return await axios.put(`${import.meta.env.VITE_API_BASE_URL}/api/v1/customers/${id}` , update, {
+            headers: version != null ? {"If-Match": eTag(version)} : {}
+        })
     }catch(e) {
         throw(e);
     }
-}
\ No newline at end of file
+}